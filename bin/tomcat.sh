@@ -1,4 +1,18 @@
 #!/usr/bin/env bash
+#
+# Usage: tomcat.sh [--cds | --cds-train] <catalina.sh arguments...>
+#
+#   --cds        Runs Tomcat using the class data sharing (CDS) archive at
+#                STRCALC_CDS_ARCHIVE, if it exists.
+#   --cds-train  Starts Tomcat, sends STRCALC_CDS_ROUNDS rounds of requests
+#                to the deployed strcalc app, then stops Tomcat, writing every
+#                class loaded along the way to STRCALC_CDS_ARCHIVE. Takes no
+#                catalina.sh arguments.
+#
+# Retrain after upgrading Tomcat or the JDK, or after redeploying the app. The
+# JVM ignores an archive that doesn't match its classpath or version.
+#
+# See: https://docs.oracle.com/en/java/javase/21/vm/class-data-sharing.html
 
 # Hint from: https://www.baeldung.com/find-java-home#platform-independent
 get_java_home() {
@@ -19,4 +33,77 @@ for envvar in 'CATALINA_HOME' 'JAVA_HOME'; do
   cd - >/dev/null
 done
 
+STRCALC_CDS_ARCHIVE="${STRCALC_CDS_ARCHIVE:-$CATALINA_HOME/strcalc.jsa}"
+STRCALC_CDS_ROUNDS="${STRCALC_CDS_ROUNDS:-200}"
+STRCALC_URL="${STRCALC_URL:-http://localhost:8080/strcalc}"
+
+# Sends requests covering the app's main request paths. Keep in sync with
+# TrainingWorkload in strcalc/src/launcher.
+send_training_requests() {
+  local json='Content-Type: application/json'
+  local i
+
+  for ((i=0; i != STRCALC_CDS_ROUNDS; ++i)); do
+    curl -sf -o /dev/null "$STRCALC_URL/" &&
+    curl -s -o /dev/null -H "$json" -d '{"numbers":"1,2\n3"}' \
+      "$STRCALC_URL/add" &&
+    curl -s -o /dev/null -H "$json" -d '{"numbers":"1,-2,-3"}' \
+      "$STRCALC_URL/add" &&
+    curl -s -o /dev/null -H "$json" \
+      -d '{"numbers":"2147483647,2147483647"}' "$STRCALC_URL/add?sum=exact" &&
+    curl -s -o /dev/null -H "$json" \
+      -d '[{"numbers":"1,2"},{"numbers":"x"}]' "$STRCALC_URL/add/batch" &&
+    curl -sf -o /dev/null "$STRCALC_URL/metrics" ||
+    return 1
+  done
+}
+
+train_cds() {
+  local pid_file
+  local attempt
+
+  pid_file="$(mktemp)"
+  export CATALINA_PID="$pid_file"
+  export CATALINA_OPTS="$CATALINA_OPTS -XX:ArchiveClassesAtExit=$STRCALC_CDS_ARCHIVE"
+
+  if ! "$CATALINA_HOME/bin/catalina.sh" start; then
+    rm -f "$pid_file"
+    return 1
+  fi
+
+  for ((attempt=0; attempt != 60; ++attempt)); do
+    curl -sf -o /dev/null "$STRCALC_URL/" && break
+    sleep 1
+  done
+
+  send_training_requests
+  local result="$?"
+
+  # Waits for the JVM to exit, which is when it writes the archive.
+  "$CATALINA_HOME/bin/catalina.sh" stop 60 -force
+  rm -f "$pid_file"
+
+  if [[ "$result" -ne 0 ]]; then
+    printf 'training requests to %s failed\n' "$STRCALC_URL" >&2
+    return 1
+  fi
+  printf 'wrote CDS archive: %s\n' "$STRCALC_CDS_ARCHIVE"
+}
+
+case "$1" in
+--cds-train)
+  train_cds
+  exit
+  ;;
+--cds)
+  shift
+  if [[ -f "$STRCALC_CDS_ARCHIVE" ]]; then
+    export CATALINA_OPTS="$CATALINA_OPTS -XX:SharedArchiveFile=$STRCALC_CDS_ARCHIVE"
+  else
+    printf 'CDS archive not found, starting without it: %s\n' \
+      "$STRCALC_CDS_ARCHIVE" >&2
+  fi
+  ;;
+esac
+
 exec "$CATALINA_HOME/bin/catalina.sh" "$@"
@@ -5,6 +5,11 @@
 #
 # Takes the path to the Tomcat config as an argument, which it updates in place.
 #
+# The strcalc webapp's AccessLogFilter writes its own access log entries from a
+# background thread, and sets the "strcalc.accessLogged" request attribute.
+# The conditionUnless attribute below makes the valve skip those requests, so
+# it only writes, unbuffered, for requests to other webapps.
+#
 # See also:
 # - https://tomcat.apache.org/tomcat-10.1-doc/config/valve.html#Access_Logging
 
@@ -15,6 +20,7 @@ ORIG_PAT=(
 NEW_VAL="<Valve className=\"org.apache.catalina.valves.AccessLogValve\"
                directory=\"\/dev\" prefix=\"stdout\"
                suffix=\"\" rotatable=\"false\" buffered=\"false\"
+               conditionUnless=\"strcalc.accessLogged\"
                pattern=\"%h %l %u %t &quot;%r&quot; %s %b\" \/>"
 
 # - https://unix.stackexchange.com/a/26289
@@ -10,6 +10,7 @@ plugins {
     id("org.gradle.toolchains.foojay-resolver-convention") version "0.7.0"
     id("io.freefair.lombok") version "8.4" apply false
     id("com.github.ben-manes.versions") version "0.50.0" apply false
+    id("me.champeau.jmh") version "0.7.2" apply false
 }
 
 rootProject.name = "tomcat-servlet-testing-example"
@@ -10,6 +10,7 @@ plugins {
     jacoco
     id("io.freefair.lombok")
     id("com.github.ben-manes.versions")
+    id("me.champeau.jmh")
 }
 
 repositories {
@@ -18,15 +19,19 @@ repositories {
 }
 
 val antJUnit: Configuration by configurations.creating
+val jandexTool: Configuration by configurations.creating
 
 dependencies {
     implementation(libs.jandex)
     implementation(libs.jackson)
     implementation(libs.weld)
+    implementation(libs.caffeine)
+    implementation(libs.hdrHistogram)
 
     testImplementation(libs.junit)
     testImplementation(libs.hamcrest)
     testImplementation(libs.tomcat)
+    testImplementation(libs.tomcatWebsocket)
     testImplementation(libs.jasper)
     testImplementation(libs.selenium)
 
@@ -35,14 +40,62 @@ dependencies {
     // This dependency is used internally, and not exposed to consumers on their
     // own compile classpath.
     providedCompile(libs.servlet)
+    providedCompile(libs.websocket)
+    providedCompile(libs.websocketClient)
+
+    // AccessLogFilter installs a Tomcat Valve, so it compiles against the
+    // Tomcat classes the container provides at runtime.
+    providedCompile(libs.tomcat)
 
     antJUnit(libs.antJunit)
+    jandexTool(libs.jandex)
+
+    // The servlet API is providedCompile for the WAR, so the benchmarks need
+    // their own copy to exercise Servlet.doPost() outside of Tomcat.
+    jmhImplementation(libs.servlet)
 }
 
 jacoco {
     toolVersion = "0.8.11"
 }
 
+// Resolves the incubating Vector API module, which VectorDelimiterScanner
+// uses to scan UTF-8 input several bytes at a time. Utf8StringCalculator
+// falls back to scalar code in JVMs started without this option, so it only
+// needs to be on the command line of JVMs that should use SIMD instructions.
+//
+// - https://openjdk.org/jeps/448
+val vectorModuleArgs = listOf("--add-modules", "jdk.incubator.vector")
+
+// Configures VectorDelimiterScanner in src/vector/java. It lives in its own
+// source set, since it's the only class that can't compile without the Vector
+// API module. The WAR and the launcher include its classes, and
+// DelimiterScanner.best() loads it by name when the JVM resolves the module.
+// Only the tasks that compile it, or that must run it, resolve the module, so
+// the rest of the build doesn't warn about using an incubating module.
+val vector: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+
+val vectorImplementation: Configuration by configurations.getting {
+    extendsFrom(configurations.implementation.get())
+}
+
+dependencies {
+    jmhImplementation(vector.output)
+}
+
+tasks.named<JavaCompile>(vector.compileJavaTaskName) {
+    options.compilerArgs.addAll(vectorModuleArgs)
+}
+
+// Enables Utf8StringCalculatorTest to run VectorDelimiterScanner.
+sourceSets.test {
+    compileClasspath += vector.output
+    runtimeClasspath += vector.output
+}
+
 // Set inputs and outputs for the frontend tasks. This enables Gradle to cache
 // the results instead of executing these tasks unconditionally on every build.
 //
@@ -94,13 +147,43 @@ val frontendTest = tasks.register<Exec>("frontendTest") {
 // Configure the "war" task generated by the Gradle War plugin to depend upon
 // the frontend build and to include its output files from build/webapp. This is
 // in addition to the files within src/main/webapp, which the task includes by
-// default.
+// default. It also adds the vector classes to WEB-INF/classes.
 //
 // - https://docs.gradle.org/current/userguide/war_plugin.html
 val war = tasks.named("war")
 tasks.war {
     dependsOn(frontendBuild)
     from(frontendOutputDir)
+    classpath(vector.output)
+}
+
+// Generates a Jandex index of the main classes as META-INF/jandex.idx, which
+// the WAR includes under WEB-INF/classes. Weld uses its Jandex discovery
+// strategy whenever Jandex is on the classpath, and reads this index instead
+// of opening and parsing every class file to find the beans at startup.
+//
+// - https://smallrye.io/jandex/jandex/3.1.6/index.html
+// - https://docs.jboss.org/weld/reference/latest/en-US/html_single/#_jandex
+val jandexDir = project.layout.buildDirectory.dir("jandex")
+val jandexIndex = tasks.register<JavaExec>("jandexIndex") {
+    description = "Indexes the main classes into build/jandex/META-INF"
+    group = "build"
+    val classesDir = sourceSets.main.get().java.destinationDirectory
+    val indexFile = jandexDir.map { it.file("META-INF/jandex.idx") }
+
+    dependsOn(tasks.named("compileJava"))
+    inputs.dir(classesDir)
+    outputs.file(indexFile)
+    classpath = jandexTool
+    mainClass = "org.jboss.jandex.Main"
+    argumentProviders.add(CommandLineArgumentProvider {
+        listOf("-o", indexFile.get().asFile.path, classesDir.get().asFile.path)
+    })
+    doFirst { indexFile.get().asFile.parentFile.mkdirs() }
+}
+
+sourceSets.main {
+    output.dir(mapOf("builtBy" to jandexIndex), jandexDir)
 }
 
 // The small/medium/large test schema is implemented via JUnit5 composite tags
@@ -144,12 +227,42 @@ val setLargerTestOptions = { testTask: Test ->
     })
 }
 
+// Runs test methods concurrently. Medium tests that need a TestTomcat lease
+// one from TestTomcatPool, which starts another server only when every
+// existing one is leased, so they scale with the number of cores instead of
+// waiting on serial Tomcat startups. Add -Pstrcalc.test.serial to debug
+// failures one test at a time.
+//
+// - https://junit.org/junit5/docs/current/user-guide/#writing-tests-parallel-execution
+val setParallelTestOptions = { testTask: Test ->
+    val parallel = !project.hasProperty("strcalc.test.serial")
+    testTask.systemProperty(
+            "junit.jupiter.execution.parallel.enabled", parallel
+    )
+    testTask.systemProperty(
+            "junit.jupiter.execution.parallel.mode.default", "concurrent"
+    )
+    testTask.systemProperty(
+            "junit.jupiter.execution.parallel.mode.classes.default",
+            "concurrent"
+    )
+}
+
 val smallTests = tasks.named<Test>("test") {
     description = "Runs small unit tests annotated with @SmallTest."
-    useJUnitPlatform { includeTags("small") }
+    useJUnitPlatform { includeTags("small & !vector") }
     setCommonTestOptions(this)
 }
 
+val vectorTests = tasks.register<Test>("test-vector") {
+    description = "Runs small unit tests annotated with @VectorTest, " +
+            "using the Vector API."
+    setLargerTestOptions(this)
+    useJUnitPlatform { includeTags("vector") }
+    jvmArgs(vectorModuleArgs)
+    shouldRunAfter(smallTests)
+}
+
 val mediumCoverageTests = tasks.register<Test>("test-medium-coverage") {
     description = "Runs medium integration tests annotated with " +
             "@MediumCoverageTest."
@@ -157,6 +270,7 @@ val mediumCoverageTests = tasks.register<Test>("test-medium-coverage") {
     dependsOn(frontendBuild)
     inputs.dir(webappInputs)
     useJUnitPlatform { includeTags("medium & coverage") }
+    setParallelTestOptions(this)
     shouldRunAfter(smallTests, frontendTest)
 }
 
@@ -166,6 +280,7 @@ val mediumTests = tasks.register<Test>("test-medium") {
     dependsOn(frontendBuild)
     inputs.dir(webappInputs)
     useJUnitPlatform { includeTags("medium & !coverage") }
+    setParallelTestOptions(this)
     shouldRunAfter(smallTests, mediumCoverageTests, frontendTest)
     extensions.configure(JacocoTaskExtension::class) {
         isEnabled = false
@@ -183,8 +298,32 @@ val largeTests = tasks.register<Test>("test-large") {
     }
 }
 
+// Load tests aren't part of "test-all" or "check", since they take longer and
+// their results depend on the host. Set their parameters via -P properties,
+// e.g., -Pstrcalc.load.rate=500. See ServletLoadTest for all the properties.
+val loadTestProperties = listOf(
+        "rate", "durationSeconds", "warmupSeconds", "clients", "maxP99Millis"
+).map { "strcalc.load.$it" }
+
+val loadTests = tasks.register<Test>("test-load") {
+    description = "Runs load tests annotated with @LoadTest."
+    setLargerTestOptions(this)
+    dependsOn(frontendBuild)
+    inputs.dir(webappInputs)
+    useJUnitPlatform { includeTags("load") }
+    shouldRunAfter(largeTests)
+    outputs.upToDateWhen { false }
+    outputs.dir(project.layout.buildDirectory.dir("reports/load-tests"))
+    loadTestProperties.filter { project.hasProperty(it) }.forEach {
+        systemProperty(it, project.property(it).toString())
+    }
+    extensions.configure(JacocoTaskExtension::class) {
+        isEnabled = false
+    }
+}
+
 val allTestSizes = arrayOf(
-        smallTests, mediumCoverageTests, mediumTests, largeTests
+        smallTests, vectorTests, mediumCoverageTests, mediumTests, largeTests
 )
 
 val allTests = tasks.register<Task>("test-all") {
@@ -198,6 +337,131 @@ tasks.named("check") {
     dependsOn(allTests)
 }
 
+// Configures the JMH benchmarks in src/jmh/java, run via the "jmh" task
+// provided by the me.champeau.jmh plugin:
+//
+// - https://github.com/melix/jmh-gradle-plugin
+// - https://github.com/openjdk/jmh
+//
+// Results are written as JSON so that runs can be compared, e.g. using
+// https://jmh.morethan.io/. Pass -PjmhInclude=<regex> to run a subset of the
+// benchmarks, such as -PjmhInclude=StringCalculatorBenchmark.
+jmh {
+    jmhVersion = libs.versions.jmhVer
+    resultFormat = "JSON"
+    resultsFile = project.layout.buildDirectory.file(
+        "reports/jmh/results.json"
+    )
+    jvmArgs.addAll(vectorModuleArgs)
+    if (project.hasProperty("jmhInclude")) {
+        includes.add(project.property("jmhInclude").toString())
+    }
+}
+
+// Configures the embedded production launcher in src/launcher/java, which runs
+// the servlets in embedded Tomcat without deploying strcalc.war. It lives in
+// its own source set so tomcat-embed-core stays out of the WAR.
+//
+// - "launcherDist" assembles build/launcher, containing strcalc-launcher.jar,
+//   its dependencies in lib/, and the frontend assets in webapp/.
+// - "launcherCdsArchive" trains an AppCDS archive for build/launcher.
+// - "runLauncher" runs the launcher directly from the build outputs.
+//
+// Pass -Pstrcalc.port=<port> to runLauncher to override the default port of
+// 8080. See Launcher for the other strcalc.* properties.
+val launcher: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output + vector.output
+}
+
+val launcherImplementation: Configuration by configurations.getting {
+    extendsFrom(configurations.implementation.get())
+}
+
+dependencies {
+    launcherImplementation(libs.tomcat)
+    launcherImplementation(libs.tomcatWebsocket)
+    launcherImplementation(libs.servlet)
+}
+
+// Enables LauncherTest to run the Launcher.
+sourceSets.test {
+    compileClasspath += launcher.output
+    runtimeClasspath += launcher.output
+}
+
+val launcherMainClass =
+        "com.mike_bland.training.testing.stringcalculator.Launcher"
+val launcherRuntimeJars = configurations.named("launcherRuntimeClasspath")
+
+val launcherJar = tasks.register<Jar>("launcherJar") {
+    description = "Builds strcalc-launcher.jar from the main and launcher " +
+            "classes."
+    group = "build"
+    archiveFileName = "strcalc-launcher.jar"
+    from(sourceSets.main.get().output)
+    from(vector.output)
+    from(launcher.output)
+    manifest {
+        attributes(
+                "Main-Class" to launcherMainClass,
+                "Class-Path" to launcherRuntimeJars.map { jars ->
+                    jars.joinToString(" ") { "lib/${it.name}" }
+                }
+        )
+    }
+}
+
+val launcherDistDir = project.layout.buildDirectory.dir("launcher")
+val launcherDist = tasks.register<Sync>("launcherDist") {
+    description = "Assembles the embedded launcher and its dependencies " +
+            "into build/launcher."
+    group = "build"
+    dependsOn(frontendBuild)
+    into(launcherDistDir)
+    from(launcherJar)
+    into("lib") { from(launcherRuntimeJars) }
+    into("webapp") { from(frontendOutputDir) }
+    preserve { include("strcalc.jsa") }
+}
+
+// Runs the launcher from build/launcher with a training workload, then writes
+// the classes it loaded into an AppCDS archive, build/launcher/strcalc.jsa.
+// Run the launcher with -XX:SharedArchiveFile=strcalc.jsa to use it, as
+// dockerfiles/Dockerfile.launcher does. Pass -Pstrcalc.training.rounds=<n>
+// to change the number of TrainingWorkload rounds.
+//
+// - https://docs.oracle.com/en/java/javase/21/vm/class-data-sharing.html
+tasks.register<JavaExec>("launcherCdsArchive") {
+    description = "Writes an AppCDS archive for the launcher to " +
+            "build/launcher/strcalc.jsa."
+    group = "build"
+    dependsOn(launcherDist)
+    workingDir(launcherDistDir)
+    classpath = files(launcherDistDir.map { it.file("strcalc-launcher.jar") })
+    mainClass = launcherMainClass
+    jvmArgs(vectorModuleArgs + "-XX:ArchiveClassesAtExit=strcalc.jsa")
+    systemProperty("strcalc.port", "0")
+    systemProperty(
+            "strcalc.training.rounds",
+            project.findProperty("strcalc.training.rounds") ?: "200"
+    )
+    outputs.file(launcherDistDir.map { it.file("strcalc.jsa") })
+}
+
+tasks.register<JavaExec>("runLauncher") {
+    description = "Runs the embedded launcher using the build outputs."
+    group = "application"
+    dependsOn(frontendBuild)
+    classpath = launcher.runtimeClasspath
+    mainClass = launcherMainClass
+    jvmArgs(vectorModuleArgs)
+    systemProperty("strcalc.webapp", frontendOutputDir.asFile.path)
+    if (project.hasProperty("strcalc.port")) {
+        systemProperty("strcalc.port", project.property("strcalc.port")!!)
+    }
+}
+
 // Used to emit paths of JUnit and coverage report files relative to the root
 // directory of the project repository.
 val relativeToRootDir = fun(absPath: java.nio.file.Path): java.nio.file.Path {
@@ -0,0 +1,40 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+// Registry of every StringCalculator implementation under benchmark.
+//
+// The keys are the values for the "impl" @Param of each benchmark. Add new
+// implementations here, and to the @Param lists that refer to them.
+class Implementations {
+    static final Map<String, Supplier<StringCalculator>> ALL = Map.of(
+            "streaming", StreamingStringCalculator::new,
+            "parallel", ParallelStringCalculator::new,
+            "temporary", TemporaryStringCalculator::new,
+            "caching", () -> new CachingStringCalculator(
+                    new StreamingStringCalculator(), new StringCalculatorCache()
+            ),
+            // A single benchmark thread never coalesces, so this measures the
+            // overhead of the key copy and in-flight map for long inputs.
+            "coalescing", () -> new CoalescingStringCalculator(
+                    new StreamingStringCalculator()
+            )
+    );
+
+    static StringCalculator create(String name) {
+        var impl = ALL.get(name);
+
+        if (impl == null) {
+            final var msg = "unknown StringCalculator implementation: \"%s\"";
+            throw new IllegalArgumentException(msg.formatted(name));
+        }
+        return impl.get();
+    }
+}
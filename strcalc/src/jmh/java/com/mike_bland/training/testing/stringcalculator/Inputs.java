@@ -0,0 +1,58 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+// Realistic StringCalculator inputs shared by all benchmarks.
+//
+// The names are the values for the "input" @Param of each benchmark.
+public enum Inputs {
+    // A typical interactive request from the frontend.
+    SHORT("1,2,3"),
+
+    // 10,000 numbers separated by commas and newlines.
+    LARGE(numbers(10_000, ",", "\n", "")),
+
+    // 1,000,000 numbers, or about 4MB, which is above the default
+    // ParallelStringCalculator threshold.
+    HUGE(numbers(1_000_000, ",", "\n", "")),
+
+    // 10,000 numbers using multiple bracketed custom delimiters.
+    CUSTOM_DELIMITER(numbers(10_000, "***", "%", "//[***][%]\n")),
+
+    // 1,000 numbers where every other one is negative, which exercises the
+    // error path that collects every negative number into the message.
+    ERRORS(negatives(1_000));
+
+    final String numbers;
+
+    Inputs(String numbers) {
+        this.numbers = numbers;
+    }
+
+    // Generates `count` numbers, using `lineDelim` every tenth number and
+    // `delim` otherwise.
+    private static String numbers(
+            int count, String delim, String lineDelim, String header) {
+        var sb = new StringBuilder(header);
+
+        for (int i = 0; i != count; ++i) {
+            if (i != 0) sb.append(i % 10 == 0 ? lineDelim : delim);
+            sb.append(i % 1000);
+        }
+        return sb.toString();
+    }
+
+    private static String negatives(int count) {
+        var sb = new StringBuilder();
+
+        for (int i = 0; i != count; ++i) {
+            if (i != 0) sb.append(',');
+            sb.append(i % 2 == 0 ? i : -i);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+
+// Minimal HttpServletRequest and HttpServletResponse doubles for driving
+// Servlet handlers without Tomcat.
+//
+// The servlet API doesn't ship with test doubles, and the interfaces are too
+// large to implement by hand, so these use java.lang.reflect.Proxy. Methods
+// that aren't handled explicitly return null, false, or zero.
+class MockHttp {
+    private static final Map<Class<?>, Object> DEFAULTS = Map.of(
+            boolean.class, false,
+            int.class, 0,
+            long.class, 0L
+    );
+
+    private static Object defaultValue(Method m) {
+        return DEFAULTS.get(m.getReturnType());
+    }
+
+    // Creates a POST request whose body is a fresh stream over `body` on
+    // every call to getInputStream().
+    static HttpServletRequest request(byte[] body) {
+        return request("/add", "application/json", body);
+    }
+
+    // Creates a POST request for a specific servlet path and content type.
+    static HttpServletRequest request(
+            String servletPath, String contentType, byte[] body) {
+        InvocationHandler handler = (proxy, m, args) -> switch (m.getName()) {
+            case "getMethod" -> "POST";
+            case "getServletPath" -> servletPath;
+            case "getContentType" -> contentType;
+            case "getContentLength" -> body.length;
+            case "getContentLengthLong" -> (long) body.length;
+            case "getInputStream" -> new InputStream(body);
+            default -> defaultValue(m);
+        };
+        return (HttpServletRequest) Proxy.newProxyInstance(
+                MockHttp.class.getClassLoader(),
+                new Class<?>[] {HttpServletRequest.class},
+                handler
+        );
+    }
+
+    // Records the status, content type, and body written by a handler.
+    //
+    // Call reset() before reusing the same Response for another request.
+    static class Response implements InvocationHandler {
+        final OutputStream body = new OutputStream();
+        final HttpServletResponse proxy = (HttpServletResponse)
+                Proxy.newProxyInstance(
+                        MockHttp.class.getClassLoader(),
+                        new Class<?>[] {HttpServletResponse.class},
+                        this
+                );
+        int status = HttpServletResponse.SC_OK;
+        String contentType;
+
+        void reset() {
+            body.reset();
+            status = HttpServletResponse.SC_OK;
+            contentType = null;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method m, Object[] args) {
+            switch (m.getName()) {
+                case "setStatus" -> status = (int) args[0];
+                case "getStatus" -> { return status; }
+                case "setContentType" -> contentType = (String) args[0];
+                case "getContentType" -> { return contentType; }
+                case "getOutputStream" -> { return body; }
+                default -> { return defaultValue(m); }
+            }
+            return null;
+        }
+    }
+
+    static class InputStream extends ServletInputStream {
+        private final ByteArrayInputStream in;
+
+        InputStream(byte[] body) {
+            this.in = new ByteArrayInputStream(body);
+        }
+
+        @Override
+        public boolean isFinished() {
+            return in.available() == 0;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int read() {
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            return in.read(b, off, len);
+        }
+    }
+
+    static class OutputStream extends ServletOutputStream {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        void reset() {
+            out.reset();
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void write(int b) {
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            out.write(b, off, len);
+        }
+    }
+}
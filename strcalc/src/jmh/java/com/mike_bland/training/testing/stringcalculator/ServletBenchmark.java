@@ -0,0 +1,83 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// Measures the full Servlet.doPost() JSON decode, calculate, and encode cycle
+// against in-memory request and response streams.
+//
+// This isolates the Servlet's own overhead from Tomcat's connector and
+// filter chain, which the load tests cover instead.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServletBenchmark {
+    @Param({"streaming"})
+    public String impl;
+
+    @Param({"SHORT", "LARGE", "CUSTOM_DELIMITER", "ERRORS"})
+    public Inputs input;
+
+    // Number of copies of the input in each doBatchPost() request.
+    static final int BATCH_SIZE = 100;
+
+    private Servlet servlet;
+    private HttpServletRequest req;
+    private HttpServletRequest batchReq;
+    private final MockHttp.Response resp = new MockHttp.Response();
+
+    @Setup
+    public void setUp() throws IOException {
+        servlet = new Servlet(Implementations.create(impl));
+        var mapper = new ObjectMapper();
+        var payload = new Servlet.CalculatorRequest(input.numbers);
+        var batch = new Servlet.CalculatorRequest[BATCH_SIZE];
+        Arrays.fill(batch, payload);
+
+        req = MockHttp.request(mapper.writeValueAsBytes(payload));
+        batchReq = MockHttp.request(
+                Servlet.BATCH_ENDPOINT,
+                "application/json",
+                mapper.writeValueAsBytes(batch)
+        );
+    }
+
+    @Benchmark
+    public int doPost() throws IOException {
+        resp.reset();
+        servlet.doPost(req, resp.proxy);
+        return resp.status;
+    }
+
+    // Divide the result by BATCH_SIZE to compare against doPost().
+    @Benchmark
+    public int doBatchPost() throws IOException {
+        resp.reset();
+        servlet.doPost(batchReq, resp.proxy);
+        return resp.status;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+// Measures StringCalculator.add() and addExact() for every implementation and
+// input.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringCalculatorBenchmark {
+    @Param({"streaming", "parallel", "temporary", "caching", "coalescing"})
+    public String impl;
+
+    @Param({"SHORT", "LARGE", "HUGE", "CUSTOM_DELIMITER", "ERRORS"})
+    public Inputs input;
+
+    private StringCalculator calculator;
+    private String numbers;
+    private final Sum sum = new Sum();
+
+    @Setup
+    public void setUp() {
+        calculator = Implementations.create(impl);
+        numbers = input.numbers;
+    }
+
+    @Benchmark
+    public void add(Blackhole bh) {
+        try {
+            bh.consume(calculator.add(numbers));
+        } catch (StringCalculator.Exception e) {
+            bh.consume(e);
+        }
+    }
+
+    // Reuses the same Sum, as Servlet does for each item in a batch.
+    @Benchmark
+    public void addExact(Blackhole bh) {
+        try {
+            calculator.addExact(numbers, sum);
+            bh.consume(sum);
+        } catch (StringCalculator.Exception e) {
+            bh.consume(e);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// Compares Utf8StringCalculator's SIMD and scalar DelimiterScanners on the
+// same UTF-8 inputs, with StreamingStringCalculator on the decoded String as
+// a baseline.
+//
+// The "vector" scanner requires "--add-modules jdk.incubator.vector", which
+// build.gradle.kts passes to the benchmark JVMs.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Utf8StringCalculatorBenchmark {
+    @Param({"vector", "scalar", "chars"})
+    public String scanner;
+
+    @Param({"SHORT", "LARGE", "HUGE", "CUSTOM_DELIMITER", "ERRORS"})
+    public Inputs input;
+
+    private Utf8StringCalculator calculator;
+    private byte[] utf8;
+    private String numbers;
+    private final Result result = new Result();
+    private final Sum sum = new Sum();
+
+    @Setup
+    public void setUp() {
+        calculator = switch (scanner) {
+            case "vector" -> new Utf8StringCalculator(
+                    new VectorDelimiterScanner()
+            );
+            case "scalar", "chars" -> new Utf8StringCalculator(
+                    new DelimiterScanner.Scalar()
+            );
+            default -> throw new IllegalArgumentException(
+                    "unknown scanner: \"%s\"".formatted(scanner)
+            );
+        };
+        numbers = input.numbers;
+        utf8 = numbers.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public void tryAdd(Blackhole bh) {
+        if (scanner.equals("chars")) {
+            bh.consume(calculator.tryAdd(numbers, result));
+        } else {
+            bh.consume(calculator.tryAdd(utf8, 0, utf8.length, result));
+        }
+        bh.consume(result.value());
+    }
+
+    @Benchmark
+    public void tryAddExact(Blackhole bh) {
+        if (scanner.equals("chars")) {
+            bh.consume(calculator.tryAddExact(numbers, sum, result));
+        } else {
+            bh.consume(
+                    calculator.tryAddExact(utf8, 0, utf8.length, sum, result)
+            );
+        }
+        bh.consume(sum);
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.servlets.DefaultServlet;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.coyote.http2.Http2Protocol;
+import org.apache.tomcat.util.IntrospectionUtils;
+import org.apache.tomcat.util.descriptor.web.FilterDef;
+import org.apache.tomcat.util.descriptor.web.FilterMap;
+import org.apache.tomcat.websocket.server.WsSci;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Production entry point that runs the StringCalculator in embedded Tomcat.
+//
+// Like TestTomcat.start(Servlet), this registers fully constructed servlets
+// directly, instead of deploying strcalc.war. This skips WAR expansion, JAR
+// and annotation scanning, and Weld bootstrap, so the server starts in a
+// fraction of the time. In exchange, this class wires together the same
+// objects Weld would, per WEB-INF/beans.xml. It applies the AccessLogFilter
+// and ConcurrencyLimitFilter from WEB-INF/web.xml, but skips the CorsFilter,
+// which only the frontend dev server needs.
+//
+// The frontend assets from build/webapp are served by Tomcat's DefaultServlet
+// from WEBAPP_PROPERTY. The connector speaks HTTP/1.1 and HTTP/2 over
+// cleartext (h2c), via either prior knowledge or an Upgrade header.
+//
+// All settings are system properties:
+//
+// - PORT_PROPERTY: the port to listen on
+// - WEBAPP_PROPERTY: the directory containing index.html and its assets
+// - CONNECTOR_PREFIX + <name>: any HTTP Connector attribute, e.g.,
+//   -Dstrcalc.connector.maxThreads=50 or
+//   -Dstrcalc.connector.socket.rxBufSize=65536
+// - HTTP2_PREFIX + <name>: any HTTP/2 Upgrade Protocol attribute, e.g.,
+//   -Dstrcalc.http2.maxConcurrentStreams=200
+// - SERVLET_PREFIX + <name>: any Servlet init-param, e.g.,
+//   -Dstrcalc.servlet.async=true
+// - TRAINING_ROUNDS_PROPERTY: if set, sends that many rounds of
+//   TrainingWorkload requests, then exits instead of serving
+//
+// See:
+// - https://tomcat.apache.org/tomcat-10.1-doc/config/http.html
+// - https://tomcat.apache.org/tomcat-10.1-doc/config/http2.html
+public class Launcher {
+    public static final String PORT_PROPERTY = "strcalc.port";
+    public static final String WEBAPP_PROPERTY = "strcalc.webapp";
+    public static final String CONNECTOR_PREFIX = "strcalc.connector.";
+    public static final String HTTP2_PREFIX = "strcalc.http2.";
+    public static final String SERVLET_PREFIX = "strcalc.servlet.";
+    public static final String TRAINING_ROUNDS_PROPERTY =
+            "strcalc.training.rounds";
+
+    static final int DEFAULT_PORT = 8080;
+    static final String DEFAULT_WEBAPP = "webapp";
+
+    // Connector defaults that differ from Tomcat's, applied before any
+    // CONNECTOR_PREFIX overrides.
+    //
+    // Behind a load balancer, clients reuse connections for many requests,
+    // so this keeps connections open longer than Tomcat's default of 100
+    // requests. Request processing runs on virtual threads, so a busy
+    // calculation doesn't tie up a platform thread from a fixed-size pool.
+    static final Map<String, String> DEFAULT_CONNECTOR_SETTINGS = Map.of(
+            "maxKeepAliveRequests", "1000",
+            "keepAliveTimeout", "30000",
+            "useVirtualThreads", "true"
+    );
+
+    // Servlet init-params applied before any SERVLET_PREFIX overrides,
+    // matching those in WEB-INF/web.xml.
+    static final Map<String, String> DEFAULT_SERVLET_SETTINGS = Map.of(
+            Servlet.WARMUP_ITERATIONS_PARAM, "10000"
+    );
+
+    // Reports errors outside of any ServletContext, e.g., while stopping.
+    private static final Logger LOGGER =
+            Logger.getLogger(Launcher.class.getName());
+
+    private final Tomcat tomcat = new Tomcat();
+
+    // Tomcat's working directory, deleted by stop().
+    private final Path baseDir;
+
+    Launcher(int port, File webappDir, Properties props) throws IOException {
+        baseDir = Files.createTempDirectory("strcalc-tomcat");
+        tomcat.setBaseDir(baseDir.toString());
+        tomcat.setConnector(newConnector(port, props));
+
+        var ctx = tomcat.addContext(
+                Servlet.DEFAULT_ROOT, webappDir.getAbsolutePath()
+        );
+        addStaticAssets(ctx);
+
+        // Lets Servlet.init() deploy RunningTotalEndpoint. Tomcat only
+        // discovers WsSci by itself when deploying a WAR.
+        ctx.addServletContainerInitializer(new WsSci(), null);
+
+        var metrics = new Metrics();
+        var readiness = new Readiness();
+        var cache = new StringCalculatorCache();
+        var limiter = new ConcurrencyLimiter();
+        var accessLog = new AccessLog();
+        var calculator = new CachingStringCalculator(
+                new CoalescingStringCalculator(new ParallelStringCalculator()),
+                cache
+        );
+        var servletSettings = new HashMap<>(DEFAULT_SERVLET_SETTINGS);
+        servletSettings.putAll(withPrefix(props, SERVLET_PREFIX));
+
+        addServlet(
+                ctx,
+                new Servlet(calculator, metrics, readiness, cache),
+                servletSettings
+        );
+        addServlet(
+                ctx,
+                new MetricsServlet(metrics, cache, limiter, accessLog),
+                Map.of()
+        );
+        addServlet(ctx, new ReadyServlet(readiness), Map.of());
+        addFilter(ctx, new AccessLogFilter(accessLog), "/*");
+        addFilter(
+                ctx, new CacheControlFilter(), "/", "/index.html", "/assets/*"
+        );
+        addFilter(
+                ctx,
+                new ConcurrencyLimitFilter(limiter),
+                "/add",
+                Servlet.BATCH_ENDPOINT
+        );
+    }
+
+    public static void main(String[] args) throws Exception {
+        var launcher = new Launcher(
+                Integer.getInteger(PORT_PROPERTY, DEFAULT_PORT),
+                new File(System.getProperty(WEBAPP_PROPERTY, DEFAULT_WEBAPP)),
+                System.getProperties()
+        );
+
+        final int trainingRounds = Integer.getInteger(
+                TRAINING_ROUNDS_PROPERTY, 0
+        );
+
+        // When run with -XX:ArchiveClassesAtExit, this writes an archive of
+        // every class loaded while handling the TrainingWorkload. Running with
+        // -XX:SharedArchiveFile then maps those classes directly into memory,
+        // skipping most of the class loading and linking at startup.
+        //
+        // - https://docs.oracle.com/en/java/javase/21/vm/class-data-sharing.html
+        if (trainingRounds > 0) {
+            launcher.start();
+            try {
+                new TrainingWorkload(URI.create(
+                        "http://localhost:" + launcher.getLocalPort()
+                )).run(trainingRounds);
+            } finally {
+                launcher.stop();
+            }
+            return;
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                launcher.stop();
+            } catch (LifecycleException | IOException e) {
+                LOGGER.log(Level.SEVERE, "failed to stop", e);
+            }
+        }));
+        launcher.start();
+        launcher.tomcat.getServer().await();
+    }
+
+    void start() throws LifecycleException {
+        tomcat.start();
+    }
+
+    void stop() throws LifecycleException, IOException {
+        tomcat.stop();
+        tomcat.destroy();
+        deleteBaseDir();
+    }
+
+    Path getBaseDir() {
+        return baseDir;
+    }
+
+    private void deleteBaseDir() throws IOException {
+        List<Path> paths;
+
+        try (var walk = Files.walk(baseDir)) {
+            paths = walk.sorted(Comparator.reverseOrder()).toList();
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        for (var path : paths) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    // Returns the port the connector is listening on, which differs from the
+    // configured port if that was 0.
+    int getLocalPort() {
+        return tomcat.getConnector().getLocalPort();
+    }
+
+    static Connector newConnector(int port, Properties props) {
+        var connector = new Connector();
+        var http2 = new Http2Protocol();
+        var settings = new HashMap<>(DEFAULT_CONNECTOR_SETTINGS);
+
+        connector.setPort(port);
+        connector.addUpgradeProtocol(http2);
+        settings.putAll(withPrefix(props, CONNECTOR_PREFIX));
+
+        settings.forEach((name, value) -> {
+            if (!connector.setProperty(name, value)) {
+                throw unknownSetting(CONNECTOR_PREFIX, name);
+            }
+        });
+        withPrefix(props, HTTP2_PREFIX).forEach((name, value) -> {
+            if (!IntrospectionUtils.setProperty(http2, name, value)) {
+                throw unknownSetting(HTTP2_PREFIX, name);
+            }
+        });
+        return connector;
+    }
+
+    private static IllegalArgumentException unknownSetting(
+            String prefix, String name) {
+        final var msg = "unknown setting: %s%s";
+        return new IllegalArgumentException(msg.formatted(prefix, name));
+    }
+
+    // Returns the properties starting with prefix, with the prefix removed.
+    static Map<String, String> withPrefix(Properties props, String prefix) {
+        var result = new HashMap<String, String>();
+
+        for (var name : props.stringPropertyNames()) {
+            if (name.startsWith(prefix)) {
+                result.put(
+                        name.substring(prefix.length()),
+                        props.getProperty(name)
+                );
+            }
+        }
+        return result;
+    }
+
+    // Serves the frontend assets like the StaticAssets servlet from
+    // WEB-INF/web.xml.
+    private static void addStaticAssets(Context ctx) {
+        var wrapper = Tomcat.addServlet(ctx, "default", new DefaultServlet());
+
+        wrapper.addInitParameter("listings", "false");
+        wrapper.addInitParameter("precompressed", "br=.br,gzip=.gz");
+        wrapper.addInitParameter("useStrongETags", "true");
+        ctx.addServletMappingDecoded("/", "default");
+        ctx.addWelcomeFile("index.html");
+        Tomcat.addDefaultMimeTypeMappings(ctx);
+    }
+
+    // Applies filter to every request matching any of urlPatterns.
+    //
+    // Tomcat applies filters mapped by URL pattern before those mapped by
+    // servlet name, regardless of the order they're added.
+    private static void addFilter(
+            Context ctx, Filter filter, String... urlPatterns) {
+        var map = newFilterMap(ctx, filter);
+
+        for (var urlPattern : urlPatterns) {
+            map.addURLPatternDecoded(urlPattern);
+        }
+        ctx.addFilterMap(map);
+    }
+
+    // Applies filter to every request the servlet of the given class handles.
+    //
+    // TestTomcat.start(Servlet) uses this to apply filters.
+    public static void addServletFilter(
+            Context ctx, Filter filter, Class<? extends HttpServlet> servlet) {
+        var map = newFilterMap(ctx, filter);
+
+        map.addServletName(servlet.getSimpleName());
+        ctx.addFilterMap(map);
+    }
+
+    // Adds the definition of filter to ctx, and returns a new mapping for it.
+    private static FilterMap newFilterMap(Context ctx, Filter filter) {
+        var name = filter.getClass().getSimpleName();
+        var def = new FilterDef();
+        var map = new FilterMap();
+
+        def.setFilterName(name);
+        def.setFilter(filter);
+        def.setAsyncSupported("true");
+        ctx.addFilterDef(def);
+
+        map.setFilterName(name);
+        return map;
+    }
+
+    // Registers a servlet using the properties of its @WebServlet annotation:
+    // its URL patterns, asyncSupported, and loadOnStartup. The init-params
+    // take the place of any <init-param> elements in WEB-INF/web.xml.
+    //
+    // TestTomcat.start(Servlet) uses this, too, so tests register servlets
+    // the same way production does.
+    public static void addServlet(
+            Context ctx, HttpServlet servlet, Map<String, String> initParams) {
+        var name = servlet.getClass().getSimpleName();
+        var annotation = servlet.getClass().getAnnotation(WebServlet.class);
+        var wrapper = Tomcat.addServlet(ctx, name, servlet);
+
+        wrapper.setAsyncSupported(annotation.asyncSupported());
+        wrapper.setLoadOnStartup(annotation.loadOnStartup());
+        initParams.forEach(wrapper::addInitParameter);
+
+        for (var endpoint : annotation.value()) {
+            ctx.addServletMappingDecoded(endpoint, name);
+        }
+    }
+}
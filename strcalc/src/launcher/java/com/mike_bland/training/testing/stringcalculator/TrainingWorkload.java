@@ -0,0 +1,88 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.util.List;
+
+// Requests sent by Launcher during a class data sharing (CDS) training run.
+//
+// The point isn't load, but coverage: every request path should load and link
+// the classes it needs, so that they end up in the archive. This includes
+// Jackson parsing and generation, the Servlet's sync, batch, and exact sum
+// paths, calculator errors, /metrics, and the DefaultServlet.
+//
+// Each request is repeated so that Tomcat's, Weld's, and Jackson's lazily
+// initialized caches and pools are populated before the JVM exits.
+class TrainingWorkload {
+    // The requests to repeat: an endpoint relative to Servlet.DEFAULT_ROOT,
+    // its Content-Type, and its body. A null body sends a GET.
+    record Request(String endpoint, String contentType, String body) {}
+
+    static final List<Request> REQUESTS = List.of(
+            new Request("/", null, null),
+            new Request("/add", "application/json",
+                    "{\"numbers\":\"1,2\\n3\"}"),
+            new Request("/add", "application/json",
+                    "{\"numbers\":\"//[**][%]\\n1**2%3\"}"),
+            new Request("/add", "application/json",
+                    "{\"numbers\":\"1,-2,-3\"}"),
+            new Request("/add?sum=exact", "application/json",
+                    "{\"numbers\":\"2147483647,2147483647\"}"),
+            new Request(Servlet.BATCH_ENDPOINT, "application/json",
+                    "[{\"numbers\":\"1,2\"},{\"numbers\":\"x\"}]"),
+            new Request(Servlet.BATCH_ENDPOINT, Servlet.NDJSON_CONTENT_TYPE,
+                    "{\"numbers\":\"1,2\"}\n{\"numbers\":\"3\"}\n"),
+            new Request(MetricsServlet.ENDPOINT, null, null)
+    );
+
+    private final URI root;
+
+    TrainingWorkload(URI root) {
+        this.root = root;
+    }
+
+    // Sends every request `rounds` times. Fails on any server error, which
+    // would mean the run didn't exercise the normal request paths.
+    void run(int rounds) throws IOException, InterruptedException {
+        try (var client = HttpClient.newHttpClient()) {
+            for (int i = 0; i != rounds; ++i) {
+                for (var r : REQUESTS) {
+                    send(client, r);
+                }
+            }
+        }
+    }
+
+    private void send(HttpClient client, Request r)
+            throws IOException, InterruptedException {
+        var builder = HttpRequest.newBuilder(
+                root.resolve(Servlet.DEFAULT_ROOT + r.endpoint())
+        );
+
+        if (r.body() == null) {
+            builder.GET();
+        } else {
+            builder.header("Content-Type", r.contentType())
+                    .POST(BodyPublishers.ofString(r.body()));
+        }
+
+        var resp = client.send(builder.build(), BodyHandlers.discarding());
+
+        if (resp.statusCode() >= 500) {
+            throw new IOException(String.format(
+                    "training request failed: %s: HTTP %d",
+                    r.endpoint(), resp.statusCode()
+            ));
+        }
+    }
+}
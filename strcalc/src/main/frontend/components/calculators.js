@@ -6,13 +6,28 @@
 /* global STRCALC_BACKEND */
 
 import { postFormData } from './request.js'
+import RunningTotal from './running-total.js'
 
 export const DEFAULT_ENDPOINT = './add'
+export const STREAM_ENDPOINT = './add/stream'
 
 const backendUrl = () => STRCALC_BACKEND ?
   new URL(DEFAULT_ENDPOINT, STRCALC_BACKEND).toString() :
   DEFAULT_ENDPOINT
 
+/**
+ * Returns the ws: or wss: address of the backend's running total endpoint
+ *
+ * Unlike fetch(), the WebSocket constructor doesn't accept relative URLs in
+ * every browser, so this resolves STREAM_ENDPOINT against the page.
+ * @returns {string} - absolute WebSocket URL for STREAM_ENDPOINT
+ */
+export const streamUrl = () => {
+  const url = new URL(STREAM_ENDPOINT, STRCALC_BACKEND || document.baseURI)
+  url.protocol = url.protocol === 'https:' ? 'wss:' : 'ws:'
+  return url.toString()
+}
+
 /**
  * @typedef {object} StrCalcPayload
  * @property {number} [result] - the result of the calculation
@@ -32,6 +47,21 @@ const backendUrl = () => STRCALC_BACKEND ?
  */
 const backendCalculator = async (data) => postFormData(backendUrl(), data)
 
+/** @type {(RunningTotal | null)} */
+let runningTotal = null
+
+/**
+ * Adds the String Calculator input to a running total kept by the backend
+ *
+ * Sends each input over a single WebSocket, opened on first use, so updates
+ * don't pay for a new HTTP request each time.
+ * @type {StrCalcCallback}
+ */
+const streamCalculator = async (data) => {
+  runningTotal ??= new RunningTotal(streamUrl())
+  return runningTotal.add(String(data.get('numbers')))
+}
+
 /**
  * Returns an error as a placeholder for an in-browser StringCalculator
  * @type {StrCalcCallback}
@@ -57,5 +87,9 @@ const tempCalculator = async (data) => Promise.reject(new Error(
 /** @type {StrCalcDescriptors} */
 export default {
   'api': { label: 'Tomcat backend API (Java)', impl: backendCalculator },
+  'stream': {
+    label: 'Tomcat backend running total (Java, WebSocket)',
+    impl: streamCalculator
+  },
   'browser': { label: 'In-browser (JavaScript)', impl: tempCalculator }
 }
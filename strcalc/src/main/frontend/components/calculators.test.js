@@ -5,9 +5,12 @@
  * file, You can obtain one at https://mozilla.org/MPL/2.0/.
  */
 
-import { default as calculators, DEFAULT_ENDPOINT } from './calculators.js'
+import {
+  default as calculators, DEFAULT_ENDPOINT, streamUrl
+} from './calculators.js'
 import { afterEach, describe, expect, test, vi } from 'vitest'
 import setupFetchStub from '../test/fetch-stub.js'
+import setupWebSocketStub from '../test/websocket-stub.js'
 import { postOptions } from './request.js'
 
 describe('calculators', () => {
@@ -46,6 +49,29 @@ describe('calculators', () => {
     })
   })
 
+  describe('streamCalculator', () => {
+    test('streamUrl uses ws: or wss: for globalThis.STRCALC_BACKEND', () => {
+      vi.stubGlobal('STRCALC_BACKEND', 'http://localhost:8080/strcalc/')
+      expect(streamUrl()).toBe('ws://localhost:8080/strcalc/add/stream')
+
+      vi.stubGlobal('STRCALC_BACKEND', 'https://example.com/strcalc/')
+      expect(streamUrl()).toBe('wss://example.com/strcalc/add/stream')
+    })
+
+    test('sends numbers over a WebSocket and resolves the total', async () => {
+      const sockets = setupWebSocketStub()
+      const result = calculators.stream.impl(setupData('2,2'))
+
+      expect(sockets.length).toBe(1)
+      expect(sockets[0].url).toBe(streamUrl())
+      sockets[0].open()
+      await vi.waitFor(() => expect(sockets[0].sent).toEqual(['2,2']))
+      sockets[0].reply({ result: 4 })
+
+      await expect(result).resolves.toEqual({ result: 4 })
+    })
+  })
+
   test('tempCalculator rejects with Error', async () => {
     const data = setupData('2,2')
 
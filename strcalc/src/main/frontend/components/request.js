@@ -34,9 +34,32 @@ export async function post(url, payload) {
   return JSON.parse(body)
 }
 
+/**
+ * Posts an array of payloads as a single batch request via fetch()
+ *
+ * The server returns an array containing one response object per payload, in
+ * the same order. Unlike post(), this doesn't throw if any of those objects
+ * contains an "error" property, since each request in the batch succeeds or
+ * fails independently.
+ * @param {string} url - address of the server's batch endpoint
+ * @param {object[]} payloads - data for each request in the batch
+ * @returns {Promise<any[]>} - responses from the server, one per payload
+ */
+export async function postBatch(url, payloads) {
+  const res = await fetch(url, postOptions(payloads))
+  const body = await res.text()
+
+  if (!res.ok) {
+    const msg = body.length !== 0 ? body : `${res.status}: ${res.statusText}`
+    throw new Error(msg)
+  }
+  return JSON.parse(body)
+}
+
 /**
  * Prepares the fetch() options for an application/json POST request
- * @param {object} payload - data to include in the POST request options
+ * @param {(object | object[])} payload - data to include in the POST request
+ *   options
  * @returns {object} - an options object for a fetch() POST request
  */
 export function postOptions(payload) {
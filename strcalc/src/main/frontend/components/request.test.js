@@ -4,7 +4,7 @@
  * License, v. 2.0. If a copy of the MPL was not distributed with this
  * file, You can obtain one at https://mozilla.org/MPL/2.0/.
  */
-import { post, postFormData, postOptions } from './request.js'
+import { post, postBatch, postFormData, postOptions } from './request.js'
 import { afterEach, describe, expect, test, vi } from 'vitest'
 import setupFetchStub from '../test/fetch-stub.js'
 
@@ -45,6 +45,32 @@ describe('Request', () => {
     })
   })
 
+  describe('postBatch', () => {
+    const reqs = [ { numbers: '1,2' }, { numbers: '-1' } ]
+
+    test('succeeds even if individual responses contain "error"', async () => {
+      const res = [ { result: 3 }, { error: 'negatives not allowed: -1' } ]
+      const fetchStub = setupFetchStub(res)
+
+      await expect(postBatch('/fetch/batch', reqs)).resolves.toEqual(res)
+      expect(fetchStub).toHaveBeenCalledWith('/fetch/batch', postOptions(reqs))
+    })
+
+    test('rejects with an error if the response status is not OK', async () => {
+      const res = 'totally our fault'
+      setupFetchStub(res, { status: 500 })
+
+      await expect(postBatch('/fetch/batch', reqs)).rejects.toThrow(res)
+    })
+
+    test('rejects with default status text if no response body', async () => {
+      setupFetchStub('', { status: 500, statusText: 'Internal Server Error' })
+
+      await expect(postBatch('/fetch/batch', reqs))
+        .rejects.toThrow('500: Internal Server Error')
+    })
+  })
+
   describe('postFormData', () => {
     test('succeeds', async () => {
       const fd = new FormData()
@@ -0,0 +1,108 @@
+/* eslint-env browser */
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+/**
+ * Keeps a running total via the backend's WebSocket endpoint
+ *
+ * Opens the WebSocket on the first call to add(), then sends each 'numbers'
+ * string as a single text message. The backend replies to each message, in
+ * order, with either the new total or an error, so add() matches each reply to
+ * the oldest pending request.
+ *
+ * If the connection closes, pending add() calls reject, and the next add()
+ * opens a new connection, starting a new total.
+ */
+export default class RunningTotal {
+  #url
+
+  /** @type {(Promise<WebSocket> | null)} */
+  #opened = null
+
+  /**
+   * @typedef {object} PendingAdd
+   * @property {function(object): void} resolve - resolves the add() promise
+   * @property {function(Error): void} reject - rejects the add() promise
+   */
+  /** @type {PendingAdd[]} */
+  #pending = []
+
+  /**
+   * @param {string} url - ws: or wss: address of the running total endpoint
+   */
+  constructor(url) {
+    this.#url = url
+  }
+
+  /**
+   * Adds the sum of the numbers to the running total
+   * @param {string} numbers - input to the String Calculator
+   * @returns {Promise<import('./calculators.js').StrCalcPayload>} - the new
+   *   running total
+   */
+  async add(numbers) {
+    const socket = await this.#connect()
+
+    if (socket.readyState !== WebSocket.OPEN) {
+      throw new Error('running total connection closed')
+    }
+    return new Promise((resolve, reject) => {
+      this.#pending.push({ resolve, reject })
+      socket.send(numbers)
+    })
+  }
+
+  /**
+   * Closes the connection, if open, discarding the running total
+   */
+  async close() {
+    const opened = this.#opened
+    if (opened !== null) (await opened).close()
+  }
+
+  /**
+   * @returns {Promise<WebSocket>} - the open connection
+   */
+  #connect() {
+    if (this.#opened === null) {
+      this.#opened = new Promise((resolve, reject) => {
+        const socket = new WebSocket(this.#url)
+        socket.addEventListener('open', () => resolve(socket))
+        socket.addEventListener('message', e => this.#receive(e.data))
+        socket.addEventListener('close', e => this.#reset(e, reject))
+      })
+    }
+    return this.#opened
+  }
+
+  /**
+   * @param {string} data - JSON reply to the oldest pending add() call
+   */
+  #receive(data) {
+    const pending = this.#pending.shift()
+    if (pending === undefined) return console.error('unexpected reply:', data)
+
+    const payload = JSON.parse(data)
+    if (payload.error !== undefined) pending.reject(new Error(payload.error))
+    else pending.resolve(payload)
+  }
+
+  /**
+   * @param {CloseEvent} event - the close event for the connection
+   * @param {function(Error): void} rejectOpen - rejects #connect(), if the
+   *   connection closed before opening
+   */
+  #reset(event, rejectOpen) {
+    const reason = event.reason ? `: ${event.reason}` : ''
+    const err = new Error(
+      `running total connection closed (${event.code})${reason}`
+    )
+
+    this.#opened = null
+    rejectOpen(err)
+    this.#pending.splice(0).forEach(p => p.reject(err))
+  }
+}
@@ -0,0 +1,97 @@
+/* eslint-env browser, node, jest, vitest */
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+import RunningTotal from './running-total.js'
+import { afterEach, beforeEach, describe, expect, test, vi } from 'vitest'
+import setupWebSocketStub from '../test/websocket-stub.js'
+
+describe('RunningTotal', () => {
+  const ENDPOINT_URL = 'ws://localhost:8080/strcalc/add/stream'
+
+  /** @type {import('../test/websocket-stub.js').FakeWebSocket[]} */
+  let sockets
+  /** @type {RunningTotal} */
+  let total
+
+  beforeEach(() => {
+    sockets = setupWebSocketStub()
+    total = new RunningTotal(ENDPOINT_URL)
+  })
+
+  afterEach(() => { vi.unstubAllGlobals() })
+
+  /**
+   * Waits until the socket has sent the expected messages
+   * @param {import('../test/websocket-stub.js').FakeWebSocket} socket -
+   *   socket expected to send the messages
+   * @param {string[]} messages - all messages expected so far
+   * @returns {Promise<void>}
+   */
+  const waitForSent = (socket, messages) => vi.waitFor(
+    () => expect(socket.sent).toEqual(messages)
+  )
+
+  test('opens one connection and resolves replies in order', async () => {
+    const first = total.add('1,2')
+    const second = total.add('3')
+
+    expect(sockets.length).toBe(1)
+    expect(sockets[0].url).toBe(ENDPOINT_URL)
+
+    sockets[0].open()
+    await waitForSent(sockets[0], ['1,2', '3'])
+    sockets[0].reply({ result: 3 })
+    sockets[0].reply({ result: 6 })
+
+    await expect(first).resolves.toEqual({ result: 3 })
+    await expect(second).resolves.toEqual({ result: 6 })
+    expect(sockets.length).toBe(1)
+  })
+
+  test('rejects with the error from the reply', async () => {
+    const result = total.add('1,x')
+
+    sockets[0].open()
+    await waitForSent(sockets[0], ['1,x'])
+    sockets[0].reply({ error: 'invalid character \'x\' at index 2' })
+
+    await expect(result).rejects.toThrow(
+      new Error('invalid character \'x\' at index 2')
+    )
+  })
+
+  test('rejects pending calls and reconnects after closing', async () => {
+    const result = total.add('1,2')
+
+    sockets[0].open()
+    await waitForSent(sockets[0], ['1,2'])
+    sockets[0].serverClose(1009, 'too big')
+
+    await expect(result).rejects.toThrow(
+      new Error('running total connection closed (1009): too big')
+    )
+
+    const next = total.add('4')
+    expect(sockets.length).toBe(2)
+    sockets[1].open()
+    await waitForSent(sockets[1], ['4'])
+    sockets[1].reply({ result: 4 })
+
+    await expect(next).resolves.toEqual({ result: 4 })
+  })
+
+  test('rejects if the connection fails to open', async () => {
+    const result = total.add('1,2')
+
+    sockets[0].serverClose(1006)
+
+    await expect(result).rejects.toThrow(
+      new Error('running total connection closed (1006)')
+    )
+    expect(sockets[0].sent).toEqual([])
+  })
+})
@@ -0,0 +1,92 @@
+/* eslint-env browser, node */
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+import {vi} from 'vitest'
+
+/**
+ * Stands in for a WebSocket, letting the test play the part of the server
+ * @see https://developer.mozilla.org/docs/Web/API/WebSocket
+ */
+export class FakeWebSocket extends EventTarget {
+  static CONNECTING = 0
+  static OPEN = 1
+  static CLOSED = 3
+
+  readyState = FakeWebSocket.CONNECTING
+
+  /** @type {string[]} */
+  sent = []
+
+  /**
+   * @param {string} url - address passed to the WebSocket constructor
+   */
+  constructor(url) {
+    super()
+    this.url = url
+  }
+
+  /**
+   * @param {string} data - message sent by the code under test
+   */
+  send(data) {
+    this.sent.push(data)
+  }
+
+  close() {
+    this.serverClose(1000)
+  }
+
+  /**
+   * Completes the opening handshake
+   */
+  open() {
+    this.readyState = FakeWebSocket.OPEN
+    this.dispatchEvent(new Event('open'))
+  }
+
+  /**
+   * Sends a message from the "server" as JSON
+   * @param {object} payload - the message to send
+   */
+  reply(payload) {
+    this.dispatchEvent(
+      new MessageEvent('message', { data: JSON.stringify(payload) })
+    )
+  }
+
+  /**
+   * Closes the connection from the "server" side
+   * @param {number} code - WebSocket close status code
+   * @param {string} [reason] - reason for closing the connection
+   */
+  serverClose(code, reason = '') {
+    this.readyState = FakeWebSocket.CLOSED
+    this.dispatchEvent(new CloseEvent('close', { code, reason }))
+  }
+}
+
+/**
+ * Stubs the global WebSocket with a FakeWebSocket subclass
+ *
+ * Use `afterEach(() => { vi.unstubAllGlobals() })` to clean up this stub
+ * after every test.
+ * @returns {FakeWebSocket[]} - every FakeWebSocket created since the call, in
+ *   order
+ */
+export default function setupWebSocketStub() {
+  /** @type {FakeWebSocket[]} */
+  const sockets = []
+
+  vi.stubGlobal('WebSocket', class extends FakeWebSocket {
+    /** @param {string} url - address passed to the WebSocket constructor */
+    constructor(url) {
+      super(url)
+      sockets.push(this)
+    }
+  })
+  return sockets
+}
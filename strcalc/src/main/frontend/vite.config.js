@@ -3,6 +3,7 @@ import { defineConfig } from 'vite'
 import fs from 'node:fs'
 import os from 'node:os'
 import path from 'node:path/posix'
+import zlib from 'node:zlib'
 
 const BUILD_DIR = path.resolve('../../../build/')
 
@@ -64,10 +65,59 @@ function getProviderOptions(){
   console.warn(ARM64_LINUX_WARNING.join('\n'))
 }
 
+/** Files worth compressing; images and fonts are already compressed */
+const COMPRESSIBLE = /\.(css|html|js|json|map|svg|txt)$/
+
+/** Files smaller than this fit in a packet or two uncompressed */
+const MIN_COMPRESS_SIZE = 1024
+
+/**
+ * Writes .br and .gz versions of each compressible file in the build output
+ *
+ * Tomcat's DefaultServlet serves these in place of the original when the
+ * client accepts the encoding, so it never compresses on the fly.
+ * @see https://tomcat.apache.org/tomcat-10.1-doc/default-servlet.html
+ * @returns {import('vite').Plugin} - plugin that runs after writing the bundle
+ */
+function precompressAssets() {
+  return {
+    name: 'strcalc-precompress-assets',
+    apply: 'build',
+    writeBundle(options, bundle) {
+      for (const fileName of Object.keys(bundle)) {
+        if (!COMPRESSIBLE.test(fileName)) continue
+
+        const file = path.resolve(options.dir ?? '', fileName)
+        const content = fs.readFileSync(file)
+        if (content.length < MIN_COMPRESS_SIZE) continue
+
+        const variants = {
+          '.br': zlib.brotliCompressSync(content, {
+            params: {
+              [zlib.constants.BROTLI_PARAM_QUALITY]:
+                zlib.constants.BROTLI_MAX_QUALITY,
+              [zlib.constants.BROTLI_PARAM_SIZE_HINT]: content.length
+            }
+          }),
+          '.gz': zlib.gzipSync(content, {
+            level: zlib.constants.Z_BEST_COMPRESSION
+          })
+        }
+        for (const [ext, compressed] of Object.entries(variants)) {
+          if (compressed.length < content.length) {
+            fs.writeFileSync(file + ext, compressed)
+          }
+        }
+      }
+    }
+  }
+}
+
 export default defineConfig({
   base: '/strcalc/',
   plugins: [
-    HandlebarsPrecompiler({ helpers: ['components/helpers.js'] })
+    HandlebarsPrecompiler({ helpers: ['components/helpers.js'] }),
+    precompressAssets()
   ],
   define: {
     STRCALC_BACKEND: JSON.stringify(process.env.STRCALC_BACKEND)
@@ -0,0 +1,429 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Writes HTTP access log records in batches from a background thread.
+//
+// Tomcat's AccessLogValve, configured by bin/update-tomcat-logging-config.sh
+// to write to /dev/stdout unbuffered, makes a write system call on the
+// request thread for every request. Instead, AccessLogFilter offers each
+// Entry to a bounded, lock-free ring buffer, which costs a few atomic
+// operations. Every DRAIN_INTERVAL_NANOS, a daemon thread formats everything
+// in the buffer in the Common Log Format used by the valve, and writes it
+// with one call per batch.
+//
+// If requests arrive faster than the thread drains them, offer() drops the
+// Entry instead of blocking the request. The next batch then includes a line
+// reporting how many entries were dropped, and MetricsServlet reports the
+// running total.
+//
+// Entries go to standard output, unless FILE_PROPERTY names a file. The file
+// rotates once it exceeds MAX_FILE_SIZE_PROPERTY bytes, keeping up to
+// MAX_FILES_PROPERTY older files with the suffixes ".1", ".2", etc., e.g.:
+//
+//   -Dstrcalc.accessLog.file=/var/log/strcalc/access.log
+@ApplicationScoped
+public class AccessLog implements Closeable {
+    public static final String CAPACITY_PROPERTY = "strcalc.accessLog.capacity";
+    public static final String FILE_PROPERTY = "strcalc.accessLog.file";
+    public static final String MAX_FILE_SIZE_PROPERTY =
+            "strcalc.accessLog.maxFileSize";
+    public static final String MAX_FILES_PROPERTY = "strcalc.accessLog.maxFiles";
+
+    static final int DEFAULT_CAPACITY = 8192;
+    static final long DEFAULT_MAX_FILE_SIZE = 64L * 1024 * 1024;
+    static final int DEFAULT_MAX_FILES = 5;
+    static final long DRAIN_INTERVAL_NANOS = 10_000_000;
+
+    // Writes each batch before it grows any larger than this.
+    static final int MAX_BATCH_CHARS = 64 * 1024;
+
+    // AccessLog runs on its own thread, outside of any ServletContext, so it
+    // reports write errors via java.util.logging. Tomcat routes these records
+    // to its own log files.
+    private static final Logger LOGGER =
+            Logger.getLogger(AccessLog.class.getName());
+
+    // Same as the "%t" format of AccessLogValve.
+    static final DateTimeFormatter TIMESTAMP = DateTimeFormatter
+            .ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.US)
+            .withZone(ZoneId.systemDefault());
+
+    // One request, captured on the request thread and formatted later.
+    //
+    // bytesSent is the number of response body bytes Tomcat wrote, counted
+    // after the response is complete, so it's accurate even for chunked
+    // responses. remoteUser and queryString may be null.
+    public record Entry(
+            long startMillis,
+            String remoteAddr,
+            String remoteUser,
+            String method,
+            String requestUri,
+            String queryString,
+            String protocol,
+            int status,
+            long bytesSent) {
+    }
+
+    // Receives each formatted batch.
+    interface Sink extends Closeable {
+        void write(CharSequence batch) throws IOException;
+
+        @Override
+        default void close() throws IOException {
+        }
+    }
+
+    // Bounded multi-producer, single-consumer queue from:
+    //
+    // - https://www.1024cores.net/home/lock-free-algorithms/queues/bounded-mpmc-queue
+    //
+    // Each slot's sequence number tells producers whether it's free for the
+    // current lap around the ring, and tells the consumer whether it's full.
+    // A producer claims a slot by advancing `tail` with a CAS, so producers
+    // never wait on one another or on the consumer.
+    private final Entry[] slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final int mask;
+
+    private final Sink sink;
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder logged = new LongAdder();
+
+    // Guarded by `this`, which only the drain thread, and close(), hold.
+    private final StringBuilder batch = new StringBuilder();
+    private long head;
+    private long droppedReported;
+    private long lastSecond = -1;
+    private String lastTimestamp;
+    private boolean reportedWriteError;
+
+    private Thread drainer;
+    private volatile boolean closed;
+
+    public AccessLog() {
+        this(
+                Integer.getInteger(CAPACITY_PROPERTY, DEFAULT_CAPACITY),
+                defaultSink()
+        );
+    }
+
+    AccessLog(int capacity, Sink sink) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException(
+                    "capacity must be at least 2, got: " + capacity
+            );
+        }
+        final int size = Integer.highestOneBit(capacity - 1) << 1;
+
+        this.slots = new Entry[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        this.sink = sink;
+
+        for (int i = 0; i != size; ++i) {
+            sequences.set(i, i);
+        }
+    }
+
+    private static Sink defaultSink() {
+        final var file = System.getProperty(FILE_PROPERTY);
+
+        if (file == null) return new StandardOutput();
+        return new RotatingFile(
+                Path.of(file),
+                Long.getLong(MAX_FILE_SIZE_PROPERTY, DEFAULT_MAX_FILE_SIZE),
+                Integer.getInteger(MAX_FILES_PROPERTY, DEFAULT_MAX_FILES)
+        );
+    }
+
+    // Returns the number of entries the ring buffer holds.
+    public int capacity() {
+        return slots.length;
+    }
+
+    // Starts the drain thread, if it isn't already running.
+    //
+    // This isn't done by the constructor, since Weld may construct instances
+    // for its own purposes, e.g., to create client proxies.
+    public synchronized void start() {
+        if (drainer != null || closed) return;
+
+        drainer = Thread.ofPlatform()
+                .name("strcalc-access-log")
+                .daemon()
+                .start(this::drainContinuously);
+    }
+
+    // Adds an entry to the ring buffer, or counts it as dropped if it's full.
+    //
+    // Never blocks, and returns false if the entry was dropped.
+    public boolean offer(Entry entry) {
+        long pos = tail.get();
+
+        while (true) {
+            final int i = (int) (pos & mask);
+            final long available = sequences.get(i) - pos;
+
+            if (available == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    slots[i] = entry;
+                    sequences.set(i, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (available < 0) {
+                dropped.increment();
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    public long getLogged() {
+        return logged.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    // Stops the drain thread after it writes any remaining entries.
+    @Override
+    public void close() throws IOException {
+        final Thread thread;
+
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            thread = drainer;
+        }
+
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        drain();
+        sink.close();
+    }
+
+    private void drainContinuously() {
+        while (!closed) {
+            LockSupport.parkNanos(DRAIN_INTERVAL_NANOS);
+            drain();
+        }
+    }
+
+    // Writes every entry currently in the ring buffer, plus a line reporting
+    // any newly dropped entries, and returns the number of entries written.
+    synchronized int drain() {
+        int count = 0;
+
+        for (var entry = poll(); entry != null; entry = poll()) {
+            format(entry, batch);
+            if (batch.length() >= MAX_BATCH_CHARS) write();
+            ++count;
+        }
+
+        final long droppedNow = dropped.sum();
+        if (droppedNow != droppedReported) {
+            batch.append("AccessLog dropped ")
+                    .append(droppedNow - droppedReported)
+                    .append(" entries\n");
+            droppedReported = droppedNow;
+        }
+
+        if (!batch.isEmpty()) write();
+        logged.add(count);
+        return count;
+    }
+
+    // Removes the oldest entry, or returns null if the ring buffer is empty.
+    //
+    // Only drain() calls this, so there's only ever one consumer.
+    private Entry poll() {
+        final int i = (int) (head & mask);
+        if (sequences.get(i) != head + 1) return null;
+
+        final var entry = slots[i];
+        slots[i] = null;
+        sequences.set(i, head + slots.length);
+        ++head;
+        return entry;
+    }
+
+    private void write() {
+        try {
+            sink.write(batch);
+        } catch (IOException e) {
+            if (!reportedWriteError) {
+                reportedWriteError = true;
+                LOGGER.log(Level.SEVERE, "failed to write access log", e);
+            }
+        }
+        batch.setLength(0);
+    }
+
+    // Appends the entry as a line in the Common Log Format:
+    //
+    //   %h %l %u %t "%r" %s %b
+    //
+    // - https://tomcat.apache.org/tomcat-10.1-doc/config/valve.html#Access_Log_Valve
+    void format(Entry e, StringBuilder out) {
+        out.append(e.remoteAddr())
+                .append(" - ")
+                .append(e.remoteUser() == null ? "-" : e.remoteUser())
+                .append(" [")
+                .append(timestamp(e.startMillis()))
+                .append("] \"")
+                .append(e.method())
+                .append(' ')
+                .append(e.requestUri());
+        if (e.queryString() != null) out.append('?').append(e.queryString());
+        out.append(' ')
+                .append(e.protocol())
+                .append("\" ")
+                .append(e.status())
+                .append(' ');
+
+        if (e.bytesSent() == 0) {
+            out.append('-');
+        } else {
+            out.append(e.bytesSent());
+        }
+        out.append('\n');
+    }
+
+    // Formats each second only once, since most entries in a batch share it.
+    private String timestamp(long millis) {
+        final long second = Math.floorDiv(millis, 1000);
+
+        if (second != lastSecond) {
+            lastSecond = second;
+            lastTimestamp = TIMESTAMP.format(Instant.ofEpochSecond(second));
+        }
+        return lastTimestamp;
+    }
+
+    // Writes to file descriptor 1 directly, bypassing System.out's lock.
+    //
+    // Never closes the descriptor, so that other output can still use it.
+    static class StandardOutput implements Sink {
+        private final Writer out = new BufferedWriter(
+                new OutputStreamWriter(
+                        new FileOutputStream(FileDescriptor.out),
+                        StandardCharsets.UTF_8
+                ),
+                MAX_BATCH_CHARS * 2
+        );
+
+        @Override
+        public void write(CharSequence batch) throws IOException {
+            out.append(batch).flush();
+        }
+    }
+
+    // Appends to a file, rotating it once it exceeds maxSize bytes.
+    static class RotatingFile implements Sink {
+        private final Path path;
+        private final long maxSize;
+        private final int maxFiles;
+        private Writer out;
+        private long size;
+
+        RotatingFile(Path path, long maxSize, int maxFiles) {
+            if (maxFiles < 1) {
+                throw new IllegalArgumentException(
+                        "maxFiles must be at least 1, got: " + maxFiles
+                );
+            }
+            this.path = path;
+            this.maxSize = maxSize;
+            this.maxFiles = maxFiles;
+        }
+
+        // Entries are nearly always ASCII, so this counts chars as bytes.
+        @Override
+        public void write(CharSequence batch) throws IOException {
+            if (out == null) open();
+            if (size != 0 && size + batch.length() > maxSize) rotate();
+
+            out.append(batch).flush();
+            size += batch.length();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (out != null) out.close();
+            out = null;
+        }
+
+        private void open() throws IOException {
+            out = Files.newBufferedWriter(
+                    path,
+                    StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND
+            );
+            size = Files.size(path);
+        }
+
+        // Renames path.(n - 1) to path.n, and so on, replacing the oldest.
+        private void rotate() throws IOException {
+            close();
+
+            for (int i = maxFiles - 1; i != 0; --i) {
+                final var older = rotated(i);
+                if (Files.exists(older)) {
+                    Files.move(
+                            older,
+                            rotated(i + 1),
+                            StandardCopyOption.REPLACE_EXISTING
+                    );
+                }
+            }
+            Files.move(path, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+            open();
+        }
+
+        Path rotated(int n) {
+            return path.resolveSibling(path.getFileName() + "." + n);
+        }
+    }
+}
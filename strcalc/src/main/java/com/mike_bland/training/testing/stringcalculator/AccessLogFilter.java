@@ -0,0 +1,96 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import jakarta.inject.Inject;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.FilterConfig;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import org.apache.catalina.Context;
+import org.apache.catalina.Globals;
+import org.apache.catalina.WebResourceRoot;
+
+import java.io.IOException;
+
+// Records every request in the AccessLog after the response is complete.
+//
+// Only a Tomcat Valve sees the final status and the number of bytes written,
+// so init() adds a BufferedAccessLogValve to the Context's pipeline, and
+// destroy() removes it. This is a Filter only so that WEB-INF/web.xml, the
+// Launcher, and TestTomcat can all apply it like any other filter.
+//
+// The request thread only captures an AccessLog.Entry and adds it to the
+// AccessLog's ring buffer. Formatting and writing happen on the AccessLog's
+// own thread.
+//
+// The valve sets the LOGGED_ATTRIBUTE request attribute, so that a Tomcat
+// AccessLogValve configured with conditionUnless="strcalc.accessLogged" skips
+// requests it already recorded. bin/update-tomcat-logging-config.sh
+// configures the valve that way.
+//
+// As with Servlet, Weld injects the AccessLog after Tomcat creates the filter
+// via its no-arg constructor.
+public class AccessLogFilter implements Filter {
+    public static final String LOGGED_ATTRIBUTE = "strcalc.accessLogged";
+
+    @Inject private AccessLog accessLog;
+    private Context context;
+    private BufferedAccessLogValve valve;
+
+    // No-arg constructor required for Tomcat startup.
+    public AccessLogFilter() {
+    }
+
+    // Allows tests and the Launcher to inject an AccessLog.
+    AccessLogFilter(AccessLog accessLog) {
+        this.accessLog = accessLog;
+    }
+
+    // Adding the valve to the running pipeline starts it, which starts the
+    // AccessLog.
+    @Override
+    public void init(FilterConfig config) throws ServletException {
+        context = tomcatContext(config.getServletContext());
+        valve = new BufferedAccessLogValve(accessLog);
+        context.getPipeline().addValve(valve);
+    }
+
+    // Removing the valve stops it, which writes any remaining entries when
+    // Tomcat stops the app.
+    @Override
+    public void destroy() {
+        context.getPipeline().removeValve(valve);
+    }
+
+    @Override
+    public void doFilter(
+            ServletRequest req, ServletResponse resp, FilterChain chain)
+            throws IOException, ServletException {
+        chain.doFilter(req, resp);
+    }
+
+    // Tomcat exposes every Context's resources as a ServletContext attribute,
+    // and the resources refer back to the Context.
+    private static Context tomcatContext(ServletContext servletContext)
+            throws ServletException {
+        final var resources = servletContext.getAttribute(
+                Globals.RESOURCES_ATTR
+        );
+
+        if (!(resources instanceof WebResourceRoot root)) {
+            throw new ServletException(
+                    "AccessLogFilter requires Tomcat, but found: " +
+                    servletContext.getServerInfo()
+            );
+        }
+        return root.getContext();
+    }
+}
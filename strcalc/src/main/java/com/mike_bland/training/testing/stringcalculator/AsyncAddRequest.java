@@ -0,0 +1,262 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Processes a single /add request without blocking a Tomcat connector thread.
+//
+// Used by Servlet.doPost() when the "async" init-param is "true":
+//
+// 1. The ReadListener callbacks copy the request body into a buffer as bytes
+//    arrive, returning the connector thread to the pool in between.
+// 2. onAllDataRead() hands the body to the executor (one virtual thread per
+//    request), which parses it and calculates the result.
+// 3. The WriteListener callbacks write the response as the client accepts it,
+//    then complete the request.
+//
+// A body larger than maxBodyBytes gets a 413 response, either before reading
+// it, if its Content-Length is too large, or as soon as it grows too large.
+// If the request times out or fails, the AsyncListener callbacks send a 503
+// or 500 response instead. All of these have the same {"error": ...} body as
+// a Servlet.CalculatorResponse, unless the response has already started.
+//
+// See:
+// - https://jakarta.ee/specifications/servlet/6.0/jakarta-servlet-spec-6.0#non-blocking-io
+class AsyncAddRequest
+        implements ReadListener, WriteListener, AsyncListener {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Servlet servlet;
+    private final Executor executor;
+    private final long maxBodyBytes;
+    private final AsyncContext ctx;
+    private final ServletInputStream in;
+    private final HttpServletResponse resp;
+    private final Servlet.CalculatorResponse respPayload;
+    private byte[] body = new byte[BUFFER_SIZE];
+    private int bodyLen;
+    private ServletOutputStream out;
+    private byte[] respBody;
+    private int written;
+
+    // Set by the first callback to begin sending a response, so that a
+    // timeout or error can't interleave its response with another.
+    private final AtomicBoolean responding = new AtomicBoolean();
+
+    private AsyncAddRequest(
+            Servlet servlet,
+            Executor executor,
+            long maxBodyBytes,
+            AsyncContext ctx,
+            ServletInputStream in,
+            HttpServletResponse resp,
+            Servlet.CalculatorResponse respPayload) {
+        this.servlet = servlet;
+        this.executor = executor;
+        this.maxBodyBytes = maxBodyBytes;
+        this.ctx = ctx;
+        this.in = in;
+        this.resp = resp;
+        this.respPayload = respPayload;
+    }
+
+    // Puts the request into asynchronous mode and begins reading its body.
+    static void start(
+            Servlet servlet,
+            Executor executor,
+            long timeoutMs,
+            long maxBodyBytes,
+            HttpServletRequest req,
+            HttpServletResponse resp) throws IOException {
+        if (req.getContentLengthLong() > maxBodyBytes) {
+            sendError(resp, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+                    tooLargeMessage(maxBodyBytes));
+            return;
+        }
+
+        // Reads the query string while the request is still in scope.
+        var respPayload = Servlet.CalculatorResponse.forRequest(req);
+        var ctx = req.startAsync();
+        ctx.setTimeout(timeoutMs);
+
+        var in = req.getInputStream();
+        var request = new AsyncAddRequest(
+                servlet, executor, maxBodyBytes, ctx, in, resp, respPayload
+        );
+        ctx.addListener(request);
+        in.setReadListener(request);
+    }
+
+    @Override
+    public void onDataAvailable() throws IOException {
+        while (in.isReady()) {
+            if (bodyLen == body.length) {
+                // Leaves room for one byte past the limit, to detect it.
+                body = Arrays.copyOf(body, (int) Math.min(
+                        body.length * 2L, maxBodyBytes + 1
+                ));
+            }
+            final int n = in.read(body, bodyLen, body.length - bodyLen);
+            if (n == -1) return;
+            bodyLen += n;
+
+            if (bodyLen > maxBodyBytes) {
+                fail(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+                        tooLargeMessage(maxBodyBytes));
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void onAllDataRead() {
+        if (!responding.get()) executor.execute(this::calculate);
+    }
+
+    // Parses the request body and calculates the result on the executor.
+    private void calculate() {
+        var respBytes = new ByteArrayOutputStream();
+
+        try {
+            try (var parser = Servlet.JSON.createParser(body, 0, bodyLen)) {
+                servlet.readRequest(parser, respPayload);
+            }
+            servlet.getMetrics().recordRequestBytes(bodyLen);
+            try (var gen = Servlet.JSON.createGenerator(
+                    respBytes, JsonEncoding.UTF8)) {
+                servlet.writeResponse(gen, respPayload);
+            }
+        } catch (IOException | RuntimeException e) {
+            onError(e);
+            return;
+        }
+
+        // The request has already timed out or failed.
+        if (!responding.compareAndSet(false, true)) return;
+
+        resp.setStatus(respPayload.error == null ?
+                HttpServletResponse.SC_OK :
+                HttpServletResponse.SC_BAD_REQUEST);
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+        resp.setContentLength(respBytes.size());
+        respBody = respBytes.toByteArray();
+
+        try {
+            out = resp.getOutputStream();
+            out.setWriteListener(this);
+        } catch (IOException | RuntimeException e) {
+            logAndComplete(e);
+        }
+    }
+
+    @Override
+    public void onWritePossible() throws IOException {
+        while (out.isReady()) {
+            if (written == respBody.length) {
+                ctx.complete();
+                return;
+            }
+            final int n = Math.min(BUFFER_SIZE, respBody.length - written);
+            out.write(respBody, written, n);
+            written += n;
+        }
+    }
+
+    // Ends the request with a 500 error, the same status a synchronous
+    // request produces when doPost() throws.
+    @Override
+    public void onError(Throwable t) {
+        ctx.getRequest().getServletContext().log("async /add failed", t);
+        fail(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "request failed");
+    }
+
+    // Ends a request that exceeded the timeoutMs passed to start() with a 503
+    // error, since the server was too busy to finish it in time.
+    @Override
+    public void onTimeout(AsyncEvent e) {
+        fail(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "request timed out");
+    }
+
+    // Ends a request that failed outside of the ReadListener and
+    // WriteListener callbacks, e.g., because the client disconnected.
+    @Override
+    public void onError(AsyncEvent e) {
+        ctx.getRequest().getServletContext().log(
+                "async /add failed", e.getThrowable()
+        );
+        fail(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "request failed");
+    }
+
+    @Override
+    public void onComplete(AsyncEvent e) {
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent e) {
+    }
+
+    // Sends an error response and completes the request, unless another
+    // callback has already begun sending the response. In that case, only
+    // completes the request, which truncates the response if it's unfinished.
+    private void fail(int status, String message) {
+        if (responding.compareAndSet(false, true)) {
+            try {
+                resp.reset();
+                sendError(resp, status, message);
+            } catch (IOException | RuntimeException e) {
+                logAndComplete(e);
+                return;
+            }
+        }
+        ctx.complete();
+    }
+
+    private void logAndComplete(Throwable t) {
+        ctx.getRequest().getServletContext().log("async /add failed", t);
+        ctx.complete();
+    }
+
+    // Writes {"error": message} with a blocking write, since the error bodies
+    // are small, and no WriteListener is set until calculate() succeeds.
+    private static void sendError(
+            HttpServletResponse resp, int status, String message)
+            throws IOException {
+        if (resp.isCommitted()) return;
+
+        resp.setStatus(status);
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+
+        try (var gen = Servlet.JSON.createGenerator(
+                resp.getOutputStream(), JsonEncoding.UTF8)) {
+            gen.writeStartObject();
+            gen.writeStringField("error", message);
+            gen.writeEndObject();
+        }
+    }
+
+    private static String tooLargeMessage(long maxBodyBytes) {
+        return "request body exceeds " + maxBodyBytes + " bytes";
+    }
+}
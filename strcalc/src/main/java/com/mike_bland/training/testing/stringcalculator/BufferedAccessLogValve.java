@@ -0,0 +1,94 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import jakarta.servlet.ServletException;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.valves.ValveBase;
+
+import java.io.IOException;
+
+// Records every request to its Context in an AccessLog, once Tomcat has
+// finished the response.
+//
+// A Filter only sees the response when the filter chain returns, before
+// Tomcat applies error pages, flushes the body, and sets any Content-Length
+// header. Tomcat calls log() afterwards, for synchronous and asynchronous
+// requests alike, the same way it calls its own AccessLogValve. By then the
+// status is final, and Response.getBytesWritten() counts the body, whether or
+// not the response had a Content-Length header.
+//
+// invoke() sets AccessLogFilter.LOGGED_ATTRIBUTE, so that a Tomcat
+// AccessLogValve configured with conditionUnless="strcalc.accessLogged" skips
+// requests this valve records. Tomcat calls the Context's access logs before
+// the Host's, so the attribute is always set by then.
+//
+// Starting the valve starts the AccessLog's drain thread, and stopping it
+// closes the AccessLog, writing any remaining entries.
+class BufferedAccessLogValve extends ValveBase
+        implements org.apache.catalina.AccessLog {
+    private final AccessLog accessLog;
+
+    // Ignored, since this valve never reads the attributes RemoteIpValve
+    // sets, but required by org.apache.catalina.AccessLog.
+    private boolean requestAttributesEnabled;
+
+    BufferedAccessLogValve(AccessLog accessLog) {
+        super(true);
+        this.accessLog = accessLog;
+    }
+
+    @Override
+    public void invoke(Request req, Response resp)
+            throws IOException, ServletException {
+        req.setAttribute(AccessLogFilter.LOGGED_ATTRIBUTE, Boolean.TRUE);
+        getNext().invoke(req, resp);
+    }
+
+    @Override
+    public void log(Request req, Response resp, long time) {
+        accessLog.offer(new AccessLog.Entry(
+                req.getCoyoteRequest().getStartTime(),
+                req.getRemoteAddr(),
+                req.getRemoteUser(),
+                req.getMethod(),
+                req.getRequestURI(),
+                req.getQueryString(),
+                req.getProtocol(),
+                resp.getStatus(),
+                resp.getBytesWritten(false)
+        ));
+    }
+
+    @Override
+    public void setRequestAttributesEnabled(boolean enabled) {
+        requestAttributesEnabled = enabled;
+    }
+
+    @Override
+    public boolean getRequestAttributesEnabled() {
+        return requestAttributesEnabled;
+    }
+
+    @Override
+    protected synchronized void startInternal() throws LifecycleException {
+        accessLog.start();
+        super.startInternal();
+    }
+
+    @Override
+    protected synchronized void stopInternal() throws LifecycleException {
+        super.stopInternal();
+        try {
+            accessLog.close();
+        } catch (IOException e) {
+            containerLog.error("failed to close access log", e);
+        }
+    }
+}
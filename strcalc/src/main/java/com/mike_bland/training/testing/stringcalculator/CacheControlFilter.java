@@ -0,0 +1,61 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+// Sets Cache-Control headers for the frontend assets built by Vite.
+//
+// Vite puts a hash of each file's content in its name under ASSETS_PREFIX, so
+// a file at a given URL never changes. Browsers can cache these files for a
+// year without ever revalidating them, so page loads after the first don't
+// compete with /add requests for connector threads.
+//
+// index.html must always be revalidated instead, since it names the current
+// assets. The revalidation request is cheap, since the server's strong ETag
+// lets it answer with 304 Not Modified until the next deployment.
+//
+// WEB-INF/web.xml maps this filter to index.html and ASSETS_PREFIX. It only
+// marks existing assets immutable, so browsers don't cache a 404 for an asset
+// that a later deployment adds.
+public class CacheControlFilter implements Filter {
+    static final String ASSETS_PREFIX = "/assets/";
+    static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    static final String REVALIDATE = "no-cache";
+
+    @Override
+    public void doFilter(
+            ServletRequest req, ServletResponse resp, FilterChain chain)
+            throws IOException, ServletException {
+        var httpReq = (HttpServletRequest) req;
+        var value = cacheControl(httpReq);
+
+        if (value != null) {
+            ((HttpServletResponse) resp).setHeader("Cache-Control", value);
+        }
+        chain.doFilter(req, resp);
+    }
+
+    // Returns the Cache-Control value for the request, or null for none.
+    private static String cacheControl(HttpServletRequest req)
+            throws IOException {
+        var pathInfo = req.getPathInfo();
+        var path = req.getServletPath() + (pathInfo == null ? "" : pathInfo);
+
+        if (!path.startsWith(ASSETS_PREFIX)) return REVALIDATE;
+        return req.getServletContext().getResource(path) != null ?
+                IMMUTABLE : null;
+    }
+}
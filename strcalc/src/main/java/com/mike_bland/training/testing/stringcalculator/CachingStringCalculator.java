@@ -0,0 +1,75 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import jakarta.decorator.Decorator;
+import jakarta.decorator.Delegate;
+import jakarta.inject.Inject;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+// Memoizes the results of the StringCalculator it decorates.
+//
+// Weld applies this decorator to the production StringCalculator bean because
+// it's listed under <decorators> in WEB-INF/beans.xml. Removing it from that
+// list disables caching without any code changes.
+//
+// See StringCalculatorCache for the eviction policy and size limits.
+@Decorator
+public class CachingStringCalculator implements StringCalculator {
+    private final StringCalculator delegate;
+    private final StringCalculatorCache cache;
+
+    @Inject
+    CachingStringCalculator(
+            @Delegate StringCalculator delegate, StringCalculatorCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @Override
+    public int add(String numbers) throws StringCalculator.Exception {
+        return cache.add(numbers, delegate);
+    }
+
+    @Override
+    public int add(CharSequence numbers) throws StringCalculator.Exception {
+        return cache.add(numbers, delegate);
+    }
+
+    // Bypasses the cache, which only holds int results.
+    @Override
+    public void addExact(CharSequence numbers, Sum sum)
+            throws StringCalculator.Exception {
+        delegate.addExact(numbers, sum);
+    }
+
+    @Override
+    public boolean tryAdd(CharSequence numbers, Result result) {
+        return cache.tryAdd(numbers, delegate, result);
+    }
+
+    @Override
+    public boolean tryAddExact(CharSequence numbers, Sum sum, Result result) {
+        return delegate.tryAddExact(numbers, sum, result);
+    }
+
+    // Bypasses the cache, which would have to read the whole stream into
+    // memory to use it as a key.
+    @Override
+    public boolean tryAdd(InputStream body, Result result)
+            throws IOException {
+        return delegate.tryAdd(body, result);
+    }
+
+    @Override
+    public boolean tryAddExact(InputStream body, Sum sum, Result result)
+            throws IOException {
+        return delegate.tryAddExact(body, sum, result);
+    }
+}
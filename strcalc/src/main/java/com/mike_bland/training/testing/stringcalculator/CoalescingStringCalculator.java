@@ -0,0 +1,216 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import jakarta.decorator.Decorator;
+import jakarta.decorator.Delegate;
+import jakarta.inject.Inject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+// Shares one computation between concurrent calls with identical inputs.
+//
+// The first call for a given input computes the result, and any identical
+// call arriving before it finishes waits for and returns that same result,
+// or reports the same error. Once the computation
+// finishes, the next call for that input starts a new one. This only removes
+// duplicate work from bursts of identical requests; it doesn't cache.
+//
+// StringCalculatorCache already does this for the inputs it caches, since
+// Caffeine computes each missing entry only once. This decorator covers the
+// rest: inputs too long for the cache, and addExact(), which bypasses it.
+// Inputs shorter than MINIMUM_INPUT_LENGTH_PROPERTY are computed directly,
+// since summing them takes less time than coordinating threads would, e.g.:
+//
+//   -Dstrcalc.coalesce.minimumInputLength=4096
+//
+// Weld applies this decorator to the production StringCalculator bean because
+// it's listed under <decorators> in WEB-INF/beans.xml, after
+// CachingStringCalculator, so cache hits never reach it.
+@Decorator
+public class CoalescingStringCalculator implements StringCalculator {
+    public static final String MINIMUM_INPUT_LENGTH_PROPERTY =
+            "strcalc.coalesce.minimumInputLength";
+
+    static final int DEFAULT_MINIMUM_INPUT_LENGTH = 1024;
+
+    private interface Computation<T> {
+        T compute();
+    }
+
+    // Futures for the computations currently in flight, keyed by input.
+    //
+    // ConcurrentHashMap.putIfAbsent() elects exactly one leader per input
+    // without a lock, and only locks the bin containing that key.
+    //
+    // Computations report invalid input in their Result instead of throwing,
+    // so only unexpected RuntimeExceptions complete a future exceptionally.
+    private static class Flights<T> {
+        private final ConcurrentHashMap<String, CompletableFuture<T>>
+                inFlight = new ConcurrentHashMap<>();
+
+        T run(String key, Computation<T> computation) {
+            final var flight = new CompletableFuture<T>();
+            final var leader = inFlight.putIfAbsent(key, flight);
+
+            if (leader != null) return await(leader);
+
+            try {
+                final var result = computation.compute();
+                flight.complete(result);
+                return result;
+            } catch (RuntimeException e) {
+                flight.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, flight);
+            }
+        }
+
+        private static <T> T await(CompletableFuture<T> leader) {
+            boolean interrupted = false;
+
+            try {
+                while (true) {
+                    try {
+                        return leader.get();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(
+                        "coalesced computation failed", e.getCause()
+                );
+            } finally {
+                if (interrupted) Thread.currentThread().interrupt();
+            }
+        }
+
+        int size() {
+            return inFlight.size();
+        }
+    }
+
+    // The shared outcome of a coalesced tryAddExact().
+    private record ExactAddition(Result result, Sum sum) {
+    }
+
+    private final StringCalculator delegate;
+    private final int minimumInputLength;
+    private final Flights<Result> additions = new Flights<>();
+    private final Flights<ExactAddition> exactAdditions = new Flights<>();
+
+    @Inject
+    CoalescingStringCalculator(@Delegate StringCalculator delegate) {
+        this(
+                delegate,
+                Integer.getInteger(
+                        MINIMUM_INPUT_LENGTH_PROPERTY,
+                        DEFAULT_MINIMUM_INPUT_LENGTH
+                )
+        );
+    }
+
+    CoalescingStringCalculator(
+            StringCalculator delegate, int minimumInputLength) {
+        this.delegate = delegate;
+        this.minimumInputLength = minimumInputLength;
+    }
+
+    @Override
+    public int add(String numbers) throws StringCalculator.Exception {
+        return add((CharSequence) numbers);
+    }
+
+    @Override
+    public int add(CharSequence numbers) throws StringCalculator.Exception {
+        if (!shouldCoalesce(numbers)) return delegate.add(numbers);
+
+        final var result = new Result();
+        tryAdd(numbers, result);
+        return result.valueOrThrow();
+    }
+
+    @Override
+    public void addExact(CharSequence numbers, Sum sum)
+            throws StringCalculator.Exception {
+        if (!shouldCoalesce(numbers)) {
+            delegate.addExact(numbers, sum);
+            return;
+        }
+
+        final var result = new Result();
+        tryAddExact(numbers, sum, result);
+        result.valueOrThrow();
+    }
+
+    // Copies numbers into a String to use as the key, since a CharSequence
+    // such as a CharBuffer may change after this returns.
+    //
+    // Every caller, including the leader, copies the shared Result into its
+    // own, since each caller may reuse its Result after this returns.
+    @Override
+    public boolean tryAdd(CharSequence numbers, Result result) {
+        if (!shouldCoalesce(numbers)) return delegate.tryAdd(numbers, result);
+
+        final var key = numbers.toString();
+        result.copyFrom(additions.run(key, () -> {
+            var shared = new Result();
+            delegate.tryAdd(key, shared);
+            return shared;
+        }));
+        return result.isOk();
+    }
+
+    // Copies the shared Sum into each caller's `sum` for the same reason.
+    @Override
+    public boolean tryAddExact(CharSequence numbers, Sum sum, Result result) {
+        if (!shouldCoalesce(numbers)) {
+            return delegate.tryAddExact(numbers, sum, result);
+        }
+
+        final var key = numbers.toString();
+        final var shared = exactAdditions.run(key, () -> {
+            var addition = new ExactAddition(new Result(), new Sum());
+            delegate.tryAddExact(key, addition.sum(), addition.result());
+            return addition;
+        });
+
+        result.copyFrom(shared.result());
+        sum.reset();
+        sum.add(shared.sum());
+        return result.isOk();
+    }
+
+    // Passes streams straight to the delegate, since the input isn't known
+    // until it's been read, and so can't be a key.
+    @Override
+    public boolean tryAdd(InputStream body, Result result)
+            throws IOException {
+        return delegate.tryAdd(body, result);
+    }
+
+    @Override
+    public boolean tryAddExact(InputStream body, Sum sum, Result result)
+            throws IOException {
+        return delegate.tryAddExact(body, sum, result);
+    }
+
+    // Returns the number of distinct inputs currently being computed.
+    int inFlight() {
+        return additions.size() + exactAdditions.size();
+    }
+
+    private boolean shouldCoalesce(CharSequence numbers) {
+        return numbers != null && numbers.length() >= minimumInputLength;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import jakarta.inject.Inject;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+// Sheds requests beyond the ConcurrencyLimiter's limit with a 503 response.
+//
+// Rejecting excess requests immediately, with a Retry-After header, keeps
+// latency bounded for the requests already admitted. Without it, an
+// overloaded server queues every request, and all of them slow down.
+//
+// The rejection body has the same {"error": ...} form as a
+// Servlet.CalculatorResponse, so clients can handle it like any other error.
+//
+// Requests that the Servlet processes asynchronously remain in flight until
+// they complete, not just until doFilter() returns.
+//
+// WEB-INF/web.xml maps this filter to the /add endpoints. As with Servlet,
+// Weld injects the limiter after Tomcat creates the filter via its no-arg
+// constructor.
+public class ConcurrencyLimitFilter implements Filter {
+    static final String RETRY_AFTER_SECONDS = "1";
+    static final String OVERLOADED_RESPONSE =
+            "{\"error\":\"server overloaded, retry later\"}";
+
+    @Inject private ConcurrencyLimiter limiter;
+
+    // No-arg constructor required for Tomcat startup.
+    public ConcurrencyLimitFilter() {
+    }
+
+    // Allows tests and the Launcher to inject a ConcurrencyLimiter.
+    ConcurrencyLimitFilter(ConcurrencyLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    @Override
+    public void doFilter(
+            ServletRequest req, ServletResponse resp, FilterChain chain)
+            throws IOException, ServletException {
+        if (!limiter.tryAcquire()) {
+            reject((HttpServletResponse) resp);
+            return;
+        }
+
+        final long start = System.nanoTime();
+        boolean released = true;
+
+        try {
+            chain.doFilter(req, resp);
+
+            // Listeners added before the dispatch returns are notified even
+            // if the request completes before then.
+            if (req.isAsyncStarted()) {
+                req.getAsyncContext().addListener(new Release(start));
+                released = false;
+            }
+        } finally {
+            if (released) limiter.release(System.nanoTime() - start);
+        }
+    }
+
+    private static void reject(HttpServletResponse resp) throws IOException {
+        resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        resp.setHeader("Retry-After", RETRY_AFTER_SECONDS);
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+        resp.getWriter().print(OVERLOADED_RESPONSE);
+    }
+
+    // Releases an asynchronous request when it completes, fails, or times
+    // out. Tomcat calls onComplete() after onError() or onTimeout(), so only
+    // onComplete() releases.
+    private class Release implements AsyncListener {
+        private final long start;
+
+        Release(long start) {
+            this.start = start;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent e) {
+            limiter.release(System.nanoTime() - start);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent e) {
+        }
+
+        @Override
+        public void onError(AsyncEvent e) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent e) {
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Limits the number of requests in flight, adapting the limit to latency.
+//
+// When requests arrive faster than the server can process them, they queue,
+// and every request's latency grows, whether on Tomcat's connector or inside
+// the Servlet. Past a point, admitting more requests only adds queueing
+// delay. This estimates that point from observed latencies using the
+// gradient algorithm from Netflix's concurrency-limits library:
+//
+// - https://github.com/Netflix/concurrency-limits
+//
+// It tracks a short and a long exponentially weighted moving average of
+// request latency. While the short average stays within TOLERANCE of the
+// long one, the limit grows by about QUEUE_SIZE per update. As queueing
+// pushes the short average higher, the ratio between them, the gradient,
+// shrinks the limit proportionally. The limit only grows while at least half
+// of it is in use, so an idle server doesn't accumulate an unearned limit.
+//
+// The limits are read from system properties, e.g.:
+//
+//   -Dstrcalc.limit.max=200
+//
+// ConcurrencyLimitFilter applies this to /add requests, and MetricsServlet
+// reports its state.
+@ApplicationScoped
+public class ConcurrencyLimiter {
+    public static final String INITIAL_LIMIT_PROPERTY = "strcalc.limit.initial";
+    public static final String MIN_LIMIT_PROPERTY = "strcalc.limit.min";
+    public static final String MAX_LIMIT_PROPERTY = "strcalc.limit.max";
+
+    static final int DEFAULT_INITIAL_LIMIT = 20;
+    static final int DEFAULT_MIN_LIMIT = 8;
+    static final int DEFAULT_MAX_LIMIT = 500;
+
+    // How much higher than the long-term average latency may rise before
+    // the limit shrinks.
+    static final double TOLERANCE = 1.5;
+
+    // How many requests may queue beyond those the latency says the server
+    // can handle, which lets the limit probe for more capacity.
+    static final int QUEUE_SIZE = 4;
+
+    // How much of each newly computed limit to apply, damping oscillation.
+    static final double SMOOTHING = 0.2;
+
+    // Weights of each new sample in the short and long latency averages,
+    // equivalent to windows of about 10 and 600 samples.
+    static final double SHORT_WEIGHT = 2.0 / (10 + 1);
+    static final double LONG_WEIGHT = 2.0 / (600 + 1);
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    // Guarded by `this`, except that limit is also read without the lock.
+    private double estimatedLimit;
+    private volatile int limit;
+    private double shortLatency;
+    private double longLatency;
+
+    public ConcurrencyLimiter() {
+        this(
+                Integer.getInteger(
+                        INITIAL_LIMIT_PROPERTY, DEFAULT_INITIAL_LIMIT
+                ),
+                Integer.getInteger(MIN_LIMIT_PROPERTY, DEFAULT_MIN_LIMIT),
+                Integer.getInteger(MAX_LIMIT_PROPERTY, DEFAULT_MAX_LIMIT)
+        );
+    }
+
+    ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || minLimit > maxLimit) {
+            throw new IllegalArgumentException(String.format(
+                    "limits must satisfy 1 <= min <= max, got: %d, %d",
+                    minLimit, maxLimit
+            ));
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.estimatedLimit = clamp(initialLimit);
+        this.limit = (int) estimatedLimit;
+    }
+
+    // Admits a request if fewer than getLimit() requests are in flight.
+    //
+    // Each successful call must be followed by exactly one release().
+    public boolean tryAcquire() {
+        while (true) {
+            final int current = inFlight.get();
+
+            if (current >= limit) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                accepted.increment();
+                return true;
+            }
+        }
+    }
+
+    // Ends an admitted request that took latencyNanos, and updates the limit.
+    public void release(long latencyNanos) {
+        final int current = inFlight.getAndDecrement();
+        update(Math.max(latencyNanos, 1), current);
+    }
+
+    private synchronized void update(long latencyNanos, int inFlight) {
+        if (longLatency == 0) {
+            shortLatency = latencyNanos;
+            longLatency = latencyNanos;
+        } else {
+            shortLatency += SHORT_WEIGHT * (latencyNanos - shortLatency);
+            longLatency += LONG_WEIGHT * (latencyNanos - longLatency);
+        }
+
+        // Lets the long average recover quickly after a sustained overload
+        // has inflated it, instead of waiting for hundreds of samples.
+        if (longLatency / shortLatency > 2) longLatency *= 0.95;
+
+        // Latency says nothing about capacity beyond what's in use.
+        if (inFlight < estimatedLimit / 2) return;
+
+        final double gradient = Math.max(
+                0.5, Math.min(1.0, TOLERANCE * longLatency / shortLatency)
+        );
+        final double newLimit = estimatedLimit * gradient + QUEUE_SIZE;
+
+        estimatedLimit = clamp(
+                estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING
+        );
+        limit = (int) estimatedLimit;
+    }
+
+    private double clamp(double newLimit) {
+        return Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getAccepted() {
+        return accepted.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+}
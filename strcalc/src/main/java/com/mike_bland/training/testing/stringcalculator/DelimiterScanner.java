@@ -0,0 +1,75 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+// Locates the default delimiters in UTF-8 input for Utf8StringCalculator.
+//
+// Each call examines up to BLOCK_SIZE bytes and returns a bit mask with bit i
+// set if the byte at pos + i is ',' or '\n'. If any byte in the block is
+// neither a delimiter nor an ASCII digit, it returns INVALID instead, and
+// Utf8StringCalculator falls back to StreamingStringCalculator to report the
+// error.
+//
+// best() returns a VectorDelimiterScanner if the JVM was started with
+// "--add-modules jdk.incubator.vector", and a Scalar scanner otherwise.
+// VectorDelimiterScanner lives in the separate src/vector/java source set,
+// since it can't compile without that option, so best() loads it by name.
+interface DelimiterScanner {
+    int BLOCK_SIZE = Long.SIZE;
+
+    // Every bit set would mean BLOCK_SIZE delimiters in a row, which is
+    // invalid input anyway, so this can't hide a valid block.
+    long INVALID = -1L;
+
+    String VECTOR_MODULE = "jdk.incubator.vector";
+    String VECTOR_SCANNER =
+            DelimiterScanner.class.getPackageName() + ".VectorDelimiterScanner";
+
+    // Scans [pos, min(pos + BLOCK_SIZE, end)).
+    long delimiters(byte[] bytes, int pos, int end);
+
+    static DelimiterScanner best() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+            return new Scalar();
+        }
+
+        try {
+            final var vector = Class.forName(VECTOR_SCANNER);
+
+            if ((boolean) vector.getDeclaredMethod("isAccelerated")
+                    .invoke(null)) {
+                return (DelimiterScanner) vector.getDeclaredConstructor()
+                        .newInstance();
+            }
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // Fall through to the Scalar scanner, e.g., if the classpath
+            // doesn't include src/vector/java.
+        }
+        return new Scalar();
+    }
+
+    // Examines one byte at a time, for JVMs without the Vector API, and for
+    // the tail of the input shorter than a full vector.
+    final class Scalar implements DelimiterScanner {
+        @Override
+        public long delimiters(byte[] bytes, int pos, int end) {
+            final int n = Math.min(BLOCK_SIZE, end - pos);
+            long mask = 0;
+
+            for (int i = 0; i != n; ++i) {
+                final byte b = bytes[pos + i];
+
+                if (b == ',' || b == '\n') {
+                    mask |= 1L << i;
+                } else if (b < '0' || b > '9') {
+                    return INVALID;
+                }
+            }
+            return mask;
+        }
+    }
+}
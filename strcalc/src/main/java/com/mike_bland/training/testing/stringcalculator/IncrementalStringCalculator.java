@@ -0,0 +1,442 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Sums numbers from a UTF-8 stream as it arrives, using a fixed-size buffer
+// whatever the size of the input.
+//
+// The other StringCalculators need the whole input in memory at once. This
+// one decodes BUFFER_SIZE bytes at a time into a buffer of BUFFER_SIZE chars,
+// keeping a running sum, so a request body of hundreds of megabytes, e.g.,
+// one sent with "Transfer-Encoding: chunked", needs no more memory than a
+// short one. Only a custom delimiter header, and the message listing any
+// negative numbers, are ever held in full, and each has a size limit.
+//
+// Accepts the same input format and reports the same errors as
+// StreamingStringCalculator, with the same messages and error indexes (in
+// chars, not bytes). Invalid UTF-8 decodes to U+FFFD, just as it does when
+// decoding the input into a String first. The exceptions are the limits:
+//
+// - A custom delimiter header longer than MAX_HEADER_LENGTH chars is reported
+//   as unterminated at that index.
+// - The "negatives not allowed" message stops listing negative numbers once
+//   it reaches MAX_NEGATIVES_LENGTH chars, and ends with NEGATIVES_TRUNCATED.
+//
+// Reads with blocking I/O. Each call allocates its own buffers, so one
+// instance can serve any number of threads.
+public class IncrementalStringCalculator {
+    static final int BUFFER_SIZE = 8192;
+    static final int MAX_HEADER_LENGTH = 1024;
+    static final int MAX_NEGATIVES_LENGTH = 1024;
+    static final String NEGATIVES_TRUNCATED = ", ...";
+
+    private static final char[][] DEFAULT_DELIMITERS = {{','}};
+    private static final long FAILED = StreamingStringCalculator.FAILED;
+
+    private final int bufferSize;
+
+    public IncrementalStringCalculator() {
+        this(BUFFER_SIZE);
+    }
+
+    // Allows tests to split the input at every possible position.
+    //
+    // bufferSize must hold the longest UTF-8 sequence. The char buffer grows
+    // beyond bufferSize if necessary to hold the header or a delimiter.
+    IncrementalStringCalculator(int bufferSize) {
+        if (bufferSize < 4) {
+            throw new IllegalArgumentException(
+                    "bufferSize must be at least 4, got " + bufferSize
+            );
+        }
+        this.bufferSize = bufferSize;
+    }
+
+    // Like StringCalculator.tryAdd(), for the UTF-8 contents of `body`.
+    //
+    // Reads until the end of `body`, unless it finds an error first, but
+    // doesn't close it.
+    public boolean tryAdd(InputStream body, Result result) throws IOException {
+        return tryAdd(source(body), result);
+    }
+
+    public boolean tryAdd(ReadableByteChannel body, Result result)
+            throws IOException {
+        return tryAdd(body::read, result);
+    }
+
+    // Like StringCalculator.tryAddExact(), for the UTF-8 contents of `body`.
+    public boolean tryAddExact(InputStream body, Sum sum, Result result)
+            throws IOException {
+        return tryAddExact(source(body), sum, result);
+    }
+
+    public boolean tryAddExact(
+            ReadableByteChannel body, Sum sum, Result result)
+            throws IOException {
+        return tryAddExact(body::read, sum, result);
+    }
+
+    private boolean tryAdd(Source body, Result result) throws IOException {
+        final long sum = sum(
+                new Input(body, bufferSize), Integer.MAX_VALUE, null, result
+        );
+
+        if (sum == FAILED) return false;
+        if (sum > Integer.MAX_VALUE) {
+            return StreamingStringCalculator.fail(
+                    result, Result.Error.SUM_TOO_LARGE, -1, Integer.MAX_VALUE
+            );
+        }
+        result.succeed((int) sum);
+        return true;
+    }
+
+    private boolean tryAddExact(Source body, Sum sum, Result result)
+            throws IOException {
+        sum.reset();
+        final long partial = sum(
+                new Input(body, bufferSize), Long.MAX_VALUE, sum, result
+        );
+
+        if (partial == FAILED) return false;
+        sum.add(partial);
+        result.succeed(0);
+        return true;
+    }
+
+    // Reads bytes into `dst`, returning the number read, or -1 at the end.
+    private interface Source {
+        int read(ByteBuffer dst) throws IOException;
+    }
+
+    // Reads straight into the buffer's array, which Channels.newChannel()
+    // would copy through an array of its own.
+    private static Source source(InputStream in) {
+        return dst -> {
+            final int n = in.read(
+                    dst.array(),
+                    dst.arrayOffset() + dst.position(),
+                    dst.remaining()
+            );
+            if (n > 0) dst.position(dst.position() + n);
+            return n;
+        };
+    }
+
+    // Parses and sums numbers no greater than maxNumber, following the same
+    // steps as StreamingStringCalculator.sum() and sumRange().
+    //
+    // Returns the sum, less any amount already added to `carry`. When carry
+    // is null, the sum stops growing once it exceeds maxNumber, since a
+    // stream, unlike a CharSequence, may be long enough to overflow a long.
+    //
+    // Returns FAILED after recording any error in `result`.
+    private static long sum(
+            Input in, long maxNumber, Sum carry, Result result)
+            throws IOException {
+        var delimiters = DEFAULT_DELIMITERS;
+
+        if (in.peek(0) == '/' && in.peek(1) == '/') {
+            final var header = readHeader(in, result);
+            if (header == null) return FAILED;
+
+            final int hdrEnd = StreamingStringCalculator.parseHeader(
+                    header, StreamingStringCalculator.HEADER_PREFIX.length(),
+                    result
+            );
+            if (hdrEnd < 0) return FAILED;
+            delimiters = delimiters(header, hdrEnd);
+            in.advance(hdrEnd + 1);
+        }
+
+        if (in.peek() < 0) return 0;
+
+        final long maxBeforeDigit = maxNumber / 10;
+        StringBuilder negatives = null;
+        boolean truncated = false;
+        long sum = 0;
+
+        while (true) {
+            final long numStart = in.index();
+            final boolean negative = in.peek() == '-';
+            boolean listed = false;
+
+            // Collects each negative number as it goes, since the input can't
+            // be read a second time, as negativesNotAllowed() does. Stops at
+            // MAX_NEGATIVES_LENGTH, since the stream has no length limit.
+            if (negative) {
+                if (negatives == null) {
+                    negatives = new StringBuilder("negatives not allowed: ");
+                    listed = true;
+                } else if (negatives.length() < MAX_NEGATIVES_LENGTH) {
+                    negatives.append(", ");
+                    listed = true;
+                } else if (!truncated) {
+                    negatives.append(NEGATIVES_TRUNCATED);
+                    truncated = true;
+                }
+                if (listed) negatives.append('-');
+                in.advance(1);
+            }
+
+            final long digitsStart = in.index();
+            long value = 0;
+
+            for (int c = in.peek(); isDigit(c); c = in.peek()) {
+                value = value * 10 + (c - '0');
+
+                if (value > maxNumber || value < 0 ||
+                        (value > maxBeforeDigit && isDigit(in.peek(1)))) {
+                    return failAt(result, Result.Error.NUMBER_TOO_LARGE,
+                            numStart, maxNumber);
+                }
+                if (listed) negatives.append((char) c);
+                in.advance(1);
+            }
+
+            if (in.index() == digitsStart) {
+                return unexpected(in, delimiters, result);
+            }
+            if (!negative) {
+                if (sum > Long.MAX_VALUE - value) {
+                    carry.add(sum);
+                    sum = value;
+                } else {
+                    sum += value;
+                    if (carry == null && sum > maxNumber) sum = maxNumber + 1;
+                }
+            }
+            if (in.peek() < 0) break;
+
+            final int delimLen = matchDelimiter(in, delimiters);
+            if (delimLen == 0) return invalidCharacter(in, result);
+            in.advance(delimLen);
+
+            if (in.peek() < 0) {
+                return failAt(result, Result.Error.MISSING_NUMBER, in.index());
+            }
+        }
+
+        if (negatives != null) {
+            StreamingStringCalculator.fail(
+                    result,
+                    Result.Error.NEGATIVES_NOT_ALLOWED,
+                    negatives.toString()
+            );
+            return FAILED;
+        }
+        return sum;
+    }
+
+    // Returns the header, up to and including the first newline, or the
+    // whole input if it has none.
+    //
+    // Returns null after recording an error in `result` if the header is
+    // longer than MAX_HEADER_LENGTH.
+    private static String readHeader(Input in, Result result)
+            throws IOException {
+        for (int len = StreamingStringCalculator.HEADER_PREFIX.length();
+             len <= MAX_HEADER_LENGTH;
+             ++len) {
+            final int c = in.peek(len);
+            if (c < 0) return in.text(len);
+            if (c == '\n') return in.text(len + 1);
+        }
+        failAt(result, Result.Error.UNTERMINATED_HEADER, MAX_HEADER_LENGTH);
+        return null;
+    }
+
+    // Extracts the delimiters from a header already validated by
+    // StreamingStringCalculator.parseHeader().
+    private static char[][] delimiters(String header, int hdrEnd) {
+        final int hdrStart = StreamingStringCalculator.HEADER_PREFIX.length();
+
+        if (header.charAt(hdrStart) != '[') {
+            return new char[][]{{header.charAt(hdrStart)}};
+        }
+
+        final var delimiters = new ArrayList<char[]>();
+
+        for (int i = hdrStart; i != hdrEnd; ) {
+            final int delimEnd = header.indexOf(']', i);
+            delimiters.add(header.substring(i + 1, delimEnd).toCharArray());
+            i = delimEnd + 1;
+        }
+        return delimiters.toArray(new char[0][]);
+    }
+
+    // Returns the length of the delimiter at the current position, or 0 if
+    // none matches, as StreamingStringCalculator.matchDelimiter() does.
+    private static int matchDelimiter(Input in, char[][] delimiters)
+            throws IOException {
+        final int c = in.peek();
+        if (c == '\n') return 1;
+
+        int longest = 0;
+
+        for (var delim : delimiters) {
+            if (delim[0] == c && delim.length > longest &&
+                    in.startsWith(delim)) {
+                longest = delim.length;
+            }
+        }
+        return longest;
+    }
+
+    // Records the error for a position where a number should begin.
+    private static long unexpected(
+            Input in, char[][] delimiters, Result result) throws IOException {
+        if (in.peek() < 0 || matchDelimiter(in, delimiters) != 0) {
+            return failAt(result, Result.Error.MISSING_NUMBER, in.index());
+        }
+        return invalidCharacter(in, result);
+    }
+
+    private static long invalidCharacter(Input in, Result result)
+            throws IOException {
+        StreamingStringCalculator.fail(
+                result, Result.Error.INVALID_CHARACTER, in.index(),
+                (char) in.peek()
+        );
+        return FAILED;
+    }
+
+    private static long failAt(Result result, Result.Error error, long index) {
+        StreamingStringCalculator.fail(result, error, index);
+        return FAILED;
+    }
+
+    private static long failAt(
+            Result result, Result.Error error, long index, long limit) {
+        StreamingStringCalculator.fail(result, error, index, limit);
+        return FAILED;
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // Decodes a Source into a window of chars that slides over the input.
+    //
+    // peek() and startsWith() read ahead of the current position, refilling
+    // the window as needed. The parser only ever looks ahead by the length of
+    // the header or the longest delimiter, so the window only grows beyond
+    // its initial size for a header or delimiter longer than that.
+    private static final class Input {
+        private final Source source;
+        private final ByteBuffer bytes;
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8
+                .newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private char[] chars;
+        private int pos;
+        private int limit;
+
+        // The index of chars[0] within the whole input.
+        private long base;
+        private boolean endOfBytes;
+        private boolean endOfChars;
+
+        Input(Source source, int bufferSize) {
+            this.source = source;
+            this.bytes = ByteBuffer.allocate(bufferSize).flip();
+            this.chars = new char[bufferSize];
+        }
+
+        long index() {
+            return base + pos;
+        }
+
+        // Returns the current char, or -1 at the end of the input.
+        int peek() throws IOException {
+            return pos != limit || fill(1) ? chars[pos] : -1;
+        }
+
+        // Returns the char `ahead` chars past the current one, or -1 if the
+        // input ends before it.
+        int peek(int ahead) throws IOException {
+            return ensure(ahead + 1) ? chars[pos + ahead] : -1;
+        }
+
+        void advance(int n) {
+            pos += n;
+        }
+
+        boolean startsWith(char[] s) throws IOException {
+            if (!ensure(s.length)) return false;
+            return Arrays.equals(chars, pos, pos + s.length, s, 0, s.length);
+        }
+
+        // Returns `len` chars from the current position, which the caller
+        // has already peeked at.
+        String text(int len) {
+            return new String(chars, pos, len);
+        }
+
+        // Returns true once at least n chars follow the current position, or
+        // false if the input ends first.
+        private boolean ensure(int n) throws IOException {
+            while (limit - pos < n) {
+                if (!fill(n)) return false;
+            }
+            return true;
+        }
+
+        // Decodes more chars into the window, making room for n chars from
+        // the current position first. Returns false at the end of the input.
+        //
+        // The window always has room for at least n + 1 chars, so that a
+        // surrogate pair fits after n - 1 chars.
+        private boolean fill(int n) throws IOException {
+            if (endOfChars) return false;
+
+            final int remaining = limit - pos;
+            if (chars.length <= n) {
+                final var grown = new char[n + 1];
+                System.arraycopy(chars, pos, grown, 0, remaining);
+                chars = grown;
+            } else if (pos != 0) {
+                System.arraycopy(chars, pos, chars, 0, remaining);
+            }
+            base += pos;
+            pos = 0;
+            limit = remaining;
+
+            final var out = CharBuffer.wrap(chars, limit, chars.length - limit);
+
+            while (true) {
+                final var status = decoder.decode(bytes, out, endOfBytes);
+                if (out.position() != limit) break;
+
+                if (endOfBytes && status.isUnderflow()) {
+                    decoder.flush(out);
+                    endOfChars = out.position() == limit;
+                    break;
+                }
+                bytes.compact();
+                endOfBytes = source.read(bytes) < 0;
+                bytes.flip();
+            }
+            final boolean filled = out.position() != limit;
+            limit = out.position();
+            return filled;
+        }
+    }
+}
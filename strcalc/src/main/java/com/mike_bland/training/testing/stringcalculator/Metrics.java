@@ -0,0 +1,234 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Request counts, error counts, payload sizes, and latencies for the Servlet.
+//
+// Latencies and sizes are recorded into HdrHistogram Recorders, which are
+// wait-free for the recording threads. Each scrape moves the values recorded
+// since the last scrape into cumulative Histograms, which are then written as
+// Prometheus histograms by writePrometheus():
+//
+// - https://hdrhistogram.github.io/HdrHistogram/
+// - https://prometheus.io/docs/instrumenting/exposition_formats/
+//
+// MetricsServlet serves the result via GET /metrics.
+@ApplicationScoped
+public class Metrics {
+    public static final String CONTENT_TYPE =
+            "text/plain; version=0.0.4; charset=utf-8";
+
+    // The stages of processing a single calculation.
+    //
+    // Since Servlet.readRequest() passes the "numbers" value to the calculator
+    // before parsing completes, PARSE excludes the time spent in COMPUTE.
+    public enum Phase { PARSE, COMPUTE, SERIALIZE }
+
+    // Upper bounds of the latency histogram buckets, in nanoseconds.
+    static final long[] LATENCY_BUCKETS_NS =
+            bucketsFrom(1_000, 10_000_000_000L);
+
+    // Upper bounds of the request size histogram buckets, in bytes.
+    static final long[] SIZE_BUCKETS = {
+            64, 256, 1 << 10, 4 << 10, 16 << 10, 64 << 10,
+            256 << 10, 1 << 20, 4 << 20, 16 << 20, 64 << 20
+    };
+
+    private static final int SIGNIFICANT_DIGITS = 2;
+
+    private final ConcurrentMap<String, LongAdder> requests =
+            new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> errors =
+            new ConcurrentHashMap<>();
+    private final Map<Phase, Recorder> latencies = new EnumMap<>(Phase.class);
+    private final Map<Phase, Histogram> latencyTotals =
+            new EnumMap<>(Phase.class);
+    private final Recorder requestBytes = new Recorder(SIGNIFICANT_DIGITS);
+    private final Histogram requestBytesTotal =
+            new Histogram(SIGNIFICANT_DIGITS);
+    private volatile long startupMillis = -1;
+
+    public Metrics() {
+        for (var phase : Phase.values()) {
+            latencies.put(phase, new Recorder(SIGNIFICANT_DIGITS));
+            latencyTotals.put(phase, new Histogram(SIGNIFICANT_DIGITS));
+        }
+    }
+
+    public void recordRequest(String method, String path) {
+        requests.computeIfAbsent(
+                "method=\"%s\",path=\"%s\"".formatted(method, path),
+                k -> new LongAdder()
+        ).increment();
+    }
+
+    public void recordError(StringCalculator.Exception e) {
+        recordError(e.getClass());
+    }
+
+    // Records an error by the type of Exception that reported it, or that
+    // add() would have thrown, per Result.errorType().
+    public void recordError(Class<?> type) {
+        errors.computeIfAbsent(
+                "type=\"%s\"".formatted(typeName(type)),
+                k -> new LongAdder()
+        ).increment();
+    }
+
+    public void recordLatency(Phase phase, long nanos) {
+        latencies.get(phase).recordValue(Math.max(nanos, 0));
+    }
+
+    public void recordRequestBytes(long bytes) {
+        if (bytes >= 0) requestBytes.recordValue(bytes);
+    }
+
+    // Records the time from JVM start until the Servlet finished init().
+    //
+    // This is the cold start time, including Tomcat and Weld startup, which
+    // determines how quickly a new instance can begin serving requests.
+    public void recordStartup(long millis) {
+        startupMillis = millis;
+    }
+
+    // Writes every metric in the Prometheus text exposition format.
+    public synchronized void writePrometheus(Appendable out)
+            throws IOException {
+        writeHeader(out, "strcalc_requests_total", "counter",
+                "Requests received, by HTTP method and servlet path.");
+        writeCounters(out, "strcalc_requests_total", requests);
+
+        writeHeader(out, "strcalc_calculator_errors_total", "counter",
+                "StringCalculator.Exceptions thrown, by exception type.");
+        writeCounters(out, "strcalc_calculator_errors_total", errors);
+
+        final var latency = "strcalc_phase_duration_seconds";
+        writeHeader(out, latency, "histogram",
+                "Time spent parsing, computing, and serializing each " +
+                "calculation.");
+        for (var phase : Phase.values()) {
+            var total = latencyTotals.get(phase);
+            total.add(latencies.get(phase).getIntervalHistogram());
+            var label = "phase=\"%s\"".formatted(
+                    phase.name().toLowerCase(Locale.ROOT)
+            );
+            writeHistogram(out, latency, label, total, LATENCY_BUCKETS_NS, 9);
+        }
+
+        final var size = "strcalc_request_size_bytes";
+        writeHeader(out, size, "histogram", "Size of each request body.");
+        requestBytesTotal.add(requestBytes.getIntervalHistogram());
+        writeHistogram(out, size, "", requestBytesTotal, SIZE_BUCKETS, 0);
+
+        if (startupMillis >= 0) {
+            final var startup = "strcalc_startup_seconds";
+            writeHeader(out, startup, "gauge",
+                    "Time from JVM start until the Servlet was initialized.");
+            writeSample(out, startup, "", scaled(startupMillis, 3));
+        }
+    }
+
+    static void writeHeader(
+            Appendable out, String name, String type, String help)
+            throws IOException {
+        out.append("# HELP ").append(name).append(' ').append(help)
+                .append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type)
+                .append('\n');
+    }
+
+    static void writeSample(
+            Appendable out, String name, String labels, String value)
+            throws IOException {
+        out.append(name);
+        if (!labels.isEmpty()) out.append('{').append(labels).append('}');
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static void writeCounters(
+            Appendable out, String name, Map<String, LongAdder> counters)
+            throws IOException {
+        // Sort by labels so that the output is stable between scrapes.
+        for (var e : new TreeMap<>(counters).entrySet()) {
+            writeSample(out, name, e.getKey(), e.getValue().toString());
+        }
+    }
+
+    // Writes a cumulative Prometheus histogram.
+    //
+    // Bucket bounds and the sum are converted from recorded units by
+    // shifting the decimal point left by `scale` places, e.g. from
+    // nanoseconds to seconds when scale is 9. The sum is approximated from
+    // the HdrHistogram mean, since HdrHistogram doesn't track an exact sum.
+    private static void writeHistogram(
+            Appendable out,
+            String name,
+            String labels,
+            Histogram h,
+            long[] buckets,
+            int scale) throws IOException {
+        final var prefix = labels.isEmpty() ? "" : labels + ",";
+        final var count = h.getTotalCount();
+
+        for (var bound : buckets) {
+            writeSample(
+                    out,
+                    name + "_bucket",
+                    prefix + "le=\"%s\"".formatted(scaled(bound, scale)),
+                    Long.toString(count == 0 ?
+                            0 : h.getCountBetweenValues(0, bound))
+            );
+        }
+        writeSample(out, name + "_bucket", prefix + "le=\"+Inf\"",
+                Long.toString(count));
+        writeSample(out, name + "_sum", labels,
+                scaled(Math.round(h.getMean() * count), scale));
+        writeSample(out, name + "_count", labels, Long.toString(count));
+    }
+
+    private static String scaled(long value, int scale) {
+        return BigDecimal.valueOf(value, scale)
+                .stripTrailingZeros()
+                .toPlainString();
+    }
+
+    // Returns bucket bounds of 1, 2.5, and 5 times each power of ten from
+    // `min` up to `max`.
+    private static long[] bucketsFrom(long min, long max) {
+        final var bounds = new ArrayList<Long>();
+
+        for (long decade = min; decade <= max; decade *= 10) {
+            bounds.add(decade);
+            if (decade * 5 / 2 <= max) bounds.add(decade * 5 / 2);
+            if (decade * 5 <= max) bounds.add(decade * 5);
+        }
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    // Returns a class name without its package, e.g.
+    // "StreamingStringCalculator.Exception".
+    static String typeName(Class<?> c) {
+        return c.getName()
+                .substring(c.getPackageName().length() + 1)
+                .replace('$', '.');
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import jakarta.inject.Inject;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+// Serves Metrics, StringCalculatorCache statistics, ConcurrencyLimiter state,
+// and AccessLog counters for Prometheus scrapes.
+//
+// As with Servlet, Weld injects these fields after Tomcat creates the
+// MetricsServlet via its no-arg constructor.
+@WebServlet(MetricsServlet.ENDPOINT)
+public class MetricsServlet extends HttpServlet {
+    public static final String ENDPOINT = "/metrics";
+
+    @Inject private Metrics metrics;
+    @Inject private StringCalculatorCache cache;
+    @Inject private ConcurrencyLimiter limiter;
+    @Inject private AccessLog accessLog;
+
+    // No-arg constructor required for Tomcat startup.
+    public MetricsServlet() {
+    }
+
+    // Allows tests to inject Metrics, StringCalculatorCache,
+    // ConcurrencyLimiter, and AccessLog instances.
+    MetricsServlet(
+            Metrics metrics,
+            StringCalculatorCache cache,
+            ConcurrencyLimiter limiter,
+            AccessLog accessLog) {
+        this.metrics = metrics;
+        this.cache = cache;
+        this.limiter = limiter;
+        this.accessLog = accessLog;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+            throws IOException {
+        var body = new StringBuilder();
+
+        metrics.writePrometheus(body);
+        writeCacheStats(body);
+        writeLimiterState(body);
+        writeAccessLogCounters(body);
+
+        resp.setContentType(Metrics.CONTENT_TYPE);
+        resp.setHeader("Cache-Control", "no-store");
+        resp.getWriter().print(body);
+    }
+
+    // Reports the StringCalculatorCache counters, which only change when
+    // CachingStringCalculator is enabled in WEB-INF/beans.xml.
+    private void writeCacheStats(Appendable out) throws IOException {
+        var stats = cache.stats();
+
+        writeCounter(out, "strcalc_cache_hits_total",
+                "StringCalculatorCache lookups that found an entry.",
+                stats.hitCount());
+        writeCounter(out, "strcalc_cache_misses_total",
+                "StringCalculatorCache lookups that calculated a new entry.",
+                stats.missCount());
+        writeCounter(out, "strcalc_cache_evictions_total",
+                "StringCalculatorCache entries evicted to stay under the " +
+                "maximum weight.",
+                stats.evictionCount());
+
+        Metrics.writeHeader(out, "strcalc_cache_entries", "gauge",
+                "Approximate number of StringCalculatorCache entries.");
+        Metrics.writeSample(
+                out, "strcalc_cache_entries", "", Long.toString(cache.size())
+        );
+    }
+
+    // Reports the ConcurrencyLimiter state, which only changes for requests
+    // that pass through ConcurrencyLimitFilter.
+    private void writeLimiterState(Appendable out) throws IOException {
+        writeGauge(out, "strcalc_concurrency_limit",
+                "Requests ConcurrencyLimiter currently admits at once.",
+                limiter.getLimit());
+        writeGauge(out, "strcalc_concurrency_in_flight",
+                "Requests ConcurrencyLimiter has admitted that haven't " +
+                "finished.",
+                limiter.getInFlight());
+        writeCounter(out, "strcalc_concurrency_accepted_total",
+                "Requests ConcurrencyLimiter admitted.",
+                limiter.getAccepted());
+        writeCounter(out, "strcalc_concurrency_rejected_total",
+                "Requests ConcurrencyLimiter rejected with a 503.",
+                limiter.getRejected());
+    }
+
+    // Reports how many AccessLog entries were written or dropped, which only
+    // change for requests that pass through AccessLogFilter.
+    private void writeAccessLogCounters(Appendable out) throws IOException {
+        writeCounter(out, "strcalc_access_log_entries_total",
+                "Access log entries AccessLog has written.",
+                accessLog.getLogged());
+        writeCounter(out, "strcalc_access_log_dropped_total",
+                "Access log entries AccessLog dropped because its buffer " +
+                "was full.",
+                accessLog.getDropped());
+    }
+
+    private static void writeGauge(
+            Appendable out, String name, String help, long value)
+            throws IOException {
+        Metrics.writeHeader(out, name, "gauge", help);
+        Metrics.writeSample(out, name, "", Long.toString(value));
+    }
+
+    private static void writeCounter(
+            Appendable out, String name, String help, long value)
+            throws IOException {
+        Metrics.writeHeader(out, name, "counter", help);
+        Metrics.writeSample(out, name, "", Long.toString(value));
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Alternative;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// StreamingStringCalculator that sums very large inputs on a ForkJoinPool.
+//
+// Inputs shorter than THRESHOLD_PROPERTY characters use the sequential
+// implementation. Longer inputs are split into chunks that each end with the
+// last digit of a number. Since delimiters can't contain digits, every chunk
+// after the first begins with the delimiter following that number, and
+// StreamingStringCalculator.sumRange() can parse it independently.
+//
+// Results and errors are identical to the sequential implementation:
+//
+// - Syntax errors from earlier chunks take precedence over later chunks,
+//   matching the sequential "first syntax error by position" rule. A chunk
+//   may misparse if an earlier chunk contains a syntax error, but then the
+//   earlier error wins anyway.
+// - Any syntax error takes precedence over negative numbers, which are
+//   collected into a single message from the first negative number onward.
+// - The sum is checked against Integer.MAX_VALUE last.
+//
+// text/plain request bodies arrive as InputStreams, which this class passes
+// to a Utf8StringCalculator. That sums bodies of up to
+// Utf8StringCalculator.MAX_BODY_BYTES as raw bytes, using the Vector API if
+// the JVM enables it, and streams longer bodies instead.
+//
+// Weld injects this class instead of StreamingStringCalculator because it's
+// listed under <alternatives> in WEB-INF/beans.xml.
+@ApplicationScoped
+@Alternative
+public class ParallelStringCalculator extends StreamingStringCalculator {
+    public static final String THRESHOLD_PROPERTY =
+            "strcalc.parallel.threshold";
+
+    static final int DEFAULT_THRESHOLD = 1 << 20;
+    static final int MIN_CHUNK_SIZE = 1 << 16;
+
+    private final int threshold;
+    private final int minChunkSize;
+    private final ForkJoinPool pool;
+    private final Utf8StringCalculator utf8 = new Utf8StringCalculator();
+
+    public ParallelStringCalculator() {
+        this(
+                Integer.getInteger(THRESHOLD_PROPERTY, DEFAULT_THRESHOLD),
+                MIN_CHUNK_SIZE,
+                ForkJoinPool.commonPool()
+        );
+    }
+
+    ParallelStringCalculator(
+            int threshold, int minChunkSize, ForkJoinPool pool) {
+        this.threshold = threshold;
+        this.minChunkSize = minChunkSize;
+        this.pool = pool;
+    }
+
+    @Override
+    public boolean tryAdd(CharSequence numbers, Result result) {
+        if (numbers == null || numbers.length() < threshold) {
+            return super.tryAdd(numbers, result);
+        }
+
+        var sum = new Sum();
+        if (!sumInParallel(numbers, Integer.MAX_VALUE, sum, result)) {
+            return false;
+        }
+
+        if (!sum.fitsInLong() || sum.longValue() > Integer.MAX_VALUE) {
+            return fail(result, Result.Error.SUM_TOO_LARGE, -1,
+                    Integer.MAX_VALUE);
+        }
+        result.succeed((int) sum.longValue());
+        return true;
+    }
+
+    @Override
+    public boolean tryAddExact(CharSequence numbers, Sum sum, Result result) {
+        if (numbers == null || numbers.length() < threshold) {
+            return super.tryAddExact(numbers, sum, result);
+        }
+        sum.reset();
+        if (!sumInParallel(numbers, Long.MAX_VALUE, sum, result)) return false;
+        result.succeed(0);
+        return true;
+    }
+
+    @Override
+    public boolean tryAdd(InputStream body, Result result)
+            throws IOException {
+        return utf8.tryAdd(body, result);
+    }
+
+    @Override
+    public boolean tryAddExact(InputStream body, Sum sum, Result result)
+            throws IOException {
+        return utf8.tryAddExact(body, sum, result);
+    }
+
+    // Stores the sum of numbers no greater than maxNumber in `sum`.
+    //
+    // Returns false after recording any error in `result`.
+    private boolean sumInParallel(
+            CharSequence numbers, long maxNumber, Sum sum, Result result) {
+        final int end = numbers.length();
+        int pos = 0;
+        int hdrStart = -1;
+        int hdrEnd = -1;
+
+        if (startsWithHeader(numbers)) {
+            hdrStart = HEADER_PREFIX.length();
+            hdrEnd = parseHeader(numbers, hdrStart, result);
+            if (hdrEnd < 0) return false;
+            pos = hdrEnd + 1;
+        }
+
+        if (pos == end) return true;
+
+        final int chunkSize = Math.max(
+                minChunkSize, (end - pos) / (pool.getParallelism() * 4)
+        );
+        var partial = pool.invoke(new Chunk(
+                numbers, pos, end, true, hdrStart, hdrEnd, maxNumber, chunkSize
+        ));
+
+        if (partial.error != null) {
+            result.copyFrom(partial.error);
+            return false;
+        }
+        if (partial.firstNegative >= 0) {
+            return negativesNotAllowed(numbers, partial.firstNegative, result);
+        }
+        sum.add(partial.sum);
+        return true;
+    }
+
+    // The outcome of summing one or more adjacent chunks.
+    //
+    // Each chunk records its own error, if any, since chunks run
+    // concurrently and only the first by position is reported.
+    static class Partial {
+        final Sum sum;
+        int firstNegative = -1;
+        Result error;
+
+        Partial(Sum sum) {
+            this.sum = sum;
+        }
+
+        // Combines this Partial with the one for the chunks following it.
+        Partial append(Partial next) {
+            if (error != null) return this;
+            if (next.error != null) return next;
+            if (firstNegative < 0) firstNegative = next.firstNegative;
+            sum.add(next.sum);
+            return this;
+        }
+    }
+
+    // Sums [start, end), splitting it in two while it's longer than chunkSize.
+    static class Chunk extends RecursiveTask<Partial> {
+        private final CharSequence numbers;
+        private final int start;
+        private final int end;
+        private final boolean atNumber;
+        private final int hdrStart;
+        private final int hdrEnd;
+        private final long maxNumber;
+        private final int chunkSize;
+
+        Chunk(
+                CharSequence numbers,
+                int start,
+                int end,
+                boolean atNumber,
+                int hdrStart,
+                int hdrEnd,
+                long maxNumber,
+                int chunkSize) {
+            this.numbers = numbers;
+            this.start = start;
+            this.end = end;
+            this.atNumber = atNumber;
+            this.hdrStart = hdrStart;
+            this.hdrEnd = hdrEnd;
+            this.maxNumber = maxNumber;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected Partial compute() {
+            final int split = end - start > chunkSize ? findSplit() : -1;
+
+            if (split < 0) return computeDirectly();
+
+            var next = new Chunk(
+                    numbers, split, end, false,
+                    hdrStart, hdrEnd, maxNumber, chunkSize
+            );
+            next.fork();
+
+            return new Chunk(
+                    numbers, start, split, atNumber,
+                    hdrStart, hdrEnd, maxNumber, chunkSize
+            ).compute().append(next.join());
+        }
+
+        // Returns an index in (start, end) just past the last digit of a
+        // number, searching outward from the middle, or -1 if there is none.
+        private int findSplit() {
+            final int mid = start + (end - start) / 2;
+
+            for (int i = mid; i < end; ++i) {
+                if (isSplit(i)) return i;
+            }
+            for (int i = mid - 1; i > start; --i) {
+                if (isSplit(i)) return i;
+            }
+            return -1;
+        }
+
+        private boolean isSplit(int i) {
+            return isDigit(numbers.charAt(i - 1)) &&
+                    !isDigit(numbers.charAt(i));
+        }
+
+        private Partial computeDirectly() {
+            var partial = new Partial(new Sum());
+            var result = new Result();
+            final long sum = sumRange(
+                    numbers, start, end, atNumber,
+                    hdrStart, hdrEnd, maxNumber, partial.sum, result
+            );
+
+            if (sum == FAILED) {
+                partial.error = result;
+            } else if (sum < 0) {
+                partial.firstNegative = firstNegative(sum);
+            } else {
+                partial.sum.add(sum);
+            }
+            return partial;
+        }
+    }
+}
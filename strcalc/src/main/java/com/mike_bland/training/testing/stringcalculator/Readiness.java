@@ -0,0 +1,26 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import jakarta.enterprise.context.ApplicationScoped;
+
+// Tracks whether the Servlet has finished warming up.
+//
+// Servlet.init() marks this ready once its Warmup finishes, and ReadyServlet
+// reports it to load balancers and orchestrators via GET /ready.
+@ApplicationScoped
+public class Readiness {
+    private volatile boolean ready;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void markReady() {
+        ready = true;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import jakarta.inject.Inject;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+// Serves a readiness probe that succeeds only after the Servlet warms up.
+//
+// Returns 503 Service Unavailable with a Retry-After header until then, so
+// that load balancers don't send traffic to an instance still running
+// interpreted or lightly optimized code. See Servlet.WARMUP_ITERATIONS_PARAM.
+@WebServlet(ReadyServlet.ENDPOINT)
+public class ReadyServlet extends HttpServlet {
+    public static final String ENDPOINT = "/ready";
+    static final String RETRY_AFTER_SECONDS = "1";
+
+    @Inject private Readiness readiness;
+
+    // No-arg constructor required for Tomcat startup.
+    public ReadyServlet() {
+    }
+
+    // Allows tests to inject a Readiness instance.
+    ReadyServlet(Readiness readiness) {
+        this.readiness = readiness;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+            throws IOException {
+        final var ready = readiness.isReady();
+
+        resp.setContentType("text/plain");
+        resp.setCharacterEncoding("UTF-8");
+        resp.setHeader("Cache-Control", "no-store");
+
+        if (!ready) {
+            resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            resp.setHeader("Retry-After", RETRY_AFTER_SECONDS);
+        }
+        resp.getWriter().print(ready ? "ready" : "warming up");
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import java.util.function.Function;
+
+// The outcome of StringCalculator.tryAdd() or tryAddExact(): either a value,
+// or an Error code plus the details needed to describe it.
+//
+// Reporting invalid input through a Result instead of an Exception avoids
+// allocating and throwing anything, and message() only formats the error
+// message when something asks for it. Like Sum, a Result is mutable so that
+// callers can reuse one between calculations.
+//
+// message() returns exactly the same text as the Exception that add() throws
+// for the same input.
+public final class Result {
+    public enum Error {
+        NO_NUMBERS,
+        MISSING_NUMBER,
+        INVALID_CHARACTER,
+        NUMBER_TOO_LARGE,
+        SUM_TOO_LARGE,
+        NEGATIVES_NOT_ALLOWED,
+        MISSING_DELIMITER,
+        UNTERMINATED_DELIMITER,
+        EMPTY_DELIMITER,
+        UNTERMINATED_HEADER,
+        INVALID_DELIMITER_CHARACTER,
+
+        // Reported by a StringCalculator.Exception, via fail(Exception).
+        OTHER
+    }
+
+    private int value;
+    private Error error;
+    private Class<? extends StringCalculator.Exception> errorType;
+
+    // Creates the Exception for valueOrThrow() on first use, unless
+    // fail(Exception) supplied one.
+    private Function<String, ? extends StringCalculator.Exception>
+            newException;
+    private StringCalculator.Exception exception;
+    private long index;
+    private long limit;
+    private char character;
+
+    // Formatted by message(), or supplied by fail(Class, Error, String).
+    private String message;
+
+    public boolean isOk() {
+        return error == null;
+    }
+
+    // Returns the sum from tryAdd(), or 0 after tryAddExact().
+    public int value() {
+        return value;
+    }
+
+    // Returns null if isOk().
+    public Error error() {
+        return error;
+    }
+
+    // Returns the class of the Exception that add() would have thrown, which
+    // Metrics uses to label error counts.
+    public Class<? extends StringCalculator.Exception> errorType() {
+        return errorType;
+    }
+
+    // Returns the error message, or null if isOk().
+    public String message() {
+        if (message == null && error != null) message = format();
+        return message;
+    }
+
+    // Returns value(), or throws an Exception of errorType() with message(),
+    // as add() would have.
+    //
+    // Every call throws the same Exception, which copies made via copyFrom()
+    // share once it exists, e.g., between the callers of
+    // CoalescingStringCalculator or the hits of a cached error. Sharing it is
+    // safe, since a StringCalculator.Exception has no stack trace or
+    // suppressed exceptions to change.
+    public int valueOrThrow() throws StringCalculator.Exception {
+        if (error == null) return value;
+
+        if (exception == null) {
+            exception = newException != null ?
+                    newException.apply(message()) :
+                    new StringCalculator.Exception(message());
+        }
+        throw exception;
+    }
+
+    public void succeed(int value) {
+        this.value = value;
+        this.error = null;
+        this.errorType = null;
+        this.newException = null;
+        this.exception = null;
+        this.message = null;
+    }
+
+    // Records the error from a StringCalculator.Exception, which
+    // valueOrThrow() rethrows.
+    public boolean fail(StringCalculator.Exception e) {
+        fail(e.getClass(), null, Error.OTHER, -1, 0, '\0', e.getMessage());
+        exception = e;
+        return false;
+    }
+
+    // Records an error whose message is already formatted.
+    //
+    // Each fail() method takes the errorType() and a function creating an
+    // Exception of that type from message(), which valueOrThrow() calls.
+    public <T extends StringCalculator.Exception> boolean fail(
+            Class<T> type,
+            Function<String, T> newException,
+            Error error,
+            String message) {
+        return fail(type, newException, error, -1, 0, '\0', message);
+    }
+
+    <T extends StringCalculator.Exception> boolean fail(
+            Class<T> type,
+            Function<String, T> newException,
+            Error error,
+            long index) {
+        return fail(type, newException, error, index, 0, '\0', null);
+    }
+
+    <T extends StringCalculator.Exception> boolean fail(
+            Class<T> type,
+            Function<String, T> newException,
+            Error error,
+            long index,
+            long limit) {
+        return fail(type, newException, error, index, limit, '\0', null);
+    }
+
+    <T extends StringCalculator.Exception> boolean fail(
+            Class<T> type,
+            Function<String, T> newException,
+            Error error,
+            long index,
+            char character) {
+        return fail(type, newException, error, index, 0, character, null);
+    }
+
+    // Makes this Result a copy of other.
+    public void copyFrom(Result other) {
+        value = other.value;
+        error = other.error;
+        errorType = other.errorType;
+        newException = other.newException;
+        exception = other.exception;
+        index = other.index;
+        limit = other.limit;
+        character = other.character;
+        message = other.message;
+    }
+
+    // Always returns false, so that callers can return the result of a
+    // failure directly.
+    private boolean fail(
+            Class<? extends StringCalculator.Exception> type,
+            Function<String, ? extends StringCalculator.Exception>
+                    newException,
+            Error error,
+            long index,
+            long limit,
+            char character,
+            String message) {
+        this.value = 0;
+        this.error = error;
+        this.errorType = type;
+        this.newException = newException;
+        this.exception = null;
+        this.index = index;
+        this.limit = limit;
+        this.character = character;
+        this.message = message;
+        return false;
+    }
+
+    // Uses concatenation instead of String.format(), which parses its format
+    // string on every call.
+    private String format() {
+        return switch (error) {
+            case NO_NUMBERS -> "no numbers provided";
+            case MISSING_NUMBER -> "missing number at index " + index;
+            case INVALID_CHARACTER -> "invalid character '" +
+                    printable(character) + "' at index " + index;
+            case NUMBER_TOO_LARGE ->
+                    "number at index " + index + " exceeds " + limit;
+            case SUM_TOO_LARGE -> "sum exceeds " + limit;
+            case MISSING_DELIMITER ->
+                    "missing custom delimiter at index " + index;
+            case UNTERMINATED_DELIMITER ->
+                    "unterminated custom delimiter at index " + index;
+            case EMPTY_DELIMITER -> "empty custom delimiter at index " + index;
+            case UNTERMINATED_HEADER ->
+                    "custom delimiter header must end with a newline at " +
+                    "index " + index;
+            case INVALID_DELIMITER_CHARACTER ->
+                    "invalid custom delimiter character '" +
+                    printable(character) + "' at index " + index;
+            // Always supplied with the message by fail().
+            case NEGATIVES_NOT_ALLOWED, OTHER -> error.name();
+        };
+    }
+
+    private static String printable(char c) {
+        return c == '\n' ? "\\n" : String.valueOf(c);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import jakarta.servlet.ServletContext;
+import jakarta.websocket.DeploymentException;
+import jakarta.websocket.Endpoint;
+import jakarta.websocket.EndpointConfig;
+import jakarta.websocket.Session;
+import jakarta.websocket.server.ServerContainer;
+import jakarta.websocket.server.ServerEndpointConfig;
+
+import java.io.IOException;
+
+// Keeps a running total of the numbers sent over a WebSocket session.
+//
+// Each text message contains a complete "numbers" string, in the same format
+// as a POST /add request. The endpoint adds its sum to the session's running
+// total, and replies with the new total:
+//
+//   -> 1,2
+//   <- {"result":3}
+//   -> 4,x
+//   <- {"error":"invalid character 'x' at index 2"}
+//   -> 5
+//   <- {"result":8}
+//
+// An invalid message gets the same "error" that POST /add would return, and
+// leaves the total unchanged. The total is always exact, as with
+// "?sum=exact", since a long-running session can easily exceed
+// Integer.MAX_VALUE.
+//
+// After the handshake, each message costs only a WebSocket frame and a few
+// bytes of JSON, instead of a request's headers, CORS checks, and JSON
+// envelope. The container delivers a session's messages one at a time, so
+// the replies arrive in the same order. Messages must fit in the container's
+// text message buffer, which is 8192 chars by default in Tomcat. Larger
+// messages close the session with status 1009 (too big).
+//
+// Servlet.init() calls deploy(), so every session shares the Servlet's
+// StringCalculator and Metrics, however the Servlet was created. Errors go to
+// the ServletContext log, just as the Servlet's do.
+public class RunningTotalEndpoint extends Endpoint {
+    // Labels each message in Metrics' request counts.
+    static final String MESSAGE_METHOD = "MESSAGE";
+
+    private final ServletContext context;
+    private final StringCalculator calculator;
+    private final Metrics metrics;
+    private final Sum total = new Sum();
+    private final Sum sum = new Sum();
+    private final Result result = new Result();
+    private Session session;
+
+    RunningTotalEndpoint(
+            ServletContext context,
+            StringCalculator calculator,
+            Metrics metrics) {
+        this.context = context;
+        this.calculator = calculator;
+        this.metrics = metrics;
+    }
+
+    // Deploys a new RunningTotalEndpoint for each session at
+    // Servlet.STREAM_ENDPOINT.
+    //
+    // Returns false if the container doesn't support WebSockets, i.e., if
+    // Tomcat's WsSci hasn't initialized the context.
+    static boolean deploy(
+            ServletContext ctx, StringCalculator calculator, Metrics metrics)
+            throws DeploymentException {
+        var container = (ServerContainer) ctx.getAttribute(
+                ServerContainer.class.getName()
+        );
+        if (container == null) return false;
+
+        container.addEndpoint(ServerEndpointConfig.Builder
+                .create(RunningTotalEndpoint.class, Servlet.STREAM_ENDPOINT)
+                .configurator(new ServerEndpointConfig.Configurator() {
+                    @Override
+                    public <T> T getEndpointInstance(Class<T> endpointClass) {
+                        return endpointClass.cast(
+                                new RunningTotalEndpoint(
+                                        ctx, calculator, metrics
+                                )
+                        );
+                    }
+                })
+                .build());
+        return true;
+    }
+
+    @Override
+    public void onOpen(Session session, EndpointConfig config) {
+        this.session = session;
+        session.addMessageHandler(String.class, this::onMessage);
+    }
+
+    // Adds the sum of numbers to the total, and sends the total or the error.
+    void onMessage(String numbers) {
+        metrics.recordRequest(MESSAGE_METHOD, Servlet.STREAM_ENDPOINT);
+
+        final long start = System.nanoTime();
+        final boolean ok = calculator.tryAddExact(numbers, sum, result);
+
+        if (ok) {
+            total.add(sum);
+        } else {
+            metrics.recordError(result.errorType());
+        }
+        metrics.recordLatency(
+                Metrics.Phase.COMPUTE, System.nanoTime() - start
+        );
+
+        try (var out = session.getBasicRemote().getSendWriter();
+             var gen = Servlet.JSON.createGenerator(out)) {
+            writeReply(gen, ok);
+        } catch (IOException e) {
+            // The connection is gone, and the container closes the session.
+            context.log("failed to send running total", e);
+        }
+    }
+
+    // Writes {"result":<total>}, including a zero total, or {"error":"..."}.
+    private void writeReply(JsonGenerator gen, boolean ok) throws IOException {
+        gen.writeStartObject();
+        if (!ok) {
+            gen.writeStringField("error", result.message());
+        } else if (total.fitsInLong()) {
+            gen.writeNumberField("result", total.longValue());
+        } else {
+            gen.writeFieldName("result");
+            gen.writeNumber(total.toBigInteger());
+        }
+        gen.writeEndObject();
+    }
+}
@@ -6,9 +6,19 @@
 
 package com.mike_bland.training.testing.stringcalculator;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.core.util.JsonRecyclerPools;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import com.fasterxml.jackson.databind.exc.UnrecognizedPropertyException;
 import jakarta.inject.Inject;
 import jakarta.servlet.ServletConfig;
 import jakarta.servlet.ServletException;
@@ -16,18 +26,112 @@ import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import jakarta.websocket.DeploymentException;
 import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
 
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.URLDecoder;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32C;
 
-@WebServlet("/add")
+@WebServlet(
+        value = {"/add", Servlet.BATCH_ENDPOINT, Servlet.STREAM_ENDPOINT},
+        asyncSupported = true,
+        loadOnStartup = 1
+)
 public class Servlet extends HttpServlet {
     public static final String DEFAULT_ROOT = "/strcalc";
+    public static final String BATCH_ENDPOINT = "/add/batch";
+
+    // WebSocket endpoint keeping a running total. See RunningTotalEndpoint.
+    //
+    // The Servlet maps this path only so the container's WebSocket filter sees
+    // the upgrade request. Any other request to it gets UPGRADE_REQUIRED.
+    public static final String STREAM_ENDPOINT = "/add/stream";
+    static final int UPGRADE_REQUIRED = 426;
+    public static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+
+    // Content-Type of an /add request body containing only the "numbers"
+    // string, in UTF-8, instead of a JSON CalculatorRequest.
+    public static final String PLAIN_TEXT_CONTENT_TYPE = "text/plain";
+
+    // Init-params selecting the /add processing mode, set in WEB-INF/web.xml.
+    //
+    // When ASYNC_PARAM is "true", POST /add requests use non-blocking I/O and
+    // calculate on virtual threads. See AsyncAddRequest.
+    //
+    // Since AsyncAddRequest buffers each body before parsing it,
+    // ASYNC_MAX_BODY_BYTES_PARAM limits the size of the body.
+    public static final String ASYNC_PARAM = "async";
+    public static final String ASYNC_TIMEOUT_MS_PARAM = "asyncTimeoutMs";
+    public static final String ASYNC_MAX_BODY_BYTES_PARAM =
+            "asyncMaxBodyBytes";
+    static final long DEFAULT_ASYNC_TIMEOUT_MS = 30_000;
+    static final long DEFAULT_ASYNC_MAX_BODY_BYTES = 1024 * 1024;
+
+    // Init-param setting how many times init() runs each Warmup payload
+    // before Readiness reports ready. Zero, the default, skips the warm-up.
+    public static final String WARMUP_ITERATIONS_PARAM = "warmupIterations";
+
+    // Init-param setting the Cache-Control header of successful GET /add
+    // responses. See doGet().
+    public static final String GET_CACHE_CONTROL_PARAM = "getCacheControl";
+    static final String DEFAULT_GET_CACHE_CONTROL = "public, max-age=86400";
+
+    // Query parameter selecting how each request sums its numbers.
+    //
+    // By default, sums greater than Integer.MAX_VALUE are errors. Requests
+    // with "?sum=exact" use StringCalculator.addExact() instead, which
+    // returns sums of any size.
+    public static final String SUM_PARAM = "sum";
+    public static final String EXACT_SUM = "exact";
+
+    // Creates the streaming JSON parsers and generators for each request.
+    //
+    // The lock-free pool shares Jackson's internal char and byte buffers
+    // between requests without relying on ThreadLocals, which don't help when
+    // each request may run on a different (e.g., virtual) thread.
+    //
+    // Disabling AUTO_CLOSE_CONTENT prevents a generator closed by an exception
+    // from appending closing brackets, which would make a truncated batch
+    // response look complete.
+    static final JsonFactory JSON = JsonFactory.builder()
+            .recyclerPool(JsonRecyclerPools.sharedLockFreePool())
+            .disable(StreamWriteFeature.AUTO_CLOSE_CONTENT)
+            .build();
+
+    // Field names accepted by readRequest(), reported on unrecognized fields.
+    private static final List<Object> REQUEST_FIELDS = List.of("numbers");
+
+    // Terminates each CalculatorResponse in an NDJSON batch response.
+    private static final SerializedString NDJSON_NEWLINE =
+            new SerializedString("\n");
 
-    private final ObjectMapper mapper = new ObjectMapper();
     @Inject private StringCalculator calculator;
 
+    // Weld replaces this with the shared Metrics bean that MetricsServlet
+    // reports. Servlets created directly, e.g., by tests, keep their own.
+    @Inject private Metrics metrics = new Metrics();
+    @Inject private Readiness readiness = new Readiness();
+
+    // The cache used by the calculator, if any, whose statistics startWarmup()
+    // resets after the warm-up.
+    @Inject private StringCalculatorCache cache;
+    private ExecutorService asyncExecutor;
+    private Thread warmupThread;
+    private long asyncTimeoutMs = DEFAULT_ASYNC_TIMEOUT_MS;
+    private long asyncMaxBodyBytes = DEFAULT_ASYNC_MAX_BODY_BYTES;
+    private String cacheControl = DEFAULT_GET_CACHE_CONTROL;
+
     // No-arg constructor required for Tomcat startup.
     //
     // After creation, Weld injects the calculator field before Tomcat invokes
@@ -48,13 +152,106 @@ public class Servlet extends HttpServlet {
         printMethodAndCalculatorClass(this.calculator);
     }
 
+    // Shares Metrics, Readiness, and StringCalculatorCache instances with a
+    // MetricsServlet and a ReadyServlet when Weld isn't available to inject
+    // them, as in Launcher.
+    Servlet(
+            StringCalculator calculator,
+            Metrics metrics,
+            Readiness readiness,
+            StringCalculatorCache cache) {
+        this(calculator);
+        this.metrics = metrics;
+        this.readiness = readiness;
+        this.cache = cache;
+    }
+
+    // Creates a copy of servlet for Warmup that records into its own Metrics,
+    // so that warm-up requests aren't reported by MetricsServlet.
+    private Servlet(Servlet servlet, Metrics metrics) {
+        this.calculator = servlet.calculator;
+        this.metrics = metrics;
+    }
+
     // Initializes the Servlet after Weld injects dependencies.
     //
     // See the comment for printMethodAndCalculatorClass() below.
+    //
+    // Also reads the ASYNC_PARAM, ASYNC_TIMEOUT_MS_PARAM,
+    // ASYNC_MAX_BODY_BYTES_PARAM, and GET_CACHE_CONTROL_PARAM init-params,
+    // starts the warm-up, deploys RunningTotalEndpoint, and records the
+    // startup time. Since WEB-INF/web.xml sets load-on-startup, Tomcat calls
+    // init() while deploying the app, not on the first request.
     @Override
     public void init(ServletConfig config) throws ServletException {
         super.init(config);
         printMethodAndCalculatorClass(this.calculator);
+
+        if (Boolean.parseBoolean(config.getInitParameter(ASYNC_PARAM))) {
+            var timeout = config.getInitParameter(ASYNC_TIMEOUT_MS_PARAM);
+            if (timeout != null) asyncTimeoutMs = Long.parseLong(timeout);
+            var maxBody = config.getInitParameter(ASYNC_MAX_BODY_BYTES_PARAM);
+            if (maxBody != null) asyncMaxBodyBytes = Long.parseLong(maxBody);
+
+            asyncExecutor = Executors.newThreadPerTaskExecutor(
+                    Thread.ofVirtual().name("strcalc-add-", 0).factory()
+            );
+        }
+        var cacheControl = config.getInitParameter(GET_CACHE_CONTROL_PARAM);
+        if (cacheControl != null) this.cacheControl = cacheControl;
+
+        startWarmup(config.getInitParameter(WARMUP_ITERATIONS_PARAM));
+        deployRunningTotalEndpoint(config);
+        metrics.recordStartup(
+                ManagementFactory.getRuntimeMXBean().getUptime()
+        );
+    }
+
+    @Override
+    public void destroy() {
+        if (asyncExecutor != null) asyncExecutor.shutdown();
+        if (warmupThread != null) warmupThread.interrupt();
+        super.destroy();
+    }
+
+    Readiness getReadiness() {
+        return readiness;
+    }
+
+    // Runs the Warmup on a background thread, then marks Readiness ready.
+    //
+    // This allows init() to return, so Tomcat can finish starting and serve
+    // ReadyServlet while the warm-up runs. A failed warm-up still marks
+    // Readiness ready, since it only affects latency, not correctness.
+    //
+    // The warm-up's requests go through the same calculator, and its
+    // decorators, as real requests. Its copy of the Servlet records into its
+    // own Metrics, and finishing resets the StringCalculatorCache statistics,
+    // so MetricsServlet reports neither.
+    private void startWarmup(String iterationsParam) {
+        final int iterations = iterationsParam == null ?
+                0 : Integer.parseInt(iterationsParam);
+
+        if (iterations <= 0) {
+            readiness.markReady();
+            return;
+        }
+
+        final var warmup = new Warmup(
+                new Servlet(this, new Metrics()), iterations
+        );
+        warmupThread = Thread.ofPlatform()
+                .name("strcalc-warmup")
+                .daemon()
+                .start(() -> {
+                    try {
+                        if (!warmup.run()) return;
+                    } catch (IOException e) {
+                        log("warm-up failed", e);
+                    }
+                    if (cache != null) cache.resetStats();
+                    readiness.markReady();
+                });
     }
 
     // Defines the StringCalculator request payload.
@@ -65,25 +262,179 @@ public class Servlet extends HttpServlet {
     }
 
     // Defines the StringCalculator response payload.
-    @AllArgsConstructor
+    //
+    // When `exact` isn't null, calculate() stores the result there instead of
+    // in `result`, and writeResponse() writes it as the "result" field.
+    //
+    // calculate() reuses `outcome` for every request in a batch.
     @NoArgsConstructor
     @JsonInclude(Include.NON_DEFAULT)
     static class CalculatorResponse {
         public int result;
         public String error;
+        @JsonIgnore Sum exact;
+        @JsonIgnore final Result outcome = new Result();
+
+        CalculatorResponse(int result, String error) {
+            this.result = result;
+            this.error = error;
+        }
+
+        // Returns a payload for the summation mode selected by SUM_PARAM.
+        //
+        // Reads only the query string, since req.getParameter() would consume
+        // an "application/x-www-form-urlencoded" body before the request body
+        // could be parsed.
+        static CalculatorResponse forRequest(HttpServletRequest req) {
+            var payload = new CalculatorResponse();
+            var sum = queryParameter(req.getQueryString(), SUM_PARAM);
+            if (EXACT_SUM.equals(sum)) payload.exact = new Sum();
+            return payload;
+        }
+    }
+
+    // Returns the first value of the named parameter in query, or null.
+    //
+    // As with req.getParameter(), skips parameters with invalid escapes.
+    static String queryParameter(String query, String name) {
+        if (query == null) return null;
+
+        for (var param : query.split("&")) {
+            final int eq = param.indexOf('=');
+            try {
+                var key = eq < 0 ? param : param.substring(0, eq);
+                if (!decode(key).equals(name)) continue;
+                return eq < 0 ? "" : decode(param.substring(eq + 1));
+            } catch (IllegalArgumentException e) {
+                // Invalid escape; try the next parameter.
+            }
+        }
+        return null;
+    }
+
+    private static String decode(String s) {
+        return URLDecoder.decode(s, StandardCharsets.UTF_8);
+    }
+
+    // Deploys RunningTotalEndpoint, sharing this Servlet's calculator and
+    // metrics, if the container supports WebSockets.
+    private void deployRunningTotalEndpoint(ServletConfig config)
+            throws ServletException {
+        try {
+            if (!RunningTotalEndpoint.deploy(
+                    config.getServletContext(), calculator, metrics)) {
+                log("WebSockets unsupported; not deploying " + STREAM_ENDPOINT);
+            }
+        } catch (DeploymentException e) {
+            throw new ServletException(e);
+        }
     }
 
-    // Returns a placeholder string.
+    // Counts each request before dispatching it to doGet(), doPost(), etc.
     //
-    // Actual StringCalculator /add requests will use the POST method, but this
-    // GET response can help with learning and troubleshooting. It can be safely
-    // removed at any time.
+    // A STREAM_ENDPOINT request only gets here if it isn't a WebSocket
+    // upgrade request, so it gets UPGRADE_REQUIRED.
+    @Override
+    protected void service(HttpServletRequest req, HttpServletResponse resp)
+            throws ServletException, IOException {
+        metrics.recordRequest(req.getMethod(), req.getServletPath());
+
+        if (STREAM_ENDPOINT.equals(req.getServletPath())) {
+            resp.setHeader("Upgrade", "websocket");
+            resp.sendError(UPGRADE_REQUIRED);
+            return;
+        }
+        super.service(req, resp);
+    }
+
+    Metrics getMetrics() {
+        return metrics;
+    }
+
+    // Satisfies a StringCalculator.add() request via GET /add?numbers=...
+    //
+    // The same numbers always produce the same CalculatorResponse, so unlike
+    // a POST response, browsers, reverse proxies, and CDNs can cache this one
+    // and answer repeat queries without reaching the JVM. A successful
+    // response carries:
+    //
+    // - the GET_CACHE_CONTROL_PARAM init-param as its Cache-Control header,
+    //   DEFAULT_GET_CACHE_CONTROL by default, and
+    // - a strong ETag derived from the response body, so every server in the
+    //   fleet produces the same ETag for the same response.
+    //
+    // If the request's If-None-Match header matches the ETag, the response is
+    // 304 Not Modified, without a body. Error responses carry neither header,
+    // so they aren't cached.
+    //
+    // A missing "numbers" parameter is handled like a missing "numbers" field
+    // in a POST /add request. See SUM_PARAM for selecting the summation mode.
+    // BATCH_ENDPOINT doesn't support GET.
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp)
-            throws IOException {
-        resp.setContentType("text/plain");
+            throws ServletException, IOException {
+        if (BATCH_ENDPOINT.equals(req.getServletPath())) {
+            super.doGet(req, resp);
+            return;
+        }
+        var respPayload = CalculatorResponse.forRequest(req);
+        calculate(req.getParameter("numbers"), respPayload);
+
+        var body = new ByteArrayOutputStream();
+        try (var gen = JSON.createGenerator(body, JsonEncoding.UTF8)) {
+            writeResponse(gen, respPayload);
+        }
+        final var bytes = body.toByteArray();
+
+        if (respPayload.error != null) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+        } else {
+            final var etag = etag(bytes);
+            resp.setHeader("ETag", etag);
+            resp.setHeader("Cache-Control", cacheControl);
+
+            if (matchesAny(req.getHeader("If-None-Match"), etag)) {
+                resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+            resp.setStatus(HttpServletResponse.SC_OK);
+        }
+        resp.setContentType("application/json");
         resp.setCharacterEncoding("UTF-8");
-        resp.getWriter().print("placeholder for /add API endpoint");
+        resp.setContentLength(bytes.length);
+        resp.getOutputStream().write(bytes);
+    }
+
+    // Returns a strong ETag of the body's length and CRC-32C checksum.
+    //
+    // A validator only has to distinguish the responses for a single URL, so
+    // a fast checksum suffices where a cryptographic hash would be overkill.
+    static String etag(byte[] body) {
+        var crc = new CRC32C();
+        crc.update(body);
+        return "\"%x-%08x\"".formatted(body.length, crc.getValue());
+    }
+
+    // Returns true if an If-None-Match header value matches etag.
+    //
+    // If-None-Match uses the weak comparison function, so a "W/" prefix on
+    // either side doesn't matter. "*" matches any ETag.
+    // - https://www.rfc-editor.org/rfc/rfc9110#name-if-none-match
+    static boolean matchesAny(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+
+        final var opaque = stripWeakPrefix(etag);
+        for (var candidate : ifNoneMatch.split(",")) {
+            var tag = candidate.strip();
+            if (tag.equals("*") || stripWeakPrefix(tag).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeakPrefix(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
     }
 
     // Satisfies a StringCalculator.add() request.
@@ -92,24 +443,338 @@ public class Servlet extends HttpServlet {
     //
     // If StringCalculator.add() throws, the "error" field of the JSON
     // CalculatorResponse payload will contain the exception message.
+    //
+    // The request and response are streamed via Jackson's JsonParser and
+    // JsonGenerator instead of being bound to CalculatorRequest and
+    // CalculatorResponse objects. See readRequest() and writeResponse().
+    //
+    // When the ASYNC_PARAM init-param is "true", AsyncAddRequest handles /add
+    // requests instead, using the same readRequest() and writeResponse().
+    //
+    // A PLAIN_TEXT_CONTENT_TYPE body goes to doPlainTextPost() instead.
+    //
+    // See SUM_PARAM for selecting the summation mode.
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp)
         throws IOException {
-        var respPayload = new CalculatorResponse();
+        if (BATCH_ENDPOINT.equals(req.getServletPath())) {
+            doBatchPost(req, resp);
+            return;
+        }
+        if (isPlainText(req.getContentType())) {
+            doPlainTextPost(req, resp);
+            return;
+        }
+        // Falls back to blocking I/O if any filter in the chain doesn't
+        // support async processing.
+        if (asyncExecutor != null && req.isAsyncSupported()) {
+            AsyncAddRequest.start(
+                    this,
+                    asyncExecutor,
+                    asyncTimeoutMs,
+                    asyncMaxBodyBytes,
+                    req,
+                    resp
+            );
+            return;
+        }
+        var respPayload = CalculatorResponse.forRequest(req);
 
-        try (var reqBody = req.getInputStream()) {
-            var reqPayload = mapper.readValue(reqBody, CalculatorRequest.class);
-            respPayload.result = calculator.add(reqPayload.numbers);
-            resp.setStatus(HttpServletResponse.SC_OK);
+        try (var reqBody = req.getInputStream();
+             var parser = JSON.createParser(reqBody)) {
+            readRequest(parser, respPayload);
+            metrics.recordRequestBytes(
+                    parser.currentLocation().getByteOffset()
+            );
+        }
+        sendResponse(resp, respPayload);
+    }
 
-        } catch (StringCalculator.Exception e) {
-            respPayload.error = e.getMessage();
-            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+    // Satisfies a StringCalculator.add() request whose body is the "numbers"
+    // string itself, sent as PLAIN_TEXT_CONTENT_TYPE.
+    //
+    // A JSON string has to be parsed in full before the calculation can
+    // start. The injected StringCalculator gets the plain body as an
+    // InputStream instead. StreamingStringCalculator, and so the production
+    // ParallelStringCalculator, sums it as it arrives using a fixed-size
+    // buffer, so a body of hundreds of megabytes, e.g., one sent with
+    // "Transfer-Encoding: chunked", needs no more memory than a short one.
+    // CachingStringCalculator and CoalescingStringCalculator pass the stream
+    // straight through, since they need the whole input at once. The response
+    // is the same as doPost() would send for the same numbers in a
+    // CalculatorRequest.
+    //
+    // This blocks even if ASYNC_PARAM is "true", since the calculator reads
+    // with blocking I/O. On an error, a streaming calculator stops reading,
+    // and Tomcat discards the rest of the body.
+    //
+    // Records the time spent reading and summing the body as the COMPUTE
+    // phase, since the two happen together.
+    void doPlainTextPost(HttpServletRequest req, HttpServletResponse resp)
+            throws IOException {
+        var respPayload = CalculatorResponse.forRequest(req);
+        final var outcome = respPayload.outcome;
+        final long start = System.nanoTime();
+
+        try (var reqBody = new CountingInputStream(req.getInputStream())) {
+            final boolean ok = respPayload.exact != null ?
+                    calculator.tryAddExact(
+                            reqBody, respPayload.exact, outcome
+                    ) :
+                    calculator.tryAdd(reqBody, outcome);
+
+            storeOutcome(ok, respPayload);
+            metrics.recordRequestBytes(reqBody.count);
         }
-        try (var respBody = resp.getOutputStream()) {
+        metrics.recordLatency(
+                Metrics.Phase.COMPUTE, System.nanoTime() - start
+        );
+        sendResponse(resp, respPayload);
+    }
+
+    private static boolean isPlainText(String contentType) {
+        return contentType != null &&
+                contentType.startsWith(PLAIN_TEXT_CONTENT_TYPE);
+    }
+
+    // Counts the request body bytes for Metrics, since no parser does.
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b >= 0) ++count;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+
+    // Sends a single CalculatorResponse, with a status reflecting its error.
+    private void sendResponse(
+            HttpServletResponse resp, CalculatorResponse respPayload)
+            throws IOException {
+        resp.setStatus(respPayload.error == null ?
+                HttpServletResponse.SC_OK :
+                HttpServletResponse.SC_BAD_REQUEST);
+
+        try (var respBody = resp.getOutputStream();
+             var gen = JSON.createGenerator(respBody, JsonEncoding.UTF8)) {
             resp.setContentType("application/json");
             resp.setCharacterEncoding("UTF-8");
-            respBody.write(mapper.writeValueAsBytes(respPayload));
+            writeResponse(gen, respPayload);
+        }
+    }
+
+    // Satisfies a batch of StringCalculator.add() requests via BATCH_ENDPOINT.
+    //
+    // The request body should contain a JSON array of CalculatorRequest
+    // payloads or, if its Content-Type is NDJSON_CONTENT_TYPE, one payload per
+    // line. The response body uses the same format, containing one
+    // CalculatorResponse per request, in the same order. Each response carries
+    // its own "error" field, so the status is 200 even if some requests fail.
+    //
+    // Each request is parsed, calculated, and written before the next one is
+    // read, so memory usage doesn't grow with the size of the batch. As with
+    // doPost(), malformed JSON raises an IOException, which will truncate the
+    // response if part of it has already been sent.
+    void doBatchPost(HttpServletRequest req, HttpServletResponse resp)
+            throws IOException {
+        final var ndjson = isNdjson(req.getContentType());
+        var respPayload = CalculatorResponse.forRequest(req);
+
+        resp.setStatus(HttpServletResponse.SC_OK);
+        resp.setContentType(ndjson ? NDJSON_CONTENT_TYPE : "application/json");
+        resp.setCharacterEncoding("UTF-8");
+
+        try (var reqBody = req.getInputStream();
+             var parser = JSON.createParser(reqBody);
+             var respBody = resp.getOutputStream();
+             var gen = JSON.createGenerator(respBody, JsonEncoding.UTF8)) {
+            if (ndjson) {
+                gen.setRootValueSeparator(null);
+
+                while (parser.nextToken() != null) {
+                    readRequestObject(parser, respPayload);
+                    writeResponse(gen, respPayload);
+                    gen.writeRaw(NDJSON_NEWLINE);
+                }
+                metrics.recordRequestBytes(
+                        parser.currentLocation().getByteOffset()
+                );
+                return;
+            }
+
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw MismatchedInputException.from(
+                        parser,
+                        CalculatorRequest[].class,
+                        "expected a JSON array"
+                );
+            }
+            gen.writeStartArray();
+
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                readRequestObject(parser, respPayload);
+                writeResponse(gen, respPayload);
+            }
+            gen.writeEndArray();
+            metrics.recordRequestBytes(
+                    parser.currentLocation().getByteOffset()
+            );
+        }
+    }
+
+    private static boolean isNdjson(String contentType) {
+        return contentType != null &&
+                contentType.startsWith(NDJSON_CONTENT_TYPE);
+    }
+
+    // Parses a CalculatorRequest and stores the calculation in respPayload.
+    //
+    // The "numbers" value goes straight from the parser's internal buffer into
+    // StringCalculator.add(CharSequence), so no String is created for it. As
+    // a result, the calculation happens before parsing completes. Parse errors
+    // still propagate as IOExceptions, just as they did when using
+    // ObjectMapper.readValue():
+    //
+    // - A body that isn't a JSON object throws MismatchedInputException.
+    // - Any field other than "numbers" throws UnrecognizedPropertyException.
+    // - A missing or null "numbers" field passes null to the calculator.
+    // - If "numbers" appears more than once, the last value wins.
+    //
+    // Records the parse time, excluding the calculation, in Metrics.
+    void readRequest(JsonParser parser, CalculatorResponse respPayload)
+            throws IOException {
+        parser.nextToken();
+        readRequestObject(parser, respPayload);
+    }
+
+    // Implements readRequest() starting from the parser's current token.
+    //
+    // This enables doBatchPost() to parse each element of a batch in place.
+    void readRequestObject(JsonParser parser, CalculatorResponse respPayload)
+            throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            throw MismatchedInputException.from(
+                    parser, CalculatorRequest.class, "expected a JSON object"
+            );
+        }
+
+        final long start = System.nanoTime();
+        long computeNanos = 0;
+        boolean found = false;
+
+        for (var name = parser.nextFieldName();
+             name != null;
+             name = parser.nextFieldName()) {
+            if (!name.equals("numbers")) {
+                throw UnrecognizedPropertyException.from(
+                        parser, CalculatorRequest.class, name, REQUEST_FIELDS
+                );
+            }
+
+            var token = parser.nextToken();
+            if (token == JsonToken.VALUE_NULL) {
+                computeNanos += calculate(null, respPayload);
+            } else if (token.isScalarValue()) {
+                computeNanos += calculate(CharBuffer.wrap(
+                        parser.getTextCharacters(),
+                        parser.getTextOffset(),
+                        parser.getTextLength()
+                ), respPayload);
+            } else {
+                throw MismatchedInputException.from(
+                        parser,
+                        CalculatorRequest.class,
+                        "expected \"numbers\" to be a string"
+                );
+            }
+            found = true;
+        }
+        if (!found) computeNanos += calculate(null, respPayload);
+
+        metrics.recordLatency(
+                Metrics.Phase.PARSE, System.nanoTime() - start - computeNanos
+        );
+    }
+
+    // Stores the result or error from StringCalculator.tryAdd() in payload.
+    //
+    // tryAdd() reports invalid input without throwing, so a stream of bad
+    // requests costs no more than a stream of good ones. Only the error
+    // message is allocated, since it's written to the response.
+    //
+    // Returns the time spent in tryAdd(), after recording it in Metrics.
+    private long calculate(CharSequence numbers, CalculatorResponse payload) {
+        final long start = System.nanoTime();
+        final var outcome = payload.outcome;
+        final boolean ok = payload.exact != null ?
+                calculator.tryAddExact(numbers, payload.exact, outcome) :
+                calculator.tryAdd(numbers, outcome);
+
+        storeOutcome(ok, payload);
+
+        final long elapsed = System.nanoTime() - start;
+        metrics.recordLatency(Metrics.Phase.COMPUTE, elapsed);
+        return elapsed;
+    }
+
+    // Copies payload.outcome into the fields writeResponse() writes, and
+    // counts any error in Metrics.
+    private void storeOutcome(boolean ok, CalculatorResponse payload) {
+        final var outcome = payload.outcome;
+
+        payload.result = outcome.value();
+        payload.error = ok ? null : outcome.message();
+        if (!ok) metrics.recordError(outcome.errorType());
+    }
+
+    // Writes a CalculatorResponse exactly as ObjectMapper would.
+    //
+    // The @JsonInclude(Include.NON_DEFAULT) annotation omits a zero result and
+    // a null error, so this does the same. An exact sum that fits in an int
+    // produces the same output as add() would.
+    //
+    // Records the time spent generating the response in Metrics. This
+    // excludes the time spent sending it, since the generator is buffered.
+    void writeResponse(JsonGenerator gen, CalculatorResponse payload)
+            throws IOException {
+        final long start = System.nanoTime();
+
+        gen.writeStartObject();
+        if (payload.exact != null && payload.error == null) {
+            writeExactResult(gen, payload.exact);
+        } else if (payload.result != 0) {
+            gen.writeNumberField("result", payload.result);
+        }
+        if (payload.error != null) gen.writeStringField("error", payload.error);
+        gen.writeEndObject();
+
+        metrics.recordLatency(
+                Metrics.Phase.SERIALIZE, System.nanoTime() - start
+        );
+    }
+
+    private static void writeExactResult(JsonGenerator gen, Sum sum)
+            throws IOException {
+        if (sum.isZero()) return;
+
+        gen.writeFieldName("result");
+        if (sum.fitsInLong()) {
+            gen.writeNumber(sum.longValue());
+        } else {
+            gen.writeNumber(sum.toBigInteger());
         }
     }
 
@@ -119,11 +784,11 @@ public class Servlet extends HttpServlet {
     // When Tomcat launches a servlet (i.e., by loading a WAR file or using
     // methods other than Tomcat.addServlet()), we see that only the no-arg
     // constructor executes. By the time init() executes, Weld has injected a
-    // proxy object for the TemporaryStringCalculator implementation:
+    // proxy object for the ParallelStringCalculator implementation:
     //
     //   Servlet.java:NN: Servlet.<init> ()void: null
     //   Servlet.java:NN: Servlet.init (ServletConfig)void:
-    //     TemporaryStringCalculator$Proxy$_$$_WeldClientProxy
+    //     ParallelStringCalculator$Proxy$_$$_WeldClientProxy
     //
     // So when it comes to servlet implementations running in production, we
     // can't @Inject objects via constructor injection. As I understand it,
@@ -0,0 +1,450 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+// Production StringCalculator implementation.
+//
+// Parses its input in a single pass over a CharSequence, without
+// String.split(), regular expressions, substrings, or boxed Integer lists.
+// tryAdd() and tryAddExact() allocate nothing on success, and report invalid
+// input by recording a Result.Error code without throwing. Only the negative
+// numbers error builds its message eagerly, since it quotes the input, which
+// the caller may reuse after tryAdd() returns. add() and addExact() wrap the
+// same code, throwing an Exception with the Result's message.
+//
+// Input format:
+//
+// - Numbers are separated by commas or newlines: "1,2\n3"
+// - An empty string returns 0.
+// - An optional header changes the delimiter: "//;\n1;2"
+// - Bracketed headers allow delimiters of any length: "//[***]\n1***2"
+// - Multiple bracketed delimiters are also allowed: "//[*][%]\n1*2%3"
+//
+// A custom delimiter replaces the comma, but newlines always separate numbers.
+// Custom delimiters may not contain digits, '-', or newlines, which keeps the
+// grammar unambiguous.
+//
+// Errors are reported in the following order of precedence:
+//
+// - The first syntax error by position: a malformed header, a missing number,
+//   an invalid character, or a number greater than Integer.MAX_VALUE.
+// - All negative numbers, in input order: "negatives not allowed: -1, -3"
+// - A sum greater than Integer.MAX_VALUE.
+//
+// addExact() raises the limit for each number to Long.MAX_VALUE, and has no
+// limit on the sum, but otherwise reports the same errors.
+//
+// The InputStream versions of tryAdd() and tryAddExact() use an
+// IncrementalStringCalculator, which sums the stream as it arrives instead of
+// reading it into memory first.
+@ApplicationScoped
+public class StreamingStringCalculator implements StringCalculator {
+    public static class Exception extends StringCalculator.Exception {
+        public Exception(String message) {
+            super(message);
+        }
+    }
+
+    static final String HEADER_PREFIX = "//";
+
+    // Returned by the parsing methods below after recording an error in their
+    // Result argument. No valid sum or index is negative enough to collide
+    // with it.
+    static final long FAILED = Long.MIN_VALUE;
+
+    private static final IncrementalStringCalculator INCREMENTAL =
+            new IncrementalStringCalculator();
+
+    @Override
+    public int add(String numbers) throws Exception {
+        return add((CharSequence) numbers);
+    }
+
+    // Parses and sums numbers from any CharSequence.
+    //
+    // This avoids copying when the caller already holds the input in a
+    // StringBuilder, CharBuffer, or similar.
+    @Override
+    public int add(CharSequence numbers) throws Exception {
+        final var result = new Result();
+
+        if (!tryAdd(numbers, result)) throw new Exception(result.message());
+        return result.value();
+    }
+
+    @Override
+    public boolean tryAdd(CharSequence numbers, Result result) {
+        final long sum = sum(numbers, Integer.MAX_VALUE, null, result);
+
+        if (sum == FAILED) return false;
+        if (sum > Integer.MAX_VALUE) {
+            return fail(result, Result.Error.SUM_TOO_LARGE, -1,
+                    Integer.MAX_VALUE);
+        }
+        result.succeed((int) sum);
+        return true;
+    }
+
+    @Override
+    public void addExact(CharSequence numbers, Sum sum) throws Exception {
+        final var result = new Result();
+
+        if (!tryAddExact(numbers, sum, result)) {
+            throw new Exception(result.message());
+        }
+    }
+
+    // Sums numbers of up to Long.MAX_VALUE each, with no limit on the total.
+    //
+    // The sum accumulates in a long, and is only carried into `sum` when the
+    // long would overflow, so the loop doesn't touch the heap.
+    @Override
+    public boolean tryAddExact(CharSequence numbers, Sum sum, Result result) {
+        sum.reset();
+        final long partial = sum(numbers, Long.MAX_VALUE, sum, result);
+
+        if (partial == FAILED) return false;
+        sum.add(partial);
+        result.succeed(0);
+        return true;
+    }
+
+    @Override
+    public boolean tryAdd(InputStream body, Result result)
+            throws IOException {
+        return INCREMENTAL.tryAdd(body, result);
+    }
+
+    @Override
+    public boolean tryAddExact(InputStream body, Sum sum, Result result)
+            throws IOException {
+        return INCREMENTAL.tryAddExact(body, sum, result);
+    }
+
+    // Records an error reported by this class in `result`, and returns false.
+    static boolean fail(Result result, Result.Error error, long index) {
+        return result.fail(Exception.class, Exception::new, error, index);
+    }
+
+    static boolean fail(
+            Result result, Result.Error error, long index, long limit) {
+        return result.fail(
+                Exception.class, Exception::new, error, index, limit
+        );
+    }
+
+    static boolean fail(
+            Result result, Result.Error error, long index, char character) {
+        return result.fail(
+                Exception.class, Exception::new, error, index, character
+        );
+    }
+
+    static boolean fail(Result result, Result.Error error, String message) {
+        return result.fail(Exception.class, Exception::new, error, message);
+    }
+
+    // Parses and sums numbers no greater than maxNumber.
+    //
+    // Returns the sum, less any amount already added to `carry`. That only
+    // happens when the sum would overflow a long, which is impossible when
+    // maxNumber is Integer.MAX_VALUE, since no CharSequence is long enough.
+    // In that case, carry may be null.
+    //
+    // Returns FAILED after recording any error in `result`.
+    private static long sum(
+            CharSequence numbers, long maxNumber, Sum carry, Result result) {
+        if (numbers == null) {
+            fail(result, Result.Error.NO_NUMBERS, -1);
+            return FAILED;
+        }
+
+        final int end = numbers.length();
+        int pos = 0;
+
+        // The custom delimiter header spans [hdrStart, hdrEnd), excluding the
+        // leading "//" and the trailing newline. hdrStart < 0 means the input
+        // uses the default delimiters.
+        int hdrStart = -1;
+        int hdrEnd = -1;
+
+        if (startsWithHeader(numbers)) {
+            hdrStart = HEADER_PREFIX.length();
+            hdrEnd = parseHeader(numbers, hdrStart, result);
+            if (hdrEnd < 0) return FAILED;
+            pos = hdrEnd + 1;
+        }
+
+        if (pos == end) return 0;
+
+        final long sum = sumRange(
+                numbers, pos, end, true, hdrStart, hdrEnd, maxNumber, carry,
+                result
+        );
+
+        if (sum == FAILED) return FAILED;
+        if (sum < 0) {
+            negativesNotAllowed(numbers, firstNegative(sum), result);
+            return FAILED;
+        }
+        return sum;
+    }
+
+    // Parses and sums the numbers in [pos, end) of the input body.
+    //
+    // If atNumber is true, pos is the start of a number. Otherwise, it's the
+    // start of a delimiter immediately following a number, which enables
+    // ParallelStringCalculator to sum chunks of the input independently.
+    //
+    // Returns FAILED after recording the first syntax error in the range in
+    // `result`. Otherwise returns the sum, as described for sum(), unless the
+    // range contains a negative number. Then it returns a negative value
+    // encoding the index of the first one, which firstNegative() decodes.
+    static long sumRange(
+            CharSequence numbers,
+            int pos,
+            int end,
+            boolean atNumber,
+            int hdrStart,
+            int hdrEnd,
+            long maxNumber,
+            Sum carry,
+            Result result) {
+        final long maxBeforeDigit = maxNumber / 10;
+        long sum = 0;
+        int firstNegative = -1;
+
+        if (!atNumber) {
+            pos = skipDelimiter(numbers, pos, end, hdrStart, hdrEnd, result);
+            if (pos < 0) return FAILED;
+        }
+
+        while (true) {
+            final int numStart = pos;
+            final boolean negative = numbers.charAt(pos) == '-';
+            if (negative) ++pos;
+
+            final int digitsStart = pos;
+            long value = 0;
+
+            while (pos != end) {
+                final char c = numbers.charAt(pos);
+                if (!isDigit(c)) break;
+                value = value * 10 + (c - '0');
+
+                // value < 0 if the last digit overflowed Long.MAX_VALUE. The
+                // check against maxBeforeDigit happens first, since a value
+                // that large may wrap around past 0 on the next digit.
+                if (value > maxNumber || value < 0 ||
+                        (value > maxBeforeDigit && pos + 1 != end &&
+                         isDigit(numbers.charAt(pos + 1)))) {
+                    fail(result, Result.Error.NUMBER_TOO_LARGE, numStart,
+                            maxNumber);
+                    return FAILED;
+                }
+                ++pos;
+            }
+
+            if (pos == digitsStart) {
+                unexpected(numbers, pos, hdrStart, hdrEnd, result);
+                return FAILED;
+            }
+            if (negative) {
+                if (firstNegative < 0) firstNegative = numStart;
+            } else if (sum > Long.MAX_VALUE - value) {
+                carry.add(sum);
+                sum = value;
+            } else {
+                sum += value;
+            }
+            if (pos == end) break;
+
+            pos = skipDelimiter(numbers, pos, end, hdrStart, hdrEnd, result);
+            if (pos < 0) return FAILED;
+        }
+        return firstNegative < 0 ? sum : -1L - firstNegative;
+    }
+
+    // Decodes the index of the first negative number from a negative
+    // sumRange() result.
+    static int firstNegative(long sumRangeResult) {
+        return (int) (-1L - sumRangeResult);
+    }
+
+    // Returns the index of the number following the delimiter at pos, or -1
+    // after recording an error in `result`.
+    private static int skipDelimiter(
+            CharSequence s,
+            int pos,
+            int end,
+            int hdrStart,
+            int hdrEnd,
+            Result result) {
+        final int delimLen = matchDelimiter(s, pos, hdrStart, hdrEnd);
+        if (delimLen == 0) {
+            invalidCharacter(s, pos, result);
+            return -1;
+        }
+        pos += delimLen;
+
+        if (pos == end) {
+            fail(result, Result.Error.MISSING_NUMBER, pos);
+            return -1;
+        }
+        return pos;
+    }
+
+    static boolean startsWithHeader(CharSequence s) {
+        return s.length() >= HEADER_PREFIX.length() &&
+                s.charAt(0) == '/' && s.charAt(1) == '/';
+    }
+
+    // Validates the custom delimiter header starting at hdrStart.
+    //
+    // Returns the index of the newline that terminates the header, or -1
+    // after recording an error in `result`.
+    static int parseHeader(CharSequence s, int hdrStart, Result result) {
+        final int end = s.length();
+        int pos = hdrStart;
+
+        if (pos == end || s.charAt(pos) == '\n') {
+            fail(result, Result.Error.MISSING_DELIMITER, pos);
+            return -1;
+        }
+
+        if (s.charAt(pos) != '[') {
+            if (!checkDelimiterChar(s, pos, result)) return -1;
+            ++pos;
+        } else {
+            while (pos != end && s.charAt(pos) == '[') {
+                final int delimStart = ++pos;
+
+                while (pos != end && !isBracketEnd(s.charAt(pos))) {
+                    if (!checkDelimiterChar(s, pos, result)) return -1;
+                    ++pos;
+                }
+                if (pos == end || s.charAt(pos) != ']') {
+                    fail(result, Result.Error.UNTERMINATED_DELIMITER,
+                            delimStart - 1);
+                    return -1;
+                }
+                if (pos == delimStart) {
+                    fail(result, Result.Error.EMPTY_DELIMITER, delimStart - 1);
+                    return -1;
+                }
+                ++pos;
+            }
+        }
+
+        if (pos == end || s.charAt(pos) != '\n') {
+            fail(result, Result.Error.UNTERMINATED_HEADER, pos);
+            return -1;
+        }
+        return pos;
+    }
+
+    private static boolean isBracketEnd(char c) {
+        return c == ']' || c == '\n';
+    }
+
+    private static boolean checkDelimiterChar(
+            CharSequence s, int pos, Result result) {
+        final char c = s.charAt(pos);
+
+        if (isDigit(c) || c == '-' || c == '\n') {
+            return fail(result, Result.Error.INVALID_DELIMITER_CHARACTER, pos,
+                    c);
+        }
+        return true;
+    }
+
+    // Returns the length of the delimiter at pos, or 0 if none matches.
+    //
+    // When multiple bracketed delimiters match, the longest one wins. The
+    // delimiters are matched in place against the header, so nothing is copied.
+    static int matchDelimiter(
+            CharSequence s, int pos, int hdrStart, int hdrEnd) {
+        final char c = s.charAt(pos);
+
+        if (c == '\n') return 1;
+        if (hdrStart < 0) return c == ',' ? 1 : 0;
+        if (s.charAt(hdrStart) != '[') return c == s.charAt(hdrStart) ? 1 : 0;
+
+        int longest = 0;
+
+        for (int i = hdrStart; i != hdrEnd; ) {
+            final int delimStart = i + 1;
+            int delimEnd = delimStart;
+            while (s.charAt(delimEnd) != ']') ++delimEnd;
+
+            final int len = delimEnd - delimStart;
+            if (len > longest && regionMatches(s, pos, delimStart, len)) {
+                longest = len;
+            }
+            i = delimEnd + 1;
+        }
+        return longest;
+    }
+
+    private static boolean regionMatches(
+            CharSequence s, int pos, int delimStart, int len) {
+        if (pos + len > s.length()) return false;
+
+        for (int i = 0; i != len; ++i) {
+            if (s.charAt(pos + i) != s.charAt(delimStart + i)) return false;
+        }
+        return true;
+    }
+
+    // Records the error for a position where a number should begin.
+    private static boolean unexpected(
+            CharSequence s, int pos, int hdrStart, int hdrEnd, Result result) {
+        if (pos == s.length() ||
+                matchDelimiter(s, pos, hdrStart, hdrEnd) != 0) {
+            return fail(result, Result.Error.MISSING_NUMBER, pos);
+        }
+        return invalidCharacter(s, pos, result);
+    }
+
+    private static boolean invalidCharacter(
+            CharSequence s, int pos, Result result) {
+        return fail(result, Result.Error.INVALID_CHARACTER, pos, s.charAt(pos));
+    }
+
+    // Collects every negative number into the error message.
+    //
+    // This second pass only happens on the error path. Since the first pass
+    // has already validated the input, and delimiters can't contain '-', every
+    // '-' from firstNegative onward begins a negative number.
+    static boolean negativesNotAllowed(
+            CharSequence s, int firstNegative, Result result) {
+        final var msg = new StringBuilder("negatives not allowed: ");
+        final int end = s.length();
+        boolean first = true;
+
+        for (int pos = firstNegative; pos != end; ++pos) {
+            if (s.charAt(pos) != '-') continue;
+            if (!first) msg.append(", ");
+            first = false;
+
+            final int numStart = pos++;
+            while (pos != end && isDigit(s.charAt(pos))) ++pos;
+            msg.append(s, numStart, pos);
+            --pos;
+        }
+        return fail(result, Result.Error.NEGATIVES_NOT_ALLOWED, msg.toString());
+    }
+
+    static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -1,11 +1,92 @@
 package com.mike_bland.training.testing.stringcalculator;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
 public interface StringCalculator {
+    // Reports invalid input from add() and addExact().
+    //
+    // Doesn't capture a stack trace, which would cost more than the
+    // calculation itself, and would only ever point into the calculator. The
+    // message says everything a caller needs to know.
     class Exception extends java.lang.Exception {
         public Exception(String message) {
-            super(message);
+            super(message, null, false, false);
         }
     }
 
     int add(String numbers) throws Exception;
+
+    // Adds numbers from any CharSequence, such as a CharBuffer wrapping a JSON
+    // parser's internal buffer.
+    //
+    // Implementations that can parse a CharSequence without copying it should
+    // override this default, which converts the input to a String.
+    default int add(CharSequence numbers) throws Exception {
+        return add(numbers == null ? null : numbers.toString());
+    }
+
+    // Stores the sum of numbers in `sum` without overflowing.
+    //
+    // Where add() throws if the sum exceeds Integer.MAX_VALUE, this returns
+    // totals of any size. Implementations should accumulate in a long and
+    // only switch to a BigInteger on overflow, which Sum.add() does. Reusing
+    // the same Sum between calls then avoids allocating in the common case.
+    //
+    // The contents of `sum` are unspecified if this throws. This default
+    // accepts only the inputs that add() accepts.
+    default void addExact(CharSequence numbers, Sum sum) throws Exception {
+        sum.reset();
+        sum.add(add(numbers));
+    }
+
+    // Stores the sum of numbers, or the reason it can't be computed, in
+    // `result`, and returns result.isOk().
+    //
+    // This reports invalid input without throwing, and result.message()
+    // matches the message add() would throw. Implementations that can detect
+    // errors without throwing should override this default, which calls add().
+    default boolean tryAdd(CharSequence numbers, Result result) {
+        try {
+            result.succeed(add(numbers));
+        } catch (Exception e) {
+            result.fail(e);
+        }
+        return result.isOk();
+    }
+
+    // Like addExact(), but reports errors in `result` instead of throwing,
+    // just as tryAdd() does for add().
+    default boolean tryAddExact(CharSequence numbers, Sum sum, Result result) {
+        try {
+            addExact(numbers, sum);
+            result.succeed(0);
+        } catch (Exception e) {
+            result.fail(e);
+        }
+        return result.isOk();
+    }
+
+    // Like tryAdd(), for the UTF-8 contents of `body`.
+    //
+    // Reads until the end of `body`, unless it finds an error first, but
+    // doesn't close it. Implementations that can sum a stream as it arrives
+    // should override this default, which reads the whole body into a String
+    // first.
+    default boolean tryAdd(InputStream body, Result result)
+            throws IOException {
+        return tryAdd(readUtf8(body), result);
+    }
+
+    // Like tryAddExact(), for the UTF-8 contents of `body`, as tryAdd() is
+    // for tryAdd(CharSequence, Result).
+    default boolean tryAddExact(InputStream body, Sum sum, Result result)
+            throws IOException {
+        return tryAddExact(readUtf8(body), sum, result);
+    }
+
+    private static String readUtf8(InputStream body) throws IOException {
+        return new String(body.readAllBytes(), StandardCharsets.UTF_8);
+    }
 }
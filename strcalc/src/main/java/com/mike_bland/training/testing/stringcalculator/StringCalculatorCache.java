@@ -0,0 +1,209 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+// Bounded, concurrent cache of StringCalculator results and error messages.
+//
+// Uses Caffeine, whose Window TinyLFU eviction policy keeps the most
+// frequently requested inputs even when a burst of one-off inputs arrives:
+//
+// - https://github.com/ben-manes/caffeine/wiki/Efficiency
+//
+// Each entry weighs as much as the length of its input and error message, and
+// the total weight is bounded by MAXIMUM_WEIGHT_PROPERTY. Inputs longer than
+// MAXIMUM_INPUT_LENGTH_PROPERTY bypass the cache entirely, since they're
+// unlikely to repeat and would evict many smaller entries.
+//
+// Both limits are read from system properties, e.g.:
+//
+//   -Dstrcalc.cache.maximumWeight=1048576
+//
+// Lookups use a Key wrapping the caller's CharSequence, so a hit doesn't copy
+// the input, e.g., a CharBuffer over the JSON parser's buffer. Only a miss
+// copies the input into a String, since the cache stores the lookup Key.
+//
+// StringCalculatorCacheProducer shares one instance between Weld beans.
+public class StringCalculatorCache {
+    public static final String MAXIMUM_WEIGHT_PROPERTY =
+            "strcalc.cache.maximumWeight";
+    public static final String MAXIMUM_INPUT_LENGTH_PROPERTY =
+            "strcalc.cache.maximumInputLength";
+
+    static final long DEFAULT_MAXIMUM_WEIGHT = 16L * 1024 * 1024;
+    static final int DEFAULT_MAXIMUM_INPUT_LENGTH = 64 * 1024;
+
+    // Either the result of a successful calculation, or the Result of a
+    // failed one, which keeps the error's type and code as well as its
+    // message. tryAdd() only ever copies `failure`, never changes it.
+    record Entry(int result, Result failure) {
+        static Entry calculate(StringCalculator calc, String numbers) {
+            var result = new Result();
+
+            if (!calc.tryAdd(numbers, result)) {
+                // Formats the message before other threads can read it.
+                result.message();
+                return new Entry(0, result);
+            }
+            return new Entry(result.value(), null);
+        }
+
+        int weight(Key numbers) {
+            return numbers.length() +
+                    (failure == null ? 0 : failure.message().length());
+        }
+    }
+
+    // Compares the characters of any CharSequence, with the same hash code
+    // as String.
+    //
+    // A lookup Key may wrap a CharSequence that changes after the lookup
+    // returns. On a miss, Caffeine stores the lookup Key itself, so the
+    // mapping function calls freeze() to replace the CharSequence with a
+    // String of the same characters. The caller can't change its CharSequence
+    // in the meantime, since it's blocked in the lookup.
+    static final class Key {
+        private volatile CharSequence chars;
+        private final int hash;
+
+        Key(CharSequence chars) {
+            this.chars = chars;
+            this.hash = hash(chars);
+        }
+
+        // Copies the characters into a String, if they aren't one already.
+        String freeze() {
+            var current = chars;
+            if (current instanceof String s) return s;
+
+            var copy = current.toString();
+            chars = copy;
+            return copy;
+        }
+
+        int length() {
+            return chars.length();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key k && hash == k.hash &&
+                    CharSequence.compare(chars, k.chars) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return chars.toString();
+        }
+
+        private static int hash(CharSequence chars) {
+            if (chars instanceof String s) return s.hashCode();
+
+            int h = 0;
+            for (int i = 0, len = chars.length(); i != len; ++i) {
+                h = 31 * h + chars.charAt(i);
+            }
+            return h;
+        }
+    }
+
+    private final Cache<Key, Entry> cache;
+    private final int maximumInputLength;
+
+    // Counters as of the last resetStats(), which stats() subtracts.
+    private volatile CacheStats baseline = CacheStats.empty();
+
+    public StringCalculatorCache() {
+        this(
+                Long.getLong(MAXIMUM_WEIGHT_PROPERTY, DEFAULT_MAXIMUM_WEIGHT),
+                Integer.getInteger(
+                        MAXIMUM_INPUT_LENGTH_PROPERTY,
+                        DEFAULT_MAXIMUM_INPUT_LENGTH
+                )
+        );
+    }
+
+    StringCalculatorCache(long maximumWeight, int maximumInputLength) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumWeight)
+                .weigher((Key numbers, Entry e) -> e.weight(numbers))
+                .recordStats()
+                .build();
+        this.maximumInputLength = maximumInputLength;
+    }
+
+    // Returns the cached result for numbers, calling calc.add() on a miss.
+    //
+    // A cached error is thrown as the same type of Exception, with the same
+    // message, as the original. See Result.valueOrThrow().
+    public int add(CharSequence numbers, StringCalculator calc)
+            throws StringCalculator.Exception {
+        if (numbers == null || numbers.length() > maximumInputLength) {
+            return calc.add(numbers);
+        }
+
+        final var result = new Result();
+        tryAdd(numbers, calc, result);
+        return result.valueOrThrow();
+    }
+
+    // Stores the cached result for numbers in `result`, calling calc.tryAdd()
+    // on a miss, and returns result.isOk().
+    //
+    // A cached error has the same errorType(), error() code, and message() as
+    // the original.
+    public boolean tryAdd(
+            CharSequence numbers, StringCalculator calc, Result result) {
+        if (numbers == null || numbers.length() > maximumInputLength) {
+            return calc.tryAdd(numbers, result);
+        }
+
+        var entry = cache.get(
+                new Key(numbers), key -> Entry.calculate(calc, key.freeze())
+        );
+
+        if (entry.failure() != null) {
+            result.copyFrom(entry.failure());
+            return false;
+        }
+        result.succeed(entry.result());
+        return true;
+    }
+
+    // Returns a snapshot of the hit, miss, and eviction counters since the
+    // last resetStats().
+    public CacheStats stats() {
+        return cache.stats().minus(baseline);
+    }
+
+    // Restarts the counters reported by stats() from zero, keeping every
+    // entry.
+    //
+    // Servlet calls this after its Warmup, whose synthetic requests would
+    // otherwise appear in /metrics as thousands of hits.
+    public void resetStats() {
+        baseline = cache.stats();
+    }
+
+    // Returns the approximate number of cached entries.
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    // Performs pending evictions now instead of asynchronously.
+    void cleanUp() {
+        cache.cleanUp();
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Produces;
+
+// Injects the one StringCalculatorCache itself, instead of a Weld client
+// proxy for it.
+//
+// CachingStringCalculator calls its @Delegate from inside
+// StringCalculatorCache.tryAdd(). While a call through a client proxy is in
+// progress, Weld suspends the decorator chain of the calling bean. The
+// delegate call would then start the chain over, reentering
+// CachingStringCalculator, and Caffeine would throw "Recursive update".
+//
+// The producer method has the default @Dependent scope, so Weld injects the
+// instance it returns without a proxy. This bean is @ApplicationScoped, so
+// every injection point, including MetricsServlet's, gets the same instance.
+@ApplicationScoped
+public class StringCalculatorCacheProducer {
+    private final StringCalculatorCache cache = new StringCalculatorCache();
+
+    @Produces
+    StringCalculatorCache cache() {
+        return cache;
+    }
+}
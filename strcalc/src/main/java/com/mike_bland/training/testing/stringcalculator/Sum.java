@@ -0,0 +1,64 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import java.math.BigInteger;
+
+// Mutable, arbitrary-precision total used by StringCalculator.addExact().
+//
+// Values accumulate in a primitive long. Only when Math.addExact() detects an
+// overflow does the long get folded into a BigInteger, after which the long
+// starts accumulating again. A total that fits in a long therefore never
+// allocates, and a Sum can be reset() and reused between calculations.
+public final class Sum {
+    private long low;
+    private BigInteger high;
+
+    public void reset() {
+        low = 0;
+        high = null;
+    }
+
+    public void add(long value) {
+        try {
+            low = Math.addExact(low, value);
+        } catch (ArithmeticException e) {
+            high = toBigInteger();
+            low = value;
+        }
+    }
+
+    public void add(Sum other) {
+        add(other.low);
+        if (other.high != null) {
+            high = high == null ? other.high : high.add(other.high);
+        }
+    }
+
+    public boolean isZero() {
+        return high == null ? low == 0 : toBigInteger().signum() == 0;
+    }
+
+    public boolean fitsInLong() {
+        return high == null || toBigInteger().bitLength() < Long.SIZE;
+    }
+
+    // Returns the total, which must fit in a long. See fitsInLong().
+    public long longValue() {
+        return high == null ? low : toBigInteger().longValueExact();
+    }
+
+    public BigInteger toBigInteger() {
+        var lowValue = BigInteger.valueOf(low);
+        return high == null ? lowValue : high.add(lowValue);
+    }
+
+    @Override
+    public String toString() {
+        return high == null ? Long.toString(low) : toBigInteger().toString();
+    }
+}
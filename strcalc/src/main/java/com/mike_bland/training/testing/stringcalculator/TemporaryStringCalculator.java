@@ -1,14 +1,20 @@
 package com.mike_bland.training.testing.stringcalculator;
 
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Alternative;
 
+// Placeholder StringCalculator implementation that always throws.
+//
+// ParallelStringCalculator is now the production implementation. This class
+// remains a disabled @Alternative; listing it under <alternatives> in
+// WEB-INF/beans.xml, in place of ParallelStringCalculator, will make Weld
+// inject it instead.
 @ApplicationScoped
+@Alternative
 public class TemporaryStringCalculator implements StringCalculator {
     public static class Exception extends StringCalculator.Exception {
         public Exception(String numbers) {
-            super(String.format(
-                    "TemporaryStringCalculator received: \"%s\"", numbers
-            ));
+            super("TemporaryStringCalculator received: \"" + numbers + "\"");
         }
     }
 
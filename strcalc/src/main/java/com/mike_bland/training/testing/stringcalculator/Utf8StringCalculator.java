@@ -0,0 +1,238 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import jakarta.enterprise.inject.Vetoed;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+
+// StreamingStringCalculator that also sums raw UTF-8 bytes without decoding
+// them into chars first.
+//
+// The largest inputs are usually long runs of digits separated by commas and
+// newlines, with no header. For those, a DelimiterScanner finds every
+// delimiter and validates every digit a whole block at a time, using SIMD
+// instructions when the Vector API is available. Only the digits of each
+// number are then accumulated one byte at a time, in a loop without any
+// validation branches.
+//
+// Any other input, including any invalid input, is decoded and passed to the
+// StreamingStringCalculator implementation instead. That keeps every result
+// and error message identical to the char-based path, and keeps the block
+// scanning free of the header and error handling logic.
+//
+// The InputStream versions of tryAdd() and tryAddExact() read bodies of up to
+// MAX_BODY_BYTES into memory and sum them as bytes. Longer bodies go to the
+// StreamingStringCalculator implementation, which sums them as they arrive,
+// so a request never buffers more than MAX_BODY_BYTES. ParallelStringCalculator
+// delegates its InputStream methods here, so every text/plain request body
+// takes this path.
+//
+// To enable the Vector API, start the JVM with:
+//
+//   --add-modules jdk.incubator.vector
+//
+// Without it, a scalar DelimiterScanner produces the same results.
+//
+// @Vetoed keeps Weld from treating this class as another StringCalculator
+// bean, since it inherits @ApplicationScoped.
+@Vetoed
+public class Utf8StringCalculator extends StreamingStringCalculator {
+    // The most digits that can't overflow the limit for each summation mode.
+    // Numbers with more digits, including leading zeros, take the slow path.
+    static final int MAX_INT_DIGITS = 10;
+    static final int MAX_LONG_DIGITS = 18;
+
+    static final int MAX_BODY_BYTES = 1 << 20;
+
+    private final DelimiterScanner scanner;
+    private final int maxBodyBytes;
+
+    public Utf8StringCalculator() {
+        this(DelimiterScanner.best());
+    }
+
+    Utf8StringCalculator(DelimiterScanner scanner) {
+        this(scanner, MAX_BODY_BYTES);
+    }
+
+    Utf8StringCalculator(DelimiterScanner scanner, int maxBodyBytes) {
+        this.scanner = scanner;
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    // Returns true if this instance uses the Vector API.
+    public boolean isVectorized() {
+        return !(scanner instanceof DelimiterScanner.Scalar);
+    }
+
+    @Override
+    public boolean tryAdd(InputStream body, Result result)
+            throws IOException {
+        final byte[] utf8 = body.readNBytes(maxBodyBytes + 1);
+
+        if (utf8.length > maxBodyBytes) {
+            return super.tryAdd(unread(utf8, body), result);
+        }
+        return tryAdd(utf8, 0, utf8.length, result);
+    }
+
+    @Override
+    public boolean tryAddExact(InputStream body, Sum sum, Result result)
+            throws IOException {
+        final byte[] utf8 = body.readNBytes(maxBodyBytes + 1);
+
+        if (utf8.length > maxBodyBytes) {
+            return super.tryAddExact(unread(utf8, body), sum, result);
+        }
+        return tryAddExact(utf8, 0, utf8.length, sum, result);
+    }
+
+    // Returns a stream of the bytes already read from body, followed by the
+    // rest of body.
+    private static InputStream unread(byte[] head, InputStream body) {
+        return new SequenceInputStream(new ByteArrayInputStream(head), body);
+    }
+
+    public int add(byte[] utf8, int offset, int length) throws Exception {
+        final var result = new Result();
+
+        if (!tryAdd(utf8, offset, length, result)) {
+            throw new Exception(result.message());
+        }
+        return result.value();
+    }
+
+    public void addExact(byte[] utf8, int offset, int length, Sum sum)
+            throws Exception {
+        final var result = new Result();
+
+        if (!tryAddExact(utf8, offset, length, sum, result)) {
+            throw new Exception(result.message());
+        }
+    }
+
+    // Like tryAdd(CharSequence, Result), for the UTF-8 bytes in
+    // utf8[offset, offset + length).
+    //
+    // Error indexes refer to chars, not bytes, just as if the input had been
+    // decoded into a String first.
+    public boolean tryAdd(
+            byte[] utf8, int offset, int length, Result result) {
+        final long sum = sumPlain(
+                utf8, offset, offset + length, Integer.MAX_VALUE,
+                MAX_INT_DIGITS, null
+        );
+
+        if (sum == FAILED) return tryAdd(decode(utf8, offset, length), result);
+        if (sum > Integer.MAX_VALUE) {
+            return fail(result, Result.Error.SUM_TOO_LARGE, -1,
+                    Integer.MAX_VALUE);
+        }
+        result.succeed((int) sum);
+        return true;
+    }
+
+    // Like tryAddExact(CharSequence, Sum, Result), for the UTF-8 bytes in
+    // utf8[offset, offset + length).
+    public boolean tryAddExact(
+            byte[] utf8, int offset, int length, Sum sum, Result result) {
+        sum.reset();
+        final long partial = sumPlain(
+                utf8, offset, offset + length, Long.MAX_VALUE,
+                MAX_LONG_DIGITS, sum
+        );
+
+        if (partial == FAILED) {
+            return tryAddExact(decode(utf8, offset, length), sum, result);
+        }
+        sum.add(partial);
+        result.succeed(0);
+        return true;
+    }
+
+    private static String decode(byte[] utf8, int offset, int length) {
+        return new String(utf8, offset, length, StandardCharsets.UTF_8);
+    }
+
+    // Sums bytes[pos, end) if it contains only numbers of no more than
+    // maxDigits digits and no greater than maxNumber, each separated by a
+    // single ',' or '\n'.
+    //
+    // Returns FAILED for any other input, which may or may not be valid.
+    // Otherwise returns the sum, less any amount carried into `carry`, as
+    // StreamingStringCalculator.sumRange() does.
+    long sumPlain(
+            byte[] bytes,
+            int pos,
+            int end,
+            long maxNumber,
+            int maxDigits,
+            Sum carry) {
+        long sum = 0;
+        int numStart = pos;
+
+        // Compares the remaining length instead of `block < end`, since
+        // `block` may overflow past the end of a very large array.
+        for (int block = pos;
+             end - block > 0;
+             block += DelimiterScanner.BLOCK_SIZE) {
+            long delims = scanner.delimiters(bytes, block, end);
+            if (delims == DelimiterScanner.INVALID) return FAILED;
+
+            for (; delims != 0; delims &= delims - 1) {
+                final int delim = block + Long.numberOfTrailingZeros(delims);
+                final long value = parseDigits(
+                        bytes, numStart, delim, maxNumber, maxDigits
+                );
+
+                if (value < 0) return FAILED;
+                if (sum > Long.MAX_VALUE - value) {
+                    carry.add(sum);
+                    sum = value;
+                } else {
+                    sum += value;
+                }
+                numStart = delim + 1;
+            }
+        }
+
+        // An empty input is valid, but one ending with a delimiter isn't.
+        if (numStart == end) return numStart == pos ? 0 : FAILED;
+
+        final long value = parseDigits(
+                bytes, numStart, end, maxNumber, maxDigits
+        );
+
+        if (value < 0) return FAILED;
+        if (sum > Long.MAX_VALUE - value) {
+            carry.add(sum);
+            return value;
+        }
+        return sum + value;
+    }
+
+    // Parses the digits in bytes[start, end), which the DelimiterScanner has
+    // already validated.
+    //
+    // Returns -1 if the number is empty, or too large.
+    private static long parseDigits(
+            byte[] bytes, int start, int end, long maxNumber, int maxDigits) {
+        final int len = end - start;
+        if (len == 0 || len > maxDigits) return -1;
+
+        long value = 0;
+        for (int i = start; i != end; ++i) {
+            value = value * 10 + (bytes[i] - '0');
+        }
+        return value <= maxNumber ? value : -1;
+    }
+}
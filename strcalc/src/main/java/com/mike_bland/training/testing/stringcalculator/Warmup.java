@@ -0,0 +1,83 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// Runs synthetic /add requests through the Servlet before it reports ready.
+//
+// HotSpot only compiles a method with its optimizing compiler after it has
+// run many times. Until then, requests run interpreted or lightly optimized
+// code, which is why latencies are much higher just after a deploy. Warmup
+// runs each PAYLOADS entry through the same JsonFactory, readRequest(),
+// calculator, and writeResponse() code as real requests, so that by the time
+// Readiness reports ready, that code is already compiled.
+//
+// Each payload runs in both the default and exact sum modes. Since
+// CachingStringCalculator only caches default mode results, the exact mode
+// runs reach the calculator every time.
+class Warmup {
+    // Covers each delimiter format, multi-digit and very large numbers, and
+    // the error paths.
+    static final List<byte[]> PAYLOADS = toBytes(
+            "{\"numbers\":\"\"}",
+            "{\"numbers\":\"1,2\\n3\"}",
+            "{\"numbers\":\"12,345,6789\\n2147483647\"}",
+            "{\"numbers\":\"//;\\n1;22;333\"}",
+            "{\"numbers\":\"//[***][%]\\n1***22%333\"}",
+            "{\"numbers\":\"1,-2,3,-4\"}",
+            "{\"numbers\":\"1,,2\"}",
+            "{\"numbers\":null}"
+    );
+
+    private final Servlet servlet;
+    private final int iterations;
+
+    Warmup(Servlet servlet, int iterations) {
+        this.servlet = servlet;
+        this.iterations = iterations;
+    }
+
+    // Runs every payload `iterations` times in each sum mode.
+    //
+    // Returns false if the current thread was interrupted before finishing.
+    boolean run() throws IOException {
+        for (int i = 0; i != iterations; ++i) {
+            if (Thread.interrupted()) return false;
+
+            for (var payload : PAYLOADS) {
+                runRequest(payload, null);
+                runRequest(payload, new Sum());
+            }
+        }
+        return true;
+    }
+
+    private void runRequest(byte[] payload, Sum exact) throws IOException {
+        var respPayload = new Servlet.CalculatorResponse();
+        respPayload.exact = exact;
+
+        try (var parser = Servlet.JSON.createParser(payload);
+             var gen = Servlet.JSON.createGenerator(
+                     OutputStream.nullOutputStream(), JsonEncoding.UTF8
+             )) {
+            servlet.readRequest(parser, respPayload);
+            servlet.writeResponse(gen, respPayload);
+        }
+    }
+
+    private static List<byte[]> toBytes(String... payloads) {
+        return List.of(payloads).stream()
+                .map(p -> p.getBytes(StandardCharsets.UTF_8))
+                .toList();
+    }
+}
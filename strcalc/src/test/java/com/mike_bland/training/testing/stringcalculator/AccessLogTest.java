@@ -0,0 +1,258 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import com.mike_bland.training.testing.annotations.MediumCoverageTest;
+import com.mike_bland.training.testing.annotations.SmallTest;
+import com.mike_bland.training.testing.utils.TestTomcatPool;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AccessLogTest {
+    static final long START_MILLIS = 1_700_000_000_123L;
+
+    static AccessLog.Entry entry(String uri, int status, long bytesSent) {
+        return new AccessLog.Entry(
+                START_MILLIS, "127.0.0.1", null, "POST", uri, null,
+                "HTTP/1.1", status, bytesSent
+        );
+    }
+
+    static String timestamp() {
+        return AccessLog.TIMESTAMP.format(
+                Instant.ofEpochMilli(START_MILLIS)
+        );
+    }
+
+    private final StringBuilder out = new StringBuilder();
+
+    @SmallTest
+    void writesEntriesInCommonLogFormat() {
+        var log = new AccessLog(4, out::append);
+
+        log.offer(entry("/strcalc/add", 200, 12));
+        log.offer(new AccessLog.Entry(
+                START_MILLIS, "::1", "mbland", "GET", "/strcalc/add",
+                "numbers=1,2", "HTTP/2.0", 304, 0
+        ));
+
+        assertEquals(2, log.drain());
+        assertEquals(
+                "127.0.0.1 - - [" + timestamp() + "] " +
+                "\"POST /strcalc/add HTTP/1.1\" 200 12\n" +
+                "::1 - mbland [" + timestamp() + "] " +
+                "\"GET /strcalc/add?numbers=1,2 HTTP/2.0\" 304 -\n",
+                out.toString()
+        );
+        assertEquals(2, log.getLogged());
+    }
+
+    @SmallTest
+    void dropsEntriesWhenFullAndReportsTheCount() {
+        var log = new AccessLog(2, out::append);
+
+        assertTrue(log.offer(entry("/1", 200, 1)));
+        assertTrue(log.offer(entry("/2", 200, 1)));
+        assertFalse(log.offer(entry("/3", 200, 1)));
+        assertFalse(log.offer(entry("/4", 200, 1)));
+
+        assertEquals(2, log.drain());
+        assertTrue(
+                out.toString().endsWith("AccessLog dropped 2 entries\n"),
+                out.toString()
+        );
+        assertEquals(2, log.getDropped());
+
+        // Reports only newly dropped entries.
+        out.setLength(0);
+        assertTrue(log.offer(entry("/5", 200, 1)));
+        assertEquals(1, log.drain());
+        assertFalse(out.toString().contains("dropped"), out.toString());
+    }
+
+    @SmallTest
+    void logsOnlyTheFirstWriteError() {
+        var records = new ArrayList<LogRecord>();
+        var handler = new Handler() {
+            @Override
+            public synchronized void publish(LogRecord r) {
+                records.add(r);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        var logger = Logger.getLogger(AccessLog.class.getName());
+        var log = new AccessLog(4, batch -> {
+            throw new IOException("disk full");
+        });
+
+        logger.addHandler(handler);
+        try {
+            log.offer(entry("/1", 200, 1));
+            assertEquals(1, log.drain());
+            log.offer(entry("/2", 200, 1));
+            assertEquals(1, log.drain());
+        } finally {
+            logger.removeHandler(handler);
+        }
+
+        assertEquals(1, records.size());
+        var record = records.get(0);
+        assertEquals(Level.SEVERE, record.getLevel());
+        assertEquals("disk full", record.getThrown().getMessage());
+    }
+
+    @SmallTest
+    void reusesSlotsAfterEachDrain() {
+        var log = new AccessLog(4, out::append);
+
+        for (int lap = 0; lap != 10; ++lap) {
+            for (int i = 0; i != log.capacity(); ++i) {
+                assertTrue(log.offer(entry("/" + i, 200, 1)));
+            }
+            assertEquals(log.capacity(), log.drain());
+        }
+        assertEquals(0, log.getDropped());
+        assertEquals(40, log.getLogged());
+    }
+
+    @SmallTest
+    void neverLosesEntriesFromConcurrentProducers() throws Exception {
+        var lines = new StringBuilder();
+        var log = new AccessLog(64, lines::append);
+        var threads = new ArrayList<Thread>();
+        final int perThread = 5_000;
+
+        log.start();
+        for (int t = 0; t != 4; ++t) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i != perThread; ++i) {
+                    log.offer(entry("/add", 200, 1));
+                }
+            }));
+        }
+        for (var thread : threads) {
+            thread.join();
+        }
+        log.close();
+
+        final long written = lines.chars().filter(c -> c == '\n').count();
+        final long dropReports = lines.toString().split("dropped", -1).length - 1;
+        assertEquals(4 * perThread, log.getLogged() + log.getDropped());
+        assertEquals(log.getLogged() + dropReports, written);
+    }
+
+    @SmallTest
+    void roundsCapacityUpToAPowerOfTwo() {
+        assertEquals(2, new AccessLog(2, out::append).capacity());
+        assertEquals(8, new AccessLog(5, out::append).capacity());
+        assertEquals(8192, new AccessLog(8192, out::append).capacity());
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new AccessLog(1, out::append)
+        );
+    }
+
+    @SmallTest
+    void rotatesFilesPastTheMaximumSize() throws Exception {
+        var dir = Files.createTempDirectory("access-log-test");
+        var file = new AccessLog.RotatingFile(
+                dir.resolve("access.log"), 10, 2
+        );
+
+        try {
+            file.write("0123456789\n");
+            file.write("abcdefghij\n");
+            file.write("ABCDEFGHIJ\n");
+            file.write("klmnopqrst\n");
+            file.close();
+
+            assertEquals(
+                    "klmnopqrst\n",
+                    Files.readString(dir.resolve("access.log"))
+            );
+            assertEquals(
+                    "ABCDEFGHIJ\n",
+                    Files.readString(dir.resolve("access.log.1"))
+            );
+            assertEquals(
+                    "abcdefghij\n",
+                    Files.readString(dir.resolve("access.log.2"))
+            );
+            assertFalse(Files.exists(dir.resolve("access.log.3")));
+        } finally {
+            try (var files = Files.list(dir)) {
+                for (var f : files.toList()) Files.delete(f);
+            }
+            Files.delete(dir);
+        }
+    }
+
+    // ReadyServlet writes its body without setting Content-Length, so Tomcat
+    // only sets the header after the filter chain returns. The entry still
+    // records the number of bytes written.
+    @MediumCoverageTest
+    void recordsBytesSentForResponsesWithoutContentLength() throws Exception {
+        var lines = new StringBuilder();
+        var log = new AccessLog(4, lines::append);
+        var readiness = new Readiness();
+        readiness.markReady();
+
+        try (var lease = TestTomcatPool.SHARED.leaseServlet(
+                Servlet.DEFAULT_ROOT,
+                new ReadyServlet(readiness),
+                Map.of(),
+                new AccessLogFilter(log)
+        )) {
+            var req = HttpRequest.newBuilder()
+                    .uri(lease.tomcat().resolveEndpoint(ReadyServlet.ENDPOINT))
+                    .GET()
+                    .build();
+
+            try (var client = HttpClient.newHttpClient()) {
+                var resp = client.send(req, BodyHandlers.ofString());
+                assertEquals("ready", resp.body());
+            }
+
+            // Tomcat records the entry after sending the response, and the
+            // AccessLog writes it on its own thread.
+            final long deadline = System.nanoTime() + 5_000_000_000L;
+            while (log.getLogged() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+        }
+
+        assertTrue(
+                lines.toString().endsWith(
+                        "\"GET /strcalc/ready HTTP/1.1\" 200 5\n"
+                ),
+                lines.toString()
+        );
+    }
+}
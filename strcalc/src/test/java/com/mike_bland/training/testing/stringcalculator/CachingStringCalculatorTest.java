@@ -0,0 +1,192 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import com.mike_bland.training.testing.annotations.SmallTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CachingStringCalculatorTest {
+    // Test double that counts its calls and returns the length of its input,
+    // or throws if the input is "bad".
+    static class CountingCalculator implements StringCalculator {
+        int calls;
+
+        @Override
+        public int add(String numbers) throws Exception {
+            ++calls;
+            if (numbers.equals("bad")) throw new Exception("received: bad");
+            return numbers.length();
+        }
+    }
+
+    private final CountingCalculator delegate = new CountingCalculator();
+
+    CachingStringCalculator newCalculator(
+            long maximumWeight, int maximumInputLength) {
+        return new CachingStringCalculator(
+                delegate,
+                new StringCalculatorCache(maximumWeight, maximumInputLength)
+        );
+    }
+
+    static InputStream utf8(String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @SmallTest
+    void cachesResults() throws Exception {
+        var cache = new StringCalculatorCache(1024, 64);
+        var calc = new CachingStringCalculator(delegate, cache);
+
+        assertEquals(3, calc.add("1,2"));
+        assertEquals(3, calc.add(new StringBuilder("1,2")));
+
+        assertEquals(1, delegate.calls);
+        assertEquals(1, cache.stats().hitCount());
+        assertEquals(1, cache.stats().missCount());
+    }
+
+    @SmallTest
+    void copiesMutableInputsOnMiss() throws Exception {
+        var cache = new StringCalculatorCache(1024, 64);
+        var calc = new CachingStringCalculator(delegate, cache);
+        var numbers = new StringBuilder("1,2");
+
+        assertEquals(3, calc.add(numbers));
+        numbers.setLength(0);
+        numbers.append("3,4,5");
+
+        assertEquals(3, calc.add("1,2"));
+        assertEquals(5, calc.add(numbers));
+        assertEquals(2, delegate.calls);
+        assertEquals(1, cache.stats().hitCount());
+    }
+
+    @SmallTest
+    void resetStatsKeepsEntries() throws Exception {
+        var cache = new StringCalculatorCache(1024, 64);
+        var calc = new CachingStringCalculator(delegate, cache);
+
+        assertEquals(3, calc.add("1,2"));
+        assertEquals(3, calc.add("1,2"));
+        cache.resetStats();
+
+        assertEquals(0, cache.stats().hitCount());
+        assertEquals(0, cache.stats().missCount());
+
+        assertEquals(3, calc.add("1,2"));
+        assertEquals(1, delegate.calls);
+        assertEquals(1, cache.stats().hitCount());
+    }
+
+    @SmallTest
+    void cachesErrorMessages() {
+        var calc = newCalculator(1024, 64);
+
+        for (int i = 0; i != 2; ++i) {
+            var e = assertThrows(
+                    StringCalculator.Exception.class, () -> calc.add("bad")
+            );
+            assertEquals("received: bad", e.getMessage());
+        }
+        assertEquals(1, delegate.calls);
+    }
+
+    @SmallTest
+    void cachesErrorTypesAndCodes() {
+        var cache = new StringCalculatorCache(1024, 64);
+        var calc = new CachingStringCalculator(
+                new StreamingStringCalculator(), cache
+        );
+
+        for (int i = 0; i != 2; ++i) {
+            var result = new Result();
+
+            assertFalse(calc.tryAdd("1,x", result));
+            assertEquals(Result.Error.INVALID_CHARACTER, result.error());
+            assertEquals(
+                    StreamingStringCalculator.Exception.class,
+                    result.errorType()
+            );
+
+            var e = assertThrows(
+                    StringCalculator.Exception.class, () -> calc.add("1,x")
+            );
+            assertEquals(
+                    StreamingStringCalculator.Exception.class, e.getClass()
+            );
+            assertEquals("invalid character 'x' at index 2", e.getMessage());
+        }
+        assertEquals(3, cache.stats().hitCount());
+    }
+
+    @SmallTest
+    void rethrowsCachedExceptionsOfOtherTypes() {
+        var calc = new CachingStringCalculator(
+                new TemporaryStringCalculator(),
+                new StringCalculatorCache(1024, 64)
+        );
+
+        for (int i = 0; i != 2; ++i) {
+            assertThrows(
+                    TemporaryStringCalculator.Exception.class,
+                    () -> calc.add("2,2")
+            );
+        }
+    }
+
+    @SmallTest
+    void bypassesCacheForLongInputs() throws Exception {
+        var cache = new StringCalculatorCache(1024, 4);
+        var calc = new CachingStringCalculator(delegate, cache);
+
+        assertEquals(5, calc.add("1,2,3"));
+        assertEquals(5, calc.add("1,2,3"));
+
+        assertEquals(2, delegate.calls);
+        assertEquals(0, cache.size());
+    }
+
+    @SmallTest
+    void bypassesCacheForStreams() throws Exception {
+        var cache = new StringCalculatorCache(1024, 64);
+        var calc = new CachingStringCalculator(delegate, cache);
+        var result = new Result();
+        var sum = new Sum();
+
+        assertTrue(calc.tryAdd(utf8("1,2"), result));
+        assertEquals(3, result.value());
+        assertTrue(calc.tryAddExact(utf8("1,2"), sum, result));
+        assertEquals("3", sum.toString());
+
+        assertEquals(2, delegate.calls);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.stats().requestCount());
+    }
+
+    @SmallTest
+    void evictsEntriesBeyondMaximumWeight() throws Exception {
+        var cache = new StringCalculatorCache(8, 64);
+        var calc = new CachingStringCalculator(delegate, cache);
+
+        for (var numbers : new String[] {"1,2,3", "4,5,6", "7,8,9"}) {
+            calc.add(numbers);
+        }
+        cache.cleanUp();
+
+        assertTrue(cache.stats().evictionCount() >= 2);
+        assertTrue(cache.size() <= 1);
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import com.mike_bland.training.testing.annotations.SmallTest;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CoalescingStringCalculatorTest {
+    // Test double that blocks every call until release() and then returns the
+    // length of its input, or throws if the input starts with "bad".
+    static class BlockingCalculator implements StringCalculator {
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch released = new CountDownLatch(1);
+
+        @Override
+        public int add(String numbers) throws Exception {
+            calls.incrementAndGet();
+            entered.countDown();
+
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            if (numbers.startsWith("bad")) throw new Exception("received: bad");
+            return numbers.length();
+        }
+
+        void release() {
+            released.countDown();
+        }
+    }
+
+    interface Call {
+        Object call() throws StringCalculator.Exception;
+    }
+
+    // Starts `count` threads making the same call, releases the delegate once
+    // every thread after the first is blocked, and returns each thread's
+    // result or exception.
+    static List<Object> callConcurrently(
+            BlockingCalculator delegate, int count, Call call)
+            throws InterruptedException {
+        var results = new Object[count];
+        var threads = new ArrayList<Thread>();
+
+        for (int i = 0; i != count; ++i) {
+            final int index = i;
+            var thread = new Thread(() -> {
+                try {
+                    results[index] = call.call();
+                } catch (StringCalculator.Exception e) {
+                    results[index] = e;
+                }
+            });
+            threads.add(thread);
+            thread.start();
+
+            if (i == 0) {
+                assertTrue(delegate.entered.await(10, TimeUnit.SECONDS));
+            }
+        }
+        for (var thread : threads) {
+            while (thread.getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+        }
+        delegate.release();
+
+        for (var thread : threads) {
+            thread.join();
+        }
+        return List.of(results);
+    }
+
+    private final BlockingCalculator delegate = new BlockingCalculator();
+
+    @SmallTest
+    void sharesOneComputationBetweenConcurrentIdenticalInputs()
+            throws Exception {
+        var calc = new CoalescingStringCalculator(delegate, 4);
+
+        var results = callConcurrently(delegate, 8, () -> calc.add("1,2,3"));
+
+        assertEquals(1, delegate.calls.get());
+        assertEquals(List.of(5, 5, 5, 5, 5, 5, 5, 5), results);
+        assertEquals(0, calc.inFlight());
+    }
+
+    // Every caller rethrows the same stackless Exception. See
+    // Result.valueOrThrow().
+    @SmallTest
+    void sharesErrorsBetweenCallers() throws Exception {
+        var calc = new CoalescingStringCalculator(delegate, 4);
+
+        var results = callConcurrently(
+                delegate, 4, () -> calc.add(new StringBuilder("bad input"))
+        );
+
+        assertEquals(1, delegate.calls.get());
+        for (var result : results) {
+            var e = (StringCalculator.Exception) result;
+            assertEquals("received: bad", e.getMessage());
+            assertSame(results.get(0), result);
+        }
+        assertEquals(0, calc.inFlight());
+    }
+
+    @SmallTest
+    void copiesExactSumIntoEachCallersSum() throws Exception {
+        var calc = new CoalescingStringCalculator(delegate, 4);
+
+        var results = callConcurrently(delegate, 4, () -> {
+            var sum = new Sum();
+            calc.addExact("1,2,3", sum);
+            return sum;
+        });
+
+        assertEquals(1, delegate.calls.get());
+        for (var result : results) {
+            assertEquals("5", result.toString());
+        }
+        assertNotSame(results.get(0), results.get(1));
+    }
+
+    @SmallTest
+    void computesShortInputsDirectly() throws Exception {
+        var calc = new CoalescingStringCalculator(delegate, 6);
+
+        var results = callConcurrently(delegate, 2, () -> calc.add("1,2,3"));
+
+        assertEquals(2, delegate.calls.get());
+        assertEquals(List.of(5, 5), results);
+    }
+
+    @SmallTest
+    void passesStreamsToTheDelegate() throws Exception {
+        var calc = new CoalescingStringCalculator(delegate, 4);
+        var result = new Result();
+        delegate.release();
+
+        assertTrue(calc.tryAdd(
+                new ByteArrayInputStream("1,2,3".getBytes()), result
+        ));
+        assertEquals(5, result.value());
+        assertEquals(1, delegate.calls.get());
+        assertEquals(0, calc.inFlight());
+    }
+
+    @SmallTest
+    void doesNotCacheCompletedComputations() throws Exception {
+        var calc = new CoalescingStringCalculator(delegate, 4);
+        delegate.release();
+
+        assertEquals(5, calc.add("1,2,3"));
+        assertEquals(5, calc.add("1,2,3"));
+
+        assertEquals(2, delegate.calls.get());
+    }
+}
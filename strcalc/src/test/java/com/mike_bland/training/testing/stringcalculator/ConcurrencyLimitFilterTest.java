@@ -0,0 +1,136 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import com.mike_bland.training.testing.annotations.MediumCoverageTest;
+import com.mike_bland.training.testing.utils.TestTomcat;
+import com.mike_bland.training.testing.utils.TestTomcatPool;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.AfterEach;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.mike_bland.training.testing.matchers.Matchers.hasContentType;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Leases each TestTomcat from TestTomcatPool.SHARED, like
+// ServletContractTest, so these tests can run in parallel with it.
+class ConcurrencyLimitFilterTest {
+    private final ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 1);
+    private final CountDownLatch entered = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private TestTomcatPool.Lease lease;
+    private TestTomcat tomcat;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (lease != null) lease.close();
+    }
+
+    // Leases a TestTomcat whose Servlet blocks every calculation until
+    // `release` counts down, behind a filter admitting one request at a time.
+    void startTomcat(Map<String, String> initParams) throws Exception {
+        var servlet = new Servlet(numbers -> {
+            entered.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return numbers.length();
+        });
+
+        lease = TestTomcatPool.SHARED.leaseServlet(
+                Servlet.DEFAULT_ROOT,
+                servlet,
+                initParams,
+                new ConcurrencyLimitFilter(limiter)
+        );
+        tomcat = lease.tomcat();
+    }
+
+    HttpRequest newAddRequest() {
+        return HttpRequest.newBuilder(tomcat.resolveEndpoint("/add"))
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"numbers\":\"1,2\"}"
+                ))
+                .build();
+    }
+
+    // Waits for the limiter to release every request, which happens after
+    // the client receives the response.
+    void awaitNoneInFlight() throws InterruptedException {
+        final long deadline = System.nanoTime() + 5_000_000_000L;
+        while (limiter.getInFlight() != 0) {
+            assertTrue(System.nanoTime() < deadline, "request not released");
+            Thread.sleep(10);
+        }
+    }
+
+    // Holds one request in the Servlet, then sends another, which the filter
+    // rejects. Once the first completes, the filter admits a third.
+    void assertShedsRequestsBeyondLimit() throws Exception {
+        try (var client = HttpClient.newHttpClient()) {
+            var first = client.sendAsync(
+                    newAddRequest(), BodyHandlers.ofString()
+            );
+            assertTrue(entered.await(5, TimeUnit.SECONDS), "request not sent");
+
+            var shed = client.send(newAddRequest(), BodyHandlers.ofString());
+
+            assertEquals(
+                    HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                    shed.statusCode()
+            );
+            assertEquals(
+                    Optional.of(ConcurrencyLimitFilter.RETRY_AFTER_SECONDS),
+                    shed.headers().firstValue("Retry-After")
+            );
+            assertThat(shed, hasContentType("application/json;charset=UTF-8"));
+            assertEquals(
+                    ConcurrencyLimitFilter.OVERLOADED_RESPONSE, shed.body()
+            );
+
+            release.countDown();
+            assertOk(first.get(5, TimeUnit.SECONDS));
+            awaitNoneInFlight();
+            assertOk(client.send(newAddRequest(), BodyHandlers.ofString()));
+        }
+        awaitNoneInFlight();
+        assertEquals(2, limiter.getAccepted());
+        assertEquals(1, limiter.getRejected());
+    }
+
+    static void assertOk(HttpResponse<String> resp) {
+        assertEquals(HttpServletResponse.SC_OK, resp.statusCode());
+        assertEquals("{\"result\":3}", resp.body());
+    }
+
+    @MediumCoverageTest
+    void shedsRequestsBeyondLimit() throws Exception {
+        startTomcat(Map.of());
+        assertShedsRequestsBeyondLimit();
+    }
+
+    // Tests that an asynchronous request stays in flight until it completes,
+    // via ConcurrencyLimitFilter.Release, not just until doFilter() returns.
+    @MediumCoverageTest
+    void shedsRequestsBeyondLimitWhileAsyncRequestInFlight() throws Exception {
+        startTomcat(Map.of(Servlet.ASYNC_PARAM, "true"));
+        assertShedsRequestsBeyondLimit();
+    }
+}
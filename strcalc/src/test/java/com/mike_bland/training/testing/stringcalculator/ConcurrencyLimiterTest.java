@@ -0,0 +1,96 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import com.mike_bland.training.testing.annotations.SmallTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConcurrencyLimiterTest {
+    static final long MILLISECOND = 1_000_000;
+
+    // Admits as many requests as the current limit allows, then releases
+    // each with the same latency, `rounds` times.
+    static void runAtLimit(ConcurrencyLimiter limiter, int rounds, long nanos) {
+        for (int i = 0; i != rounds; ++i) {
+            int admitted = 0;
+            while (limiter.tryAcquire()) ++admitted;
+            for (int j = 0; j != admitted; ++j) limiter.release(nanos);
+        }
+    }
+
+    @SmallTest
+    void admitsUpToLimitThenRejects() {
+        var limiter = new ConcurrencyLimiter(2, 1, 10);
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(2, limiter.getInFlight());
+
+        limiter.release(MILLISECOND);
+
+        assertTrue(limiter.tryAcquire());
+        assertEquals(3, limiter.getAccepted());
+        assertEquals(1, limiter.getRejected());
+    }
+
+    @SmallTest
+    void growsLimitWhileLatencyIsStable() {
+        var limiter = new ConcurrencyLimiter(10, 1, 50);
+
+        runAtLimit(limiter, 20, MILLISECOND);
+
+        assertTrue(limiter.getLimit() > 10, "limit: " + limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+
+        runAtLimit(limiter, 100, MILLISECOND);
+
+        assertEquals(50, limiter.getLimit());
+    }
+
+    @SmallTest
+    void shrinksLimitWhenLatencyRises() {
+        var limiter = new ConcurrencyLimiter(40, 4, 40);
+        runAtLimit(limiter, 20, MILLISECOND);
+        assertEquals(40, limiter.getLimit());
+
+        runAtLimit(limiter, 5, 10 * MILLISECOND);
+        final int shrunk = limiter.getLimit();
+        assertTrue(shrunk < 40, "limit: " + shrunk);
+
+        runAtLimit(limiter, 100, 100 * MILLISECOND);
+        assertTrue(limiter.getLimit() >= 4, "limit: " + limiter.getLimit());
+    }
+
+    @SmallTest
+    void keepsLimitWhileUnderused() {
+        var limiter = new ConcurrencyLimiter(20, 1, 100);
+
+        for (int i = 0; i != 100; ++i) {
+            assertTrue(limiter.tryAcquire());
+            limiter.release(MILLISECOND);
+        }
+
+        assertEquals(20, limiter.getLimit());
+    }
+
+    @SmallTest
+    void rejectsInvalidLimits() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new ConcurrencyLimiter(10, 0, 10)
+        );
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new ConcurrencyLimiter(10, 20, 10)
+        );
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import com.mike_bland.training.testing.annotations.SmallTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IncrementalStringCalculatorTest {
+    // Buffer sizes that split multibyte chars, delimiters, and numbers at
+    // every possible position.
+    private final List<IncrementalStringCalculator> calcs = List.of(
+            new IncrementalStringCalculator(4),
+            new IncrementalStringCalculator(5),
+            new IncrementalStringCalculator(7),
+            new IncrementalStringCalculator()
+    );
+    private final StreamingStringCalculator streaming =
+            new StreamingStringCalculator();
+
+    static String describe(boolean ok, Result result) {
+        if (ok) return Integer.toString(result.value());
+        return "error: " + result.error() + ": " + result.message();
+    }
+
+    static String tryAdd(StringCalculator c, String numbers) {
+        var result = new Result();
+        return describe(c.tryAdd(numbers, result), result);
+    }
+
+    static String tryAddExact(StringCalculator c, String numbers) {
+        var result = new Result();
+        var sum = new Sum();
+        final boolean ok = c.tryAddExact(numbers, sum, result);
+        return ok ? sum.toString() : describe(false, result);
+    }
+
+    static String tryAdd(IncrementalStringCalculator c, InputStream body)
+            throws IOException {
+        var result = new Result();
+        return describe(c.tryAdd(body, result), result);
+    }
+
+    static String tryAddExact(IncrementalStringCalculator c, InputStream body)
+            throws IOException {
+        var result = new Result();
+        var sum = new Sum();
+        final boolean ok = c.tryAddExact(body, sum, result);
+        return ok ? sum.toString() : describe(false, result);
+    }
+
+    static InputStream utf8(String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    void assertSameAsStreaming(String numbers) throws IOException {
+        final var expected = tryAdd(streaming, numbers);
+        final var expectedExact = tryAddExact(streaming, numbers);
+
+        for (var calc : calcs) {
+            assertEquals(expected, tryAdd(calc, utf8(numbers)), numbers);
+            assertEquals(
+                    expectedExact, tryAddExact(calc, utf8(numbers)), numbers
+            );
+        }
+    }
+
+    @SmallTest
+    void matchesStreamingResults() throws IOException {
+        assertSameAsStreaming("");
+        assertSameAsStreaming("1");
+        assertSameAsStreaming("1,2\n3,40,500,6000,70000,800000");
+        assertSameAsStreaming("//;\n1;22;333\n4444;55555");
+        assertSameAsStreaming("//[***][*][%%]\n1***2*3%%4\n5");
+        assertSameAsStreaming("//[é][€€]\n1é2€€3");
+        assertSameAsStreaming("//;\n");
+        assertSameAsStreaming("0000000000000000000001,2");
+        assertSameAsStreaming("2147483647,2147483647,1,2,3,4,5,6");
+        assertSameAsStreaming("9223372036854775807,9223372036854775807");
+    }
+
+    @SmallTest
+    void matchesStreamingErrors() throws IOException {
+        assertSameAsStreaming(",1");
+        assertSameAsStreaming("1,2,");
+        assertSameAsStreaming("1,,2");
+        assertSameAsStreaming("1,-");
+        assertSameAsStreaming("1,2,-3,4,5,-006");
+        assertSameAsStreaming("-1,2,x");
+        assertSameAsStreaming("1,2147483648");
+        assertSameAsStreaming("1,12345678901234567890");
+        assertSameAsStreaming("1,2x");
+        assertSameAsStreaming("1,😀2");
+        assertSameAsStreaming("//[***]\n1**2");
+        assertSameAsStreaming("//[***]\n1***");
+        assertSameAsStreaming("/");
+        assertSameAsStreaming("//");
+        assertSameAsStreaming("//\n1");
+        assertSameAsStreaming("//;");
+        assertSameAsStreaming("//;;\n1");
+        assertSameAsStreaming("//[;\n1");
+        assertSameAsStreaming("//[]\n1");
+        assertSameAsStreaming("//[1]\n1");
+    }
+
+    @SmallTest
+    void matchesStreamingForInvalidUtf8() throws IOException {
+        final byte[] bytes = {'1', ',', (byte) 0xe2, (byte) 0x82, ',', '2'};
+        final var numbers = new String(bytes, StandardCharsets.UTF_8);
+
+        for (var calc : calcs) {
+            assertEquals(
+                    tryAdd(streaming, numbers),
+                    tryAdd(calc, new ByteArrayInputStream(bytes))
+            );
+        }
+    }
+
+    @SmallTest
+    void matchesStreamingForRandomInputs() throws IOException {
+        final var random = new Random(20240401);
+        final var chars = "0123456789,\n-é;".toCharArray();
+
+        for (int i = 0; i != 300; ++i) {
+            final boolean header = random.nextBoolean();
+            final var delims = header ?
+                    List.of(";", ";;", "\n") : List.of(",", "\n");
+            var sb = new StringBuilder(header ? "//[;][;;]\n" : "");
+            final int count = random.nextInt(50);
+
+            for (int n = 0; n != count; ++n) {
+                if (n != 0) {
+                    sb.append(delims.get(random.nextInt(delims.size())));
+                }
+                sb.append(random.nextInt(1_000_000));
+            }
+            if (sb.length() != 0 && random.nextInt(3) == 0) {
+                sb.setCharAt(
+                        random.nextInt(sb.length()),
+                        chars[random.nextInt(chars.length)]
+                );
+            }
+            assertSameAsStreaming(sb.toString());
+        }
+    }
+
+    @SmallTest
+    void readsFromChannels() throws IOException {
+        var calc = new IncrementalStringCalculator();
+        var result = new Result();
+        var sum = new Sum();
+
+        assertTrue(calc.tryAdd(
+                Channels.newChannel(utf8("//;\n1;2\n3")), result
+        ));
+        assertEquals(6, result.value());
+        assertFalse(calc.tryAddExact(
+                Channels.newChannel(utf8("1,2,")), sum, result
+        ));
+        assertEquals("missing number at index 4", result.message());
+    }
+
+    // Streams about 24MB of "1000000,1000000,..." without ever holding it in
+    // memory, well past the point where the sum exceeds Integer.MAX_VALUE.
+    @SmallTest
+    void sumsInputLargerThanTheBuffer() throws IOException {
+        final int count = 3_000_000;
+        final var calc = new IncrementalStringCalculator();
+        var result = new Result();
+        var sum = new Sum();
+
+        assertTrue(calc.tryAddExact(repeat(count), sum, result));
+        assertEquals(Long.toString(1_000_000L * count), sum.toString());
+
+        assertFalse(calc.tryAdd(repeat(count), result));
+        assertEquals("sum exceeds 2147483647", result.message());
+    }
+
+    // Returns count comma-separated copies of "1000000".
+    static InputStream repeat(int count) {
+        final var number = "1000000,".getBytes(StandardCharsets.US_ASCII);
+        final long length = (long) number.length * count - 1;
+
+        return new InputStream() {
+            private long pos;
+
+            @Override
+            public int read() {
+                if (pos == length) return -1;
+                return number[(int) (pos++ % number.length)];
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (pos == length) return -1;
+                final int n = (int) Math.min(len, length - pos);
+                for (int i = 0; i != n; ++i) b[off + i] = (byte) read();
+                return n;
+            }
+        };
+    }
+
+    @SmallTest
+    void rejectsHeadersLongerThanTheMaximum() throws IOException {
+        final var header = "//[" + "*".repeat(
+                IncrementalStringCalculator.MAX_HEADER_LENGTH
+        ) + "]\n1";
+
+        for (var calc : calcs) {
+            assertEquals(
+                    "error: UNTERMINATED_HEADER: " +
+                    "custom delimiter header must end with a newline at " +
+                    "index " + IncrementalStringCalculator.MAX_HEADER_LENGTH,
+                    tryAdd(calc, utf8(header))
+            );
+        }
+        assertSameAsStreaming(
+                "//[" + "*".repeat(
+                        IncrementalStringCalculator.MAX_HEADER_LENGTH - 5
+                ) + "]\n1"
+        );
+    }
+
+    // Lists the same negative numbers as StreamingStringCalculator until the
+    // message reaches MAX_NEGATIVES_LENGTH chars, then stops listing them.
+    @SmallTest
+    void truncatesLongListsOfNegatives() throws IOException {
+        final var numbers = "-1,".repeat(100_000) + "-1";
+        final var full = tryAdd(streaming, numbers);
+        final var expected = full.substring(0, full.indexOf(
+                ", ", "error: NEGATIVES_NOT_ALLOWED: ".length() +
+                IncrementalStringCalculator.MAX_NEGATIVES_LENGTH
+        )) + IncrementalStringCalculator.NEGATIVES_TRUNCATED;
+
+        for (var calc : calcs) {
+            assertEquals(expected, tryAdd(calc, utf8(numbers)));
+            assertEquals(expected, tryAddExact(calc, utf8(numbers)));
+        }
+        assertSameAsStreaming("-1,".repeat(100) + "-1");
+    }
+
+    @SmallTest
+    void rejectsBuffersTooSmallForUtf8() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new IncrementalStringCalculator(3)
+        );
+    }
+}
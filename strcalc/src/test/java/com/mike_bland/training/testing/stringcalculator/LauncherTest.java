@@ -0,0 +1,110 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import com.mike_bland.training.testing.annotations.MediumTest;
+import com.mike_bland.training.testing.annotations.SmallTest;
+import com.mike_bland.training.testing.utils.TestTomcat;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.AfterEach;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LauncherTest {
+    private Launcher launcher;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (launcher != null) launcher.stop();
+    }
+
+    URI resolve(String relPath) {
+        return URI.create(String.format(
+                "http://localhost:%d%s%s",
+                launcher.getLocalPort(), Servlet.DEFAULT_ROOT, relPath
+        ));
+    }
+
+    @SmallTest
+    void withPrefixStripsPrefixAndIgnoresOtherProperties() {
+        var props = new Properties();
+        props.setProperty("strcalc.connector.maxThreads", "50");
+        props.setProperty("strcalc.http2.maxConcurrentStreams", "200");
+
+        assertEquals(
+                Map.of("maxThreads", "50"),
+                Launcher.withPrefix(props, Launcher.CONNECTOR_PREFIX)
+        );
+    }
+
+    @SmallTest
+    void newConnectorRejectsUnknownSettings() {
+        var props = new Properties();
+        props.setProperty("strcalc.connector.noSuchSetting", "true");
+
+        var e = assertThrows(
+                IllegalArgumentException.class,
+                () -> Launcher.newConnector(0, props)
+        );
+        assertEquals(
+                "unknown setting: strcalc.connector.noSuchSetting",
+                e.getMessage()
+        );
+    }
+
+    // Starts the Launcher on an ephemeral port, then sends an /add request
+    // over HTTP/2 via an h2c upgrade, and fetches the landing page.
+    @MediumTest
+    void servesAddAndLandingPageOverHttp2() throws Exception {
+        launcher = new Launcher(
+                0, new File(TestTomcat.WEB_APP_BUILD_DIR), new Properties()
+        );
+        launcher.start();
+
+        try (var client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .build()) {
+            var addReq = HttpRequest.newBuilder(resolve("/add"))
+                    .POST(HttpRequest.BodyPublishers.ofString(
+                            "{\"numbers\":\"1,2\\n3\"}"
+                    ))
+                    .build();
+            var addResp = client.send(addReq, BodyHandlers.ofString());
+
+            assertEquals(HttpServletResponse.SC_OK, addResp.statusCode());
+            assertEquals(HttpClient.Version.HTTP_2, addResp.version());
+            assertEquals("{\"result\":6}", addResp.body());
+
+            var pageReq = HttpRequest.newBuilder(resolve("/")).GET().build();
+            var pageResp = client.send(pageReq, BodyHandlers.ofString());
+
+            assertEquals(HttpServletResponse.SC_OK, pageResp.statusCode());
+            assertThat(
+                    pageResp.body(),
+                    containsString("<title>String Calculator - ")
+            );
+        }
+
+        var baseDir = launcher.getBaseDir();
+        launcher.stop();
+        launcher = null;
+        assertFalse(Files.exists(baseDir), "not deleted: " + baseDir);
+    }
+}
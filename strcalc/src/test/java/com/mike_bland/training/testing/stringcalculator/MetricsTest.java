@@ -0,0 +1,120 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import com.mike_bland.training.testing.annotations.SmallTest;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MetricsTest {
+    private final Metrics metrics = new Metrics();
+
+    List<String> scrape() throws IOException {
+        var out = new StringBuilder();
+        metrics.writePrometheus(out);
+        return out.toString().lines().toList();
+    }
+
+    void assertContains(List<String> lines, String expected) {
+        assertTrue(lines.contains(expected), () -> String.join("\n", lines));
+    }
+
+    @SmallTest
+    void countsRequestsByMethodAndPath() throws IOException {
+        metrics.recordRequest("POST", "/add");
+        metrics.recordRequest("POST", "/add");
+        metrics.recordRequest("GET", "/add");
+
+        var lines = scrape();
+
+        assertContains(lines, "# TYPE strcalc_requests_total counter");
+        assertContains(
+                lines, "strcalc_requests_total{method=\"GET\",path=\"/add\"} 1"
+        );
+        assertContains(
+                lines, "strcalc_requests_total{method=\"POST\",path=\"/add\"} 2"
+        );
+    }
+
+    @SmallTest
+    void countsErrorsByExceptionType() throws IOException {
+        metrics.recordError(new StreamingStringCalculator.Exception("bad"));
+        metrics.recordError(new StringCalculator.Exception("bad"));
+
+        var lines = scrape();
+
+        assertContains(lines, "strcalc_calculator_errors_total{" +
+                "type=\"StreamingStringCalculator.Exception\"} 1");
+        assertContains(lines, "strcalc_calculator_errors_total{" +
+                "type=\"StringCalculator.Exception\"} 1");
+    }
+
+    @SmallTest
+    void writesCumulativeLatencyHistogramsInSeconds() throws IOException {
+        metrics.recordLatency(Metrics.Phase.COMPUTE, 1_000);
+        metrics.recordLatency(Metrics.Phase.COMPUTE, 2_000_000);
+
+        var lines = scrape();
+        final var prefix = "strcalc_phase_duration_seconds";
+
+        assertContains(lines, "# TYPE " + prefix + " histogram");
+        assertContains(
+                lines, prefix + "_bucket{phase=\"compute\",le=\"0.000001\"} 1"
+        );
+        assertContains(
+                lines, prefix + "_bucket{phase=\"compute\",le=\"0.001\"} 1"
+        );
+        assertContains(
+                lines, prefix + "_bucket{phase=\"compute\",le=\"0.0025\"} 2"
+        );
+        assertContains(
+                lines, prefix + "_bucket{phase=\"compute\",le=\"+Inf\"} 2"
+        );
+        assertContains(lines, prefix + "_count{phase=\"compute\"} 2");
+        assertContains(lines, prefix + "_count{phase=\"parse\"} 0");
+
+        // Values recorded after a scrape add to the previous totals.
+        metrics.recordLatency(Metrics.Phase.COMPUTE, 1_000);
+        assertContains(scrape(), prefix + "_count{phase=\"compute\"} 3");
+    }
+
+    @SmallTest
+    void writesRequestSizeHistogramInBytes() throws IOException {
+        metrics.recordRequestBytes(20);
+        metrics.recordRequestBytes(1000);
+        metrics.recordRequestBytes(-1);
+
+        var lines = scrape();
+        final var prefix = "strcalc_request_size_bytes";
+
+        assertContains(lines, prefix + "_bucket{le=\"64\"} 1");
+        assertContains(lines, prefix + "_bucket{le=\"1024\"} 2");
+        assertContains(lines, prefix + "_count 2");
+    }
+
+    @SmallTest
+    void writesStartupGaugeOnlyOnceRecorded() throws IOException {
+        final var name = "strcalc_startup_seconds";
+
+        assertTrue(scrape().stream().noneMatch(l -> l.contains(name)));
+
+        metrics.recordStartup(1250);
+        assertContains(scrape(), name + " 1.25");
+    }
+
+    @SmallTest
+    void typeNameOmitsPackage() {
+        assertEquals(
+                "StreamingStringCalculator.Exception",
+                Metrics.typeName(StreamingStringCalculator.Exception.class)
+        );
+    }
+}
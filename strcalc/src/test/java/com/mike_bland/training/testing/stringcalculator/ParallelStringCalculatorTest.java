@@ -0,0 +1,126 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import com.mike_bland.training.testing.annotations.SmallTest;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ParallelStringCalculatorTest {
+    // Splits every input into chunks of as few as four characters, so that
+    // even short inputs exercise chunk boundaries.
+    private final ParallelStringCalculator calc =
+            new ParallelStringCalculator(0, 4, ForkJoinPool.commonPool());
+    private final StreamingStringCalculator sequential =
+            new StreamingStringCalculator();
+
+    // Returns the result of add() as a String, or its error message.
+    static String add(StringCalculator c, String numbers) {
+        try {
+            return Integer.toString(c.add((CharSequence) numbers));
+        } catch (StringCalculator.Exception e) {
+            return "error: " + e.getMessage();
+        }
+    }
+
+    // Returns the result of addExact() as a String, or its error message.
+    static String addExact(StringCalculator c, String numbers) {
+        try {
+            var sum = new Sum();
+            c.addExact(numbers, sum);
+            return sum.toString();
+        } catch (StringCalculator.Exception e) {
+            return "error: " + e.getMessage();
+        }
+    }
+
+    // Returns the result of tryAdd() as a String, or its Error and message.
+    static String tryAdd(StringCalculator c, String numbers) {
+        var result = new Result();
+
+        if (c.tryAdd(numbers, result)) return Integer.toString(result.value());
+        return "error: " + result.error() + ": " + result.message();
+    }
+
+    void assertSameAsSequential(String numbers) {
+        assertEquals(add(sequential, numbers), add(calc, numbers), numbers);
+        assertEquals(
+                tryAdd(sequential, numbers), tryAdd(calc, numbers), numbers
+        );
+        assertEquals(
+                addExact(sequential, numbers),
+                addExact(calc, numbers),
+                numbers
+        );
+    }
+
+    @SmallTest
+    void matchesSequentialResults() {
+        assertSameAsSequential("");
+        assertSameAsSequential("1,2\n3,40,500,6000,70000,800000");
+        assertSameAsSequential("//;\n1;22;333\n4444;55555");
+        assertSameAsSequential("//[***][*]\n1***22*333***4444*55555");
+        assertSameAsSequential("2147483647,2147483647,1,2,3,4,5,6");
+        assertSameAsSequential(
+                "9223372036854775807,9223372036854775807,1,2,3,4,5,6"
+        );
+    }
+
+    @SmallTest
+    void matchesSequentialErrors() {
+        assertSameAsSequential(null);
+        assertSameAsSequential("1,2,-3,4,5,-6,7,8,-9");
+        assertSameAsSequential("1,-2,3,4,5,6,7,8,x9,10");
+        assertSameAsSequential("1,2,3,4,5,6,7,,8,9,x,10");
+        assertSameAsSequential("1,2,3,4,5,6,7,8,9,10,");
+        assertSameAsSequential("1,2,3,4,5,6,7,8,9,12345678901234567890,1");
+        assertSameAsSequential("//;\n1;2;3;4;5,6;7;8");
+        assertSameAsSequential("//[**]\n1**2**3***4**5");
+    }
+
+    @SmallTest
+    void matchesSequentialForRandomInputs() {
+        final var random = new Random(20240315);
+        final var headers = new String[] {"", "//;\n", "//[**][%]\n"};
+        final var tokens = new String[] {
+                "1", "23", "456", "7890", "-5", "2147483647", ",", "\n",
+                ";", "**", "%", "*", "-", "x", " "
+        };
+
+        for (int i = 0; i != 2000; ++i) {
+            var sb = new StringBuilder(headers[random.nextInt(headers.length)]);
+            final int length = random.nextInt(40);
+
+            for (int j = 0; j != length; ++j) {
+                // Favor valid inputs by usually following a number with a
+                // delimiter that is valid for at least one header.
+                if (j % 2 == 0 || random.nextInt(8) == 0) {
+                    sb.append(tokens[random.nextInt(tokens.length)]);
+                } else {
+                    sb.append(tokens[6 + random.nextInt(5)]);
+                }
+            }
+            assertSameAsSequential(sb.toString());
+        }
+    }
+
+    @SmallTest
+    void usesSequentialImplementationBelowThreshold() throws Exception {
+        var belowThreshold = new ParallelStringCalculator(
+                Integer.MAX_VALUE, 4, new ForkJoinPool(1)
+        );
+
+        assertEquals(6, belowThreshold.add("1,2,3"));
+        assertEquals(
+                "error: negatives not allowed: -1",
+                add(belowThreshold, "-1,2")
+        );
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import com.mike_bland.training.testing.annotations.MediumCoverageTest;
+import com.mike_bland.training.testing.utils.TestTomcat;
+import com.mike_bland.training.testing.utils.TestTomcatPool;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.AfterEach;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.endsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Leases each TestTomcat from TestTomcatPool.SHARED, like
+// ServletContractTest, so these tests can run in parallel with it.
+class ReadyServletTest {
+    private TestTomcatPool.Lease lease;
+    private TestTomcat tomcat;
+
+    @AfterEach
+    void tearDown() {
+        if (lease != null) lease.close();
+    }
+
+    void startTomcat(ReadyServlet servlet) throws Exception {
+        lease = TestTomcatPool.SHARED.leaseServlet(
+                Servlet.DEFAULT_ROOT, servlet
+        );
+        tomcat = lease.tomcat();
+    }
+
+    HttpResponse<String> getReady() throws Exception {
+        var req = HttpRequest.newBuilder()
+                .uri(tomcat.resolveEndpoint(ReadyServlet.ENDPOINT))
+                .GET()
+                .build();
+
+        try (var client = HttpClient.newHttpClient()) {
+            return client.send(req, BodyHandlers.ofString());
+        }
+    }
+
+    @MediumCoverageTest
+    void returnsServiceUnavailableUntilReady() throws Exception {
+        var readiness = new Readiness();
+        startTomcat(new ReadyServlet(readiness));
+
+        var resp = getReady();
+
+        assertEquals(
+                HttpServletResponse.SC_SERVICE_UNAVAILABLE, resp.statusCode()
+        );
+        assertEquals(
+                Optional.of(ReadyServlet.RETRY_AFTER_SECONDS),
+                resp.headers().firstValue("Retry-After")
+        );
+        assertEquals("warming up", resp.body());
+
+        readiness.markReady();
+        resp = getReady();
+
+        assertEquals(HttpServletResponse.SC_OK, resp.statusCode());
+        assertEquals("ready", resp.body());
+    }
+
+    // Tests that TestTomcat.awaitReady() returns once ReadyServlet returns
+    // 200, and reports the last status if it times out.
+    @MediumCoverageTest
+    void awaitReadyPollsUntilReadyOrTimeout() throws Exception {
+        var readiness = new Readiness();
+        startTomcat(new ReadyServlet(readiness));
+
+        var e = assertThrows(IOException.class, () -> tomcat.awaitReady(
+                ReadyServlet.ENDPOINT, Duration.ofMillis(100)
+        ));
+        assertThat(e.getMessage(), endsWith("not ready after 100ms: HTTP 503"));
+
+        var marker = Thread.ofVirtual().start(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+            readiness.markReady();
+        });
+        tomcat.awaitReady(ReadyServlet.ENDPOINT, Duration.ofSeconds(10));
+        marker.join();
+    }
+}
@@ -9,43 +9,79 @@ package com.mike_bland.training.testing.stringcalculator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mike_bland.training.testing.annotations.MediumCoverageTest;
 import com.mike_bland.training.testing.annotations.MediumTest;
-import com.mike_bland.training.testing.utils.PortPicker;
 import com.mike_bland.training.testing.utils.TestTomcat;
+import com.mike_bland.training.testing.utils.TestTomcatPool;
 import jakarta.servlet.http.HttpServletResponse;
 import org.junit.jupiter.api.AfterEach;
-import org.junit.jupiter.api.BeforeEach;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.WebSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
 
 import static com.mike_bland.training.testing.matchers.Matchers.hasContentType;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.samePropertyValuesAs;
+import static org.hamcrest.Matchers.startsWith;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 // Test fixture containing a suite of medium-sized Servlet tests.
+//
+// Each test method leases an already running TestTomcat from
+// TestTomcatPool.SHARED when one is available, instead of starting a new one.
+// This also allows the test methods to run in parallel, since each lease is
+// exclusive to one test method at a time.
 class ServletContractTest {
-    // An embedded Tomcat instance controlled by this test fixture.
+    // The lease on the embedded Tomcat instance used by the current test.
+    private TestTomcatPool.Lease lease;
+
+    // The embedded Tomcat instance used by the current test.
     private TestTomcat tomcat;
 
-    // Runs before each test method in this class to create a TestTomcat
-    // server for that test method.
-    @BeforeEach
-    void setUp() throws Exception {
-       tomcat = new TestTomcat(
-               PortPicker.pickUnusedPort(), Servlet.DEFAULT_ROOT
-       );
+    // Runs after each test method in this class to return its TestTomcat
+    // server to the pool.
+    @AfterEach
+    void tearDown() {
+        if (lease != null) lease.close();
     }
 
-    // Runs after each test method in this class to stop the TestTomcat
-    // server for that test method.
-    @AfterEach
-    void tearDown() throws Exception {
-        tomcat.stop();
+    // Leases a TestTomcat serving the supplied Servlet.
+    void startTomcat(Servlet servlet) throws Exception {
+        startTomcat(servlet, Map.of());
+    }
+
+    // Leases a TestTomcat serving the supplied Servlet and init-params.
+    void startTomcat(Servlet servlet, Map<String, String> initParams)
+            throws Exception {
+        lease = TestTomcatPool.SHARED.leaseServlet(
+                Servlet.DEFAULT_ROOT, servlet, initParams
+        );
+        tomcat = lease.tomcat();
+    }
+
+    // Leases a TestTomcat started via TestTomcat.startWithBuildInputs().
+    void startTomcatWithBuildInputs() throws Exception {
+        lease = TestTomcatPool.SHARED.leaseWithBuildInputs(
+                Servlet.DEFAULT_ROOT
+        );
+        tomcat = lease.tomcat();
     }
 
     // Creates a new HttpRequests.Builder object configured for the local Tomcat
@@ -98,8 +134,8 @@ class ServletContractTest {
     // the right directory, and that our TestTomcat is configured to find it.
     @MediumTest
     void servesLandingPage() throws Exception {
+        startTomcatWithBuildInputs();
         var req = newRequestBuilder("/").GET().build();
-        tomcat.startWithBuildInputs();
 
         var resp = sendRequest(req);
 
@@ -111,6 +147,47 @@ class ServletContractTest {
         );
     }
 
+    // Tests that the frontend build's precompressed, content hashed assets are
+    // served with strong ETags and cached as immutable, while index.html is
+    // always revalidated. Like servesLandingPage(), this covers no servlet
+    // code, only the build output and the WEB-INF/web.xml configuration.
+    @MediumTest
+    void servesPrecompressedImmutableAssets() throws Exception {
+        startTomcatWithBuildInputs();
+        var page = sendRequest(newRequestBuilder("/").GET().build());
+        var script = Pattern.compile(
+                "src=\"" + Servlet.DEFAULT_ROOT + "(/assets/[^\"]+\\.js)\""
+        ).matcher(page.body());
+
+        assertEquals(
+                CacheControlFilter.REVALIDATE,
+                page.headers().firstValue("Cache-Control").orElse("")
+        );
+        assertTrue(script.find(), page.body());
+
+        var req = newRequestBuilder(script.group(1))
+                .header("Accept-Encoding", "br, gzip")
+                .GET()
+                .build();
+        HttpResponse<byte[]> resp;
+
+        try (var client = HttpClient.newHttpClient()) {
+            resp = client.send(req, BodyHandlers.ofByteArray());
+        }
+
+        var headers = resp.headers();
+        assertEquals(HttpServletResponse.SC_OK, resp.statusCode());
+        assertEquals("br", headers.firstValue("Content-Encoding").orElse(""));
+        assertEquals(
+                CacheControlFilter.IMMUTABLE,
+                headers.firstValue("Cache-Control").orElse("")
+        );
+        assertThat(
+                headers.firstValue("ETag").orElse("W/"),
+                not(startsWith("W/"))
+        );
+    }
+
     // NOTE ON THE FOLLOWING TESTS
     // ---------------------------
     // The following tests exercise the Servlet handler methods, each being a
@@ -120,42 +197,109 @@ class ServletContractTest {
     // test, so we collect coverage for (most of) them. These tests are
     // annotated with @MediumCoverageTest.
     //
-    // The exception is productionImplementationTemporarilyReturnsError(), which
-    // is a @MediumTest, for reasons explained in that test's comment.
+    // The exception is productionImplementationAddsNumbers(), which is a
+    // @MediumTest, for reasons explained in that test's comment.
     // ---------------------------------------------
 
-    // Tests that GET /add returns a placeholder string. As noted in the
-    // Servlet.doGet() comment, actual StringCalculator /add requests will use
-    // the POST method. However, when just starting to write a Servlet, a GET
-    // response like this can help with learning and troubleshooting.
-    //
-    // Since the Servlet scaffolding for the StringCalculator example is
-    // actually in place, Servlet.doGet() and this test can be safely removed at
-    // any time.
+    // Tests that GET /add calculates the sum of the "numbers" query parameter,
+    // and that a successful response carries the headers needed for caching
+    // and revalidation.
+    @MediumCoverageTest
+    void getAddRequestIsCacheable() throws Exception {
+        startTomcat(new Servlet(ServletContractTest::lengthOrError));
+        var numbers = URLEncoder.encode("1,2\n3", StandardCharsets.UTF_8);
+        var uri = "/add?numbers=" + numbers;
+
+        var resp = sendRequest(newRequestBuilder(uri).GET().build());
+
+        assertEquals(HttpServletResponse.SC_OK, resp.statusCode());
+        assertThat(resp, hasContentType("application/json;charset=UTF-8"));
+        assertEquals("{\"result\":5}", resp.body());
+        assertEquals(
+                Servlet.DEFAULT_GET_CACHE_CONTROL,
+                resp.headers().firstValue("Cache-Control").orElse("")
+        );
+
+        // Any server returns the same ETag for the same response body.
+        final var etag = resp.headers().firstValue("ETag").orElse("");
+        assertEquals(
+                Servlet.etag(
+                        "{\"result\":5}".getBytes(StandardCharsets.UTF_8)
+                ),
+                etag
+        );
+
+        for (var ifNoneMatch : List.of(etag, "W/" + etag, "\"x\", " + etag)) {
+            resp = sendRequest(newRequestBuilder(uri)
+                    .header("If-None-Match", ifNoneMatch)
+                    .GET()
+                    .build());
+
+            assertEquals(
+                    HttpServletResponse.SC_NOT_MODIFIED,
+                    resp.statusCode(),
+                    ifNoneMatch
+            );
+            assertEquals("", resp.body());
+        }
+
+        resp = sendRequest(newRequestBuilder(uri)
+                .header("If-None-Match", "\"stale\"")
+                .GET()
+                .build());
+        assertEquals(HttpServletResponse.SC_OK, resp.statusCode());
+
+        resp = sendRequest(newRequestBuilder("/add?numbers=bad").GET().build());
+
+        assertEquals(HttpServletResponse.SC_BAD_REQUEST, resp.statusCode());
+        assertEquals("{\"error\":\"received: bad\"}", resp.body());
+        assertTrue(resp.headers().firstValue("ETag").isEmpty());
+        assertTrue(resp.headers().firstValue("Cache-Control").isEmpty());
+    }
+
+    // Tests that the GET_CACHE_CONTROL_PARAM init-param overrides the
+    // Cache-Control header of GET /add responses.
+    @MediumCoverageTest
+    void getAddRequestUsesCacheControlParam() throws Exception {
+        startTomcat(
+                new Servlet(ServletContractTest::lengthOrError),
+                Map.of(Servlet.GET_CACHE_CONTROL_PARAM, "no-cache")
+        );
+
+        var resp = sendRequest(
+                newRequestBuilder("/add?numbers=1,2").GET().build()
+        );
+
+        assertEquals(HttpServletResponse.SC_OK, resp.statusCode());
+        assertEquals(
+                "no-cache",
+                resp.headers().firstValue("Cache-Control").orElse("")
+        );
+    }
+
+    // Tests that BATCH_ENDPOINT doesn't support GET.
     @MediumCoverageTest
-    void getAddEndpointReturnsPlaceholderString() throws Exception {
-        var req = newRequestBuilder("/add").GET().build();
+    void getBatchEndpointIsNotAllowed() throws Exception {
         // We're covering the zero argument Servlet constructor while injecting
         // a Servlet directly into the TestTomcat, which will leave the
         // Servlet's calculator member uninitialized. In this case it's OK,
         // since we aren't exercising a code path that uses it.
-        tomcat.start(new Servlet());
+        startTomcat(new Servlet());
+        var req = newRequestBuilder(Servlet.BATCH_ENDPOINT).GET().build();
 
         var resp = sendRequest(req);
 
-        assertEquals(HttpServletResponse.SC_OK, resp.statusCode());
-        assertThat(resp, hasContentType("text/plain;charset=UTF-8"));
-        assertEquals("placeholder for /add API endpoint", resp.body());
+        assertEquals(
+                HttpServletResponse.SC_METHOD_NOT_ALLOWED, resp.statusCode()
+        );
     }
 
-    // Tests that our TemporaryStringCalculator, configured via Weld/CDI
-    // based on our settings in src/main/webapp, returns an error as expected.
+    // Tests that our ParallelStringCalculator, configured via Weld/CDI
+    // based on our settings in src/main/webapp, adds numbers as expected.
     //
-    // When the actual StringCalculator class is in place, this tests should
-    // be updated or replaced to validate that the system uses that
-    // implementation successfully. Until that time, this test serves to
-    // ensure that Tomcat is finding and using the existing production
-    // dependency.
+    // This test replaced one that validated the error returned by the
+    // original TemporaryStringCalculator. It serves to ensure that Tomcat is
+    // finding and using the actual production dependency.
     //
     // This test will run 30x-40x slower than the @MediumCoverageTests below.
     // This is because it uses the no-arg version of TestTomcat.start(), which:
@@ -243,16 +387,14 @@ class ServletContractTest {
     //   higher level issues and system integration without worrying about
     //   business logic.
     @MediumTest
-    void productionImplementationTemporarilyReturnsError() throws Exception {
-        tomcat.startWithBuildInputs();
+    void productionImplementationAddsNumbers() throws Exception {
+        startTomcatWithBuildInputs();
 
-        var r = sendStringCalculatorRequest("");
+        var r = sendStringCalculatorRequest("//;\n1;2\n3");
 
-        assertEquals(HttpServletResponse.SC_BAD_REQUEST, r.resp.statusCode());
+        assertEquals(HttpServletResponse.SC_OK, r.resp.statusCode());
         assertThat(r.resp, hasContentType("application/json;charset=UTF-8"));
-        var expected = new Servlet.CalculatorResponse(
-                0, "TemporaryStringCalculator received: \"\""
-        );
+        var expected = new Servlet.CalculatorResponse(6, null);
         assertThat(r.payload, samePropertyValuesAs(expected));
     }
 
@@ -308,7 +450,7 @@ class ServletContractTest {
     // and corners of the code are well covered.
     @MediumCoverageTest
     void addRequestSuccess() throws Exception {
-        tomcat.start(new Servlet(numbers -> Integer.MAX_VALUE));
+        startTomcat(new Servlet(numbers -> Integer.MAX_VALUE));
 
         var r = sendStringCalculatorRequest("");
 
@@ -322,9 +464,9 @@ class ServletContractTest {
     //
     // NOTE ON KEEPING SEEMINGLY REDUNDANT TEST METHODS:
     // ------------------------------------------------
-    // You may notice that the productionImplementationTemporarilyReturnsError
-    // test method covers the same error path. So if we already have that
-    // test, why have this one?
+    // You may notice that the original version of the
+    // productionImplementationAddsNumbers test method covered the same error
+    // path. So if we already had that test, why have this one?
     //
     // Solely from the perspective of the teaching example, this case helps
     // illustrate how one can easily simulate an error with a test double.
@@ -351,20 +493,19 @@ class ServletContractTest {
     // want to unnecessarily duplicate test coverage on principle, but trying to
     // eliminate all duplication between tests can prove even more inefficient.
     //
-    // In fact, it could prove harmful. Note the commment for
-    // productionImplementationTemporarilyReturnsError() recommends updating or
-    // replacing it with the actual StringCalculator implementation when ready.
-    // At that point, this test may no longer be redundant. If the student
-    // chooses to validate a successful StringCalculator operation, the previous
-    // test case will become redundant! If we remove this "redundant" test
-    // now, we might end up with a testing gap later without realizing it.
+    // In fact, it could prove harmful. The original comment for that test
+    // recommended updating or replacing it with the actual StringCalculator
+    // implementation when ready. Now that productionImplementationAddsNumbers()
+    // validates a successful StringCalculator operation, this test is no
+    // longer redundant. Had we removed this "redundant" test earlier, we would
+    // have ended up with a testing gap without realizing it.
     //
     // Given that the smaller test should be relatively easy to maintain,
     // there's no harm and some appreciable benefit to keeping this
     // "overlapping" test case around.
     @MediumCoverageTest
     void addRequestError() throws Exception {
-        tomcat.start(new Servlet(numbers -> {
+        startTomcat(new Servlet(numbers -> {
             throw new StringCalculator.Exception(
                     String.format("received: %s", numbers)
             );
@@ -379,4 +520,392 @@ class ServletContractTest {
         );
         assertThat(r.payload, samePropertyValuesAs(expected));
     }
+
+    // Test double that fails on "bad" input and otherwise returns the length
+    // of the input. Used by the batch tests to mix successes and errors.
+    static int lengthOrError(String numbers) throws StringCalculator.Exception {
+        if (numbers.equals("bad")) {
+            throw new StringCalculator.Exception("received: bad");
+        }
+        return numbers.length();
+    }
+
+    // Tests that a JSON array posted to BATCH_ENDPOINT returns an array of
+    // results, each with its own error, and an OK status overall.
+    @MediumCoverageTest
+    void addBatchRequest() throws Exception {
+        startTomcat(new Servlet(ServletContractTest::lengthOrError));
+        var req = newRequestBuilder(Servlet.BATCH_ENDPOINT)
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "[{\"numbers\":\"1,2\"},{\"numbers\":\"bad\"}]"
+                ))
+                .build();
+
+        var resp = sendRequest(req);
+
+        assertEquals(HttpServletResponse.SC_OK, resp.statusCode());
+        assertThat(resp, hasContentType("application/json;charset=UTF-8"));
+        assertEquals(
+                "[{\"result\":3},{\"error\":\"received: bad\"}]",
+                resp.body()
+        );
+    }
+
+    // Tests that newline delimited JSON posted to BATCH_ENDPOINT returns one
+    // newline delimited result per request.
+    @MediumCoverageTest
+    void addBatchRequestNdjson() throws Exception {
+        startTomcat(new Servlet(ServletContractTest::lengthOrError));
+        var req = newRequestBuilder(Servlet.BATCH_ENDPOINT)
+                .header("Content-Type", Servlet.NDJSON_CONTENT_TYPE)
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"numbers\":\"bad\"}\n{\"numbers\":\"1,2\"}\n"
+                ))
+                .build();
+
+        var resp = sendRequest(req);
+
+        assertEquals(HttpServletResponse.SC_OK, resp.statusCode());
+        assertThat(
+                resp,
+                hasContentType(Servlet.NDJSON_CONTENT_TYPE + ";charset=UTF-8")
+        );
+        assertEquals(
+                "{\"error\":\"received: bad\"}\n{\"result\":3}\n",
+                resp.body()
+        );
+    }
+
+    // Tests that SUM_PARAM selects StringCalculator.addExact(), whose result
+    // can exceed the range of a long, and that add() is still the default.
+    @MediumCoverageTest
+    void addRequestExactSum() throws Exception {
+        startTomcat(new Servlet(new StreamingStringCalculator()));
+        var body = "{\"numbers\":\"9223372036854775807,1\"}";
+        var exactReq = newRequestBuilder(
+                "/add?" + Servlet.SUM_PARAM + "=" + Servlet.EXACT_SUM
+        ).POST(HttpRequest.BodyPublishers.ofString(body)).build();
+        var defaultReq = newRequestBuilder("/add")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+
+        var exactResp = sendRequest(exactReq);
+        var defaultResp = sendRequest(defaultReq);
+
+        assertEquals(HttpServletResponse.SC_OK, exactResp.statusCode());
+        assertEquals("{\"result\":9223372036854775808}", exactResp.body());
+        assertEquals(
+                HttpServletResponse.SC_BAD_REQUEST, defaultResp.statusCode()
+        );
+        assertEquals(
+                "{\"error\":\"number at index 0 exceeds 2147483647\"}",
+                defaultResp.body()
+        );
+    }
+
+    // Tests that reading SUM_PARAM doesn't consume a JSON body sent as
+    // "application/x-www-form-urlencoded", as HTML forms and some clients do,
+    // in both the blocking and the async doPost() paths.
+    @MediumCoverageTest
+    void addRequestExactSumWithFormContentType() throws Exception {
+        for (var async : List.of("false", "true")) {
+            startTomcat(
+                    new Servlet(new StreamingStringCalculator()),
+                    Map.of(Servlet.ASYNC_PARAM, async)
+            );
+            var req = newRequestBuilder(
+                    "/add?" + Servlet.SUM_PARAM + "=" + Servlet.EXACT_SUM
+            )
+                    .header(
+                            "Content-Type",
+                            "application/x-www-form-urlencoded"
+                    )
+                    .POST(HttpRequest.BodyPublishers.ofString(
+                            "{\"numbers\":\"9223372036854775807,1\"}"
+                    ))
+                    .build();
+
+            var resp = sendRequest(req);
+
+            assertEquals(HttpServletResponse.SC_OK, resp.statusCode(), async);
+            assertEquals(
+                    "{\"result\":9223372036854775808}", resp.body(), async
+            );
+            lease.close();
+            lease = null;
+        }
+    }
+
+    // Tests that a PLAIN_TEXT_CONTENT_TYPE body sent with
+    // "Transfer-Encoding: chunked" is summed by StreamingStringCalculator as
+    // it arrives, and produces the same response as the equivalent JSON
+    // request.
+    @MediumCoverageTest
+    void addRequestPlainTextChunked() throws Exception {
+        startTomcat(new Servlet(new StreamingStringCalculator()));
+        var numbers = "1,2\n3,".repeat(10_000) + "4";
+        var req = newRequestBuilder("/add")
+                .header("Content-Type", Servlet.PLAIN_TEXT_CONTENT_TYPE)
+                .POST(HttpRequest.BodyPublishers.ofInputStream(
+                        () -> new ByteArrayInputStream(
+                                numbers.getBytes(StandardCharsets.UTF_8)
+                        )
+                ))
+                .build();
+
+        var resp = sendRequest(req);
+
+        assertEquals(HttpServletResponse.SC_OK, resp.statusCode());
+        assertThat(resp, hasContentType("application/json;charset=UTF-8"));
+        assertEquals("{\"result\":60004}", resp.body());
+
+        req = newRequestBuilder("/add")
+                .header("Content-Type", Servlet.PLAIN_TEXT_CONTENT_TYPE)
+                .POST(HttpRequest.BodyPublishers.ofString("1,2,-3,4,-5"))
+                .build();
+        resp = sendRequest(req);
+
+        assertEquals(HttpServletResponse.SC_BAD_REQUEST, resp.statusCode());
+        assertEquals(
+                "{\"error\":\"negatives not allowed: -3, -5\"}", resp.body()
+        );
+    }
+
+    // Tests that a PLAIN_TEXT_CONTENT_TYPE body goes to the injected
+    // StringCalculator, which reads it into a String by default.
+    @MediumCoverageTest
+    void addRequestPlainTextUsesInjectedCalculator() throws Exception {
+        startTomcat(new Servlet(ServletContractTest::lengthOrError));
+        var req = newRequestBuilder("/add")
+                .header("Content-Type", Servlet.PLAIN_TEXT_CONTENT_TYPE)
+                .POST(HttpRequest.BodyPublishers.ofString("1,2\n3"))
+                .build();
+
+        var resp = sendRequest(req);
+
+        assertEquals(HttpServletResponse.SC_OK, resp.statusCode());
+        assertEquals("{\"result\":5}", resp.body());
+
+        req = newRequestBuilder("/add")
+                .header("Content-Type", Servlet.PLAIN_TEXT_CONTENT_TYPE)
+                .POST(HttpRequest.BodyPublishers.ofString("bad"))
+                .build();
+        resp = sendRequest(req);
+
+        assertEquals(HttpServletResponse.SC_BAD_REQUEST, resp.statusCode());
+        assertEquals("{\"error\":\"received: bad\"}", resp.body());
+    }
+
+    // Tests that RunningTotalEndpoint keeps a running total across messages,
+    // leaves it unchanged after an error, and that a plain GET of
+    // STREAM_ENDPOINT gets UPGRADE_REQUIRED.
+    @MediumCoverageTest
+    void addStreamRunningTotal() throws Exception {
+        startTomcat(new Servlet(ServletContractTest::lengthOrError));
+        var replies = new LinkedBlockingQueue<String>();
+        var uri = tomcat.resolveEndpoint(Servlet.STREAM_ENDPOINT);
+        var wsUri = URI.create(uri.toString().replaceFirst("^http", "ws"));
+
+        try (var client = HttpClient.newHttpClient()) {
+            var ws = client.newWebSocketBuilder()
+                    .buildAsync(wsUri, new WebSocket.Listener() {
+                        private final StringBuilder text = new StringBuilder();
+
+                        @Override
+                        public CompletionStage<?> onText(
+                                WebSocket ws, CharSequence data, boolean last) {
+                            text.append(data);
+                            if (last) {
+                                replies.add(text.toString());
+                                text.setLength(0);
+                            }
+                            ws.request(1);
+                            return null;
+                        }
+                    })
+                    .get(5, TimeUnit.SECONDS);
+
+            for (var numbers : List.of("1,2", "bad", "1234")) {
+                ws.sendText(numbers, true).get(5, TimeUnit.SECONDS);
+            }
+            ws.sendClose(WebSocket.NORMAL_CLOSURE, "")
+                    .get(5, TimeUnit.SECONDS);
+        }
+
+        assertEquals("{\"result\":3}", replies.poll(5, TimeUnit.SECONDS));
+        assertEquals(
+                "{\"error\":\"received: bad\"}",
+                replies.poll(5, TimeUnit.SECONDS)
+        );
+        assertEquals("{\"result\":7}", replies.poll(5, TimeUnit.SECONDS));
+
+        var resp = sendRequest(HttpRequest.newBuilder().uri(uri).build());
+
+        assertEquals(Servlet.UPGRADE_REQUIRED, resp.statusCode());
+        assertEquals(
+                "websocket", resp.headers().firstValue("Upgrade").orElse("")
+        );
+    }
+
+    // Tests the success and error paths through AsyncAddRequest, which
+    // replaces the blocking doPost() path when the "async" init-param is set.
+    @MediumCoverageTest
+    void addRequestAsync() throws Exception {
+        startTomcat(
+                new Servlet(ServletContractTest::lengthOrError),
+                Map.of(Servlet.ASYNC_PARAM, "true")
+        );
+
+        var r = sendStringCalculatorRequest("1,2");
+
+        assertEquals(HttpServletResponse.SC_OK, r.resp.statusCode());
+        assertThat(r.resp, hasContentType("application/json;charset=UTF-8"));
+        assertThat(
+                r.payload,
+                samePropertyValuesAs(new Servlet.CalculatorResponse(3, null))
+        );
+
+        r = sendStringCalculatorRequest("bad");
+
+        assertEquals(HttpServletResponse.SC_BAD_REQUEST, r.resp.statusCode());
+        assertThat(
+                r.payload,
+                samePropertyValuesAs(
+                        new Servlet.CalculatorResponse(0, "received: bad")
+                )
+        );
+    }
+
+    // Tests that AsyncAddRequest rejects a body larger than the
+    // ASYNC_MAX_BODY_BYTES_PARAM limit, whether its Content-Length exceeds the
+    // limit or, when chunked, it grows beyond the limit while reading.
+    @MediumCoverageTest
+    void addRequestAsyncRejectsLargeBody() throws Exception {
+        startTomcat(
+                new Servlet(ServletContractTest::lengthOrError),
+                Map.of(
+                        Servlet.ASYNC_PARAM, "true",
+                        Servlet.ASYNC_MAX_BODY_BYTES_PARAM, "16"
+                )
+        );
+        var body = "{\"numbers\":\"1,2,3,4,5,6,7,8,9\"}"
+                .getBytes(StandardCharsets.UTF_8);
+        var expected = "{\"error\":\"request body exceeds 16 bytes\"}";
+
+        for (var publisher : List.of(
+                HttpRequest.BodyPublishers.ofByteArray(body),
+                HttpRequest.BodyPublishers.ofInputStream(
+                        () -> new ByteArrayInputStream(body)
+                ))) {
+            var resp = sendRequest(
+                    newRequestBuilder("/add").POST(publisher).build()
+            );
+
+            assertEquals(
+                    HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+                    resp.statusCode()
+            );
+            assertThat(resp, hasContentType("application/json;charset=UTF-8"));
+            assertEquals(expected, resp.body());
+        }
+    }
+
+    // Tests that an AsyncAddRequest that exceeds the ASYNC_TIMEOUT_MS_PARAM
+    // limit receives a 503 with a JSON error, even though its calculation
+    // finishes later.
+    @MediumCoverageTest
+    void addRequestAsyncTimesOut() throws Exception {
+        var release = new CountDownLatch(1);
+        startTomcat(
+                new Servlet(numbers -> {
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return numbers.length();
+                }),
+                Map.of(
+                        Servlet.ASYNC_PARAM, "true",
+                        Servlet.ASYNC_TIMEOUT_MS_PARAM, "100"
+                )
+        );
+
+        try {
+            var resp = sendRequest(newRequestBuilder("/add")
+                    .POST(HttpRequest.BodyPublishers.ofString(
+                            "{\"numbers\":\"1,2\"}"
+                    ))
+                    .build());
+
+            assertEquals(
+                    HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                    resp.statusCode()
+            );
+            assertEquals("{\"error\":\"request timed out\"}", resp.body());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    // Tests that init() runs the Warmup in the background before marking the
+    // Servlet ready, without recording the warm-up requests in its Metrics.
+    @MediumCoverageTest
+    void warmUpBeforeReady() throws Exception {
+        var calls = new AtomicInteger();
+        var servlet = new Servlet(numbers -> {
+            calls.incrementAndGet();
+            return 0;
+        });
+        final int iterations = 50;
+
+        startTomcat(
+                servlet,
+                Map.of(Servlet.WARMUP_ITERATIONS_PARAM, "" + iterations)
+        );
+        awaitWarmup(servlet);
+
+        var metrics = new StringBuilder();
+        servlet.getMetrics().writePrometheus(metrics);
+
+        assertEquals(iterations * Warmup.PAYLOADS.size() * 2, calls.get());
+        assertThat(
+                metrics.toString(),
+                containsString(
+                        "strcalc_phase_duration_seconds_count" +
+                        "{phase=\"compute\"} 0"
+                )
+        );
+    }
+
+    // Tests that the warm-up fills the StringCalculatorCache, but leaves its
+    // statistics at zero.
+    @MediumCoverageTest
+    void warmUpResetsCacheStats() throws Exception {
+        var cache = new StringCalculatorCache();
+        var calc = new CachingStringCalculator(
+                new StreamingStringCalculator(), cache
+        );
+        var servlet = new Servlet(
+                calc,
+                new Metrics(),
+                new Readiness(),
+                cache
+        );
+
+        startTomcat(servlet, Map.of(Servlet.WARMUP_ITERATIONS_PARAM, "50"));
+        awaitWarmup(servlet);
+
+        assertEquals(0, cache.stats().hitCount());
+        assertEquals(0, cache.stats().missCount());
+        assertTrue(cache.size() > 0);
+    }
+
+    static void awaitWarmup(Servlet servlet) throws InterruptedException {
+        final long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!servlet.getReadiness().isReady()) {
+            assertTrue(System.nanoTime() < deadline, "warm-up timed out");
+            Thread.sleep(10);
+        }
+    }
 }
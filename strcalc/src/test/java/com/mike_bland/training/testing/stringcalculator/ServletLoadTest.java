@@ -0,0 +1,104 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import com.mike_bland.training.testing.annotations.LoadTest;
+import com.mike_bland.training.testing.utils.LoadGenerator;
+import com.mike_bland.training.testing.utils.ReadinessProbe;
+import com.mike_bland.training.testing.utils.TestTomcat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+
+import java.net.http.HttpRequest;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Drives POST /add at a fixed arrival rate and checks throughput and latency.
+//
+// Run via the "test-load" task, which passes these -P properties through as
+// system properties:
+//
+//   ./gradlew test-load -Pstrcalc.load.rate=500 \
+//       -Pstrcalc.load.durationSeconds=30
+//
+// Each test writes its results to LoadGenerator.REPORT_DIR.
+class ServletLoadTest {
+    static final double RATE = Double.parseDouble(
+            System.getProperty("strcalc.load.rate", "200")
+    );
+    static final Duration DURATION = Duration.ofSeconds(
+            Long.getLong("strcalc.load.durationSeconds", 10)
+    );
+    static final Duration WARMUP = Duration.ofSeconds(
+            Long.getLong("strcalc.load.warmupSeconds", 3)
+    );
+    static final int CLIENTS = Integer.getInteger("strcalc.load.clients", 4);
+    static final double MAX_P99_MILLIS = Double.parseDouble(
+            System.getProperty("strcalc.load.maxP99Millis", "250")
+    );
+    static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    private TestTomcat tomcat;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        tomcat = new TestTomcat(0, Servlet.DEFAULT_ROOT);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        tomcat.stop();
+    }
+
+    // Returns an /add request whose numbers vary with i, so that results
+    // aren't all served from the StringCalculatorCache.
+    HttpRequest addRequest(long i) {
+        var payload = "{\"numbers\":\"%d,%d\\n%d\"}".formatted(i, i % 97, 1);
+
+        return HttpRequest.newBuilder()
+                .uri(tomcat.resolveEndpoint("/add"))
+                .timeout(REQUEST_TIMEOUT)
+                .POST(HttpRequest.BodyPublishers.ofString(payload))
+                .build();
+    }
+
+    // Runs against the same configuration as the @MediumTest in
+    // ServletContractTest, including Weld and every bean in beans.xml.
+    //
+    // Waits for the Servlet's own warm-up to finish before the warmup run,
+    // which then warms up the connector and HttpClient connections.
+    @LoadTest
+    void addSustainsTargetRate() throws Exception {
+        tomcat.startWithBuildInputs();
+        tomcat.awaitReady(
+                ReadyServlet.ENDPOINT, ReadinessProbe.DEFAULT_TIMEOUT
+        );
+
+        try (var load = new LoadGenerator(CLIENTS)) {
+            load.run("warmup", RATE, WARMUP, this::addRequest);
+            var report = load.run(
+                    "addSustainsTargetRate", RATE, DURATION, this::addRequest
+            );
+            var file = report.write();
+
+            assertEquals(0, report.failed, file.toString());
+            assertEquals(0, report.shed, file.toString());
+            assertTrue(
+                    report.throughputPerSecond >= RATE * 0.95,
+                    "throughput below 95% of target: " + file
+            );
+            assertTrue(
+                    report.latencyMillis.p99 <= MAX_P99_MILLIS,
+                    "p99 latency above %.1fms: %s".formatted(
+                            MAX_P99_MILLIS, file
+                    )
+            );
+        }
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import com.mike_bland.training.testing.annotations.SmallTest;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StreamingStringCalculatorTest {
+    private final StreamingStringCalculator calc =
+            new StreamingStringCalculator();
+
+    // Also checks that tryAdd() reports the same error without throwing.
+    void assertError(String expected, String numbers) {
+        var e = assertThrows(
+                StreamingStringCalculator.Exception.class,
+                () -> calc.add(numbers)
+        );
+        assertEquals(expected, e.getMessage());
+
+        var result = new Result();
+        assertFalse(calc.tryAdd(numbers, result));
+        assertEquals(expected, result.message());
+        assertEquals(
+                StreamingStringCalculator.Exception.class, result.errorType()
+        );
+    }
+
+    @SmallTest
+    void emptyStringReturnsZero() throws Exception {
+        assertEquals(0, calc.add(""));
+    }
+
+    @SmallTest
+    void singleNumber() throws Exception {
+        assertEquals(1, calc.add("1"));
+        assertEquals(1234, calc.add("1234"));
+    }
+
+    @SmallTest
+    void commaAndNewlineDelimiters() throws Exception {
+        assertEquals(3, calc.add("1,2"));
+        assertEquals(6, calc.add("1\n2,3"));
+    }
+
+    @SmallTest
+    void acceptsAnyCharSequence() throws Exception {
+        assertEquals(6, calc.add(new StringBuilder("1\n2,3")));
+    }
+
+    @SmallTest
+    void singleCharacterCustomDelimiter() throws Exception {
+        assertEquals(3, calc.add("//;\n1;2"));
+        assertEquals(6, calc.add("//;\n1;2\n3"));
+        assertEquals(0, calc.add("//;\n"));
+    }
+
+    @SmallTest
+    void customDelimiterReplacesComma() {
+        assertError("invalid character ',' at index 5", "//;\n1,2");
+    }
+
+    @SmallTest
+    void bracketedCustomDelimiterOfAnyLength() throws Exception {
+        assertEquals(6, calc.add("//[***]\n1***2***3"));
+    }
+
+    @SmallTest
+    void multipleBracketedCustomDelimiters() throws Exception {
+        assertEquals(6, calc.add("//[*][%]\n1*2%3"));
+        assertEquals(6, calc.add("//[*][**]\n1**2*3"));
+    }
+
+    @SmallTest
+    void reportsAllNegatives() {
+        assertError("negatives not allowed: -1, -3", "-1,2,-3");
+        assertError("negatives not allowed: -2", "//[**]\n1**-2**3");
+    }
+
+    @SmallTest
+    void reportsSyntaxErrorsBeforeNegatives() {
+        assertError("invalid character 'x' at index 3", "-1,x");
+    }
+
+    @SmallTest
+    void reportsMissingNumbers() {
+        assertError("missing number at index 0", ",1");
+        assertError("missing number at index 2", "1,,2");
+        assertError("missing number at index 2", "1\n");
+        assertError("missing number at index 3", "1,-");
+    }
+
+    @SmallTest
+    void reportsInvalidCharacters() {
+        assertError("invalid character 'a' at index 2", "1,a");
+        assertError("invalid character ' ' at index 1", "1 ,2");
+    }
+
+    @SmallTest
+    void reportsMalformedHeaders() {
+        assertError("missing custom delimiter at index 2", "//");
+        assertError("missing custom delimiter at index 2", "//\n1");
+        assertError(
+                "custom delimiter header must end with a newline at index 3",
+                "//;1;2"
+        );
+        assertError("unterminated custom delimiter at index 2", "//[**\n1");
+        assertError("empty custom delimiter at index 2", "//[]\n1");
+        assertError(
+                "invalid custom delimiter character '1' at index 2", "//1\n1"
+        );
+        assertError(
+                "invalid custom delimiter character '-' at index 3",
+                "//[-]\n1"
+        );
+    }
+
+    @SmallTest
+    void reportsNumbersAndSumsLargerThanIntegerMaxValue() throws Exception {
+        assertEquals(Integer.MAX_VALUE, calc.add("2147483647"));
+        assertError("number at index 2 exceeds 2147483647", "1,2147483648");
+        assertError("sum exceeds 2147483647", "2147483647,1");
+    }
+
+    BigInteger addExact(String numbers) throws Exception {
+        var sum = new Sum();
+        calc.addExact(numbers, sum);
+        return sum.toBigInteger();
+    }
+
+    @SmallTest
+    void addExactReturnsSumsOfAnySize() throws Exception {
+        assertEquals(BigInteger.valueOf(6), addExact("1,2\n3"));
+        assertEquals(BigInteger.ZERO, addExact(""));
+        assertEquals(
+                new BigInteger("4294967294"),
+                addExact("2147483647,2147483647")
+        );
+        assertEquals(
+                new BigInteger("18446744073709551615"),
+                addExact("//;\n9223372036854775807;9223372036854775807;1")
+        );
+    }
+
+    @SmallTest
+    void addExactLimitsNumbersToLongMaxValue() throws Exception {
+        assertEquals(
+                BigInteger.valueOf(Long.MAX_VALUE),
+                addExact("9223372036854775807")
+        );
+        for (var numbers : new String[] {
+                "1,9223372036854775808", "1,9223372036854775810",
+                "1,92233720368547758070"}) {
+            var e = assertThrows(
+                    StreamingStringCalculator.Exception.class,
+                    () -> addExact(numbers)
+            );
+            assertEquals(
+                    "number at index 2 exceeds 9223372036854775807",
+                    e.getMessage()
+            );
+        }
+    }
+
+    @SmallTest
+    void addExactReportsSameErrorsAsAdd() {
+        for (var numbers : new String[] {"-1,2,-3", "1,,2", "//\n1", null}) {
+            var expected = assertThrows(
+                    StreamingStringCalculator.Exception.class,
+                    () -> calc.add(numbers)
+            );
+            var actual = assertThrows(
+                    StreamingStringCalculator.Exception.class,
+                    () -> addExact(numbers)
+            );
+            assertEquals(expected.getMessage(), actual.getMessage());
+        }
+    }
+
+    @SmallTest
+    void reportsNullInput() {
+        assertError("no numbers provided", null);
+    }
+
+    @SmallTest
+    void tryAddReusesResultBetweenCalls() {
+        var result = new Result();
+
+        assertFalse(calc.tryAdd("1,,2", result));
+        assertEquals(Result.Error.MISSING_NUMBER, result.error());
+
+        assertTrue(calc.tryAdd("1,2", result));
+        assertEquals(3, result.value());
+        assertNull(result.error());
+        assertNull(result.message());
+    }
+
+    @SmallTest
+    void tryAddExactReportsSameErrorsAsAddExact() throws Exception {
+        var sum = new Sum();
+        var result = new Result();
+
+        assertTrue(calc.tryAddExact(
+                "9223372036854775807,9223372036854775807", sum, result
+        ));
+        assertEquals("18446744073709551614", sum.toString());
+
+        var e = assertThrows(
+                StreamingStringCalculator.Exception.class,
+                () -> addExact("1,x")
+        );
+        assertFalse(calc.tryAddExact("1,x", sum, result));
+        assertEquals(Result.Error.INVALID_CHARACTER, result.error());
+        assertEquals(e.getMessage(), result.message());
+    }
+
+    // Stops reading at the first error, instead of reading the whole stream
+    // into memory first.
+    @SmallTest
+    void tryAddSumsStreamsAsTheyArrive() throws Exception {
+        var result = new Result();
+        var sum = new Sum();
+        var numbers = "1,x," + "1,".repeat(100_000) + "1";
+        var body = new ByteArrayInputStream(
+                numbers.getBytes(StandardCharsets.UTF_8)
+        );
+
+        assertFalse(calc.tryAdd(body, result));
+        assertEquals("invalid character 'x' at index 2", result.message());
+        assertEquals(
+                StreamingStringCalculator.Exception.class, result.errorType()
+        );
+        assertTrue(body.available() > 0);
+
+        assertTrue(calc.tryAddExact(
+                new ByteArrayInputStream("1,2\n3".getBytes()), sum, result
+        ));
+        assertEquals("6", sum.toString());
+    }
+
+    @SmallTest
+    void valueOrThrowCreatesOneExceptionOfTheErrorType() {
+        var result = new Result();
+        assertFalse(calc.tryAdd("1,x", result));
+
+        var e = assertThrows(
+                StreamingStringCalculator.Exception.class,
+                result::valueOrThrow
+        );
+        assertEquals("invalid character 'x' at index 2", e.getMessage());
+        assertSame(
+                e,
+                assertThrows(
+                        StringCalculator.Exception.class, result::valueOrThrow
+                )
+        );
+    }
+
+    @SmallTest
+    void exceptionsDoNotCaptureStackTraces() {
+        var e = assertThrows(
+                StreamingStringCalculator.Exception.class,
+                () -> calc.add("-1")
+        );
+        assertEquals(0, e.getStackTrace().length);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import com.mike_bland.training.testing.annotations.SmallTest;
+
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SumTest {
+    private final Sum sum = new Sum();
+
+    @SmallTest
+    void startsAtZero() {
+        assertTrue(sum.isZero());
+        assertTrue(sum.fitsInLong());
+        assertEquals(0, sum.longValue());
+        assertEquals("0", sum.toString());
+    }
+
+    @SmallTest
+    void accumulatesInLongUntilOverflow() {
+        sum.add(Long.MAX_VALUE - 1);
+        sum.add(1);
+
+        assertTrue(sum.fitsInLong());
+        assertEquals(Long.MAX_VALUE, sum.longValue());
+
+        sum.add(1);
+
+        assertFalse(sum.fitsInLong());
+        assertEquals(
+                BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.ONE),
+                sum.toBigInteger()
+        );
+        assertEquals("9223372036854775808", sum.toString());
+    }
+
+    @SmallTest
+    void carriesRepeatedOverflows() {
+        for (int i = 0; i != 4; ++i) sum.add(Long.MAX_VALUE);
+
+        var expected = BigInteger.valueOf(Long.MAX_VALUE)
+                .multiply(BigInteger.valueOf(4));
+        assertEquals(expected, sum.toBigInteger());
+    }
+
+    @SmallTest
+    void fitsInLongAgainAfterNegativeValues() {
+        sum.add(Long.MAX_VALUE);
+        sum.add(Long.MAX_VALUE);
+        sum.add(-Long.MAX_VALUE);
+
+        assertTrue(sum.fitsInLong());
+        assertEquals(Long.MAX_VALUE, sum.longValue());
+
+        sum.add(-Long.MAX_VALUE);
+        assertTrue(sum.isZero());
+    }
+
+    @SmallTest
+    void resetReturnsToZero() {
+        sum.add(Long.MAX_VALUE);
+        sum.add(Long.MAX_VALUE);
+        sum.reset();
+
+        assertTrue(sum.isZero());
+        assertTrue(sum.fitsInLong());
+    }
+}
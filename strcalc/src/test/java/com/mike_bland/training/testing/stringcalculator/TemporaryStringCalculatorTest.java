@@ -8,7 +8,11 @@ package com.mike_bland.training.testing.stringcalculator;
 
 import com.mike_bland.training.testing.annotations.SmallTest;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class TemporaryStringCalculatorTest {
@@ -23,4 +27,25 @@ public class TemporaryStringCalculatorTest {
         var expected = "TemporaryStringCalculator received: \"2,2\"";
         assertEquals(expected, e.getMessage());
     }
+
+    // TemporaryStringCalculator relies on the default tryAdd(InputStream),
+    // which decodes the whole body as UTF-8 before calling add().
+    @SmallTest
+    void tryAddReadsStreamsIntoStrings() throws Exception {
+        var calc = new TemporaryStringCalculator();
+        var result = new Result();
+        var body = new ByteArrayInputStream(
+                "2,é".getBytes(StandardCharsets.UTF_8)
+        );
+
+        assertFalse(calc.tryAdd(body, result));
+        assertEquals(
+                "TemporaryStringCalculator received: \"2,é\"",
+                result.message()
+        );
+        assertEquals(
+                TemporaryStringCalculator.Exception.class, result.errorType()
+        );
+        assertEquals(0, body.available());
+    }
 }
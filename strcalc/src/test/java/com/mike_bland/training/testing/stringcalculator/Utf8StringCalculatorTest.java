@@ -0,0 +1,267 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import com.mike_bland.training.testing.annotations.SmallTest;
+import com.mike_bland.training.testing.annotations.VectorTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// The "test-vector" task adds the jdk.incubator.vector module to its JVM, so
+// the @VectorTest cases exercise both DelimiterScanner implementations. The
+// @SmallTest cases run without it, as the WAR does by default.
+public class Utf8StringCalculatorTest {
+    private final StreamingStringCalculator streaming =
+            new StreamingStringCalculator();
+
+    // Only @VectorTest cases may call this, since VectorDelimiterScanner
+    // fails to load without the jdk.incubator.vector module.
+    static List<Utf8StringCalculator> vectorAndScalar() {
+        return List.of(
+                new Utf8StringCalculator(new VectorDelimiterScanner()),
+                new Utf8StringCalculator(new DelimiterScanner.Scalar())
+        );
+    }
+
+    // Returns the result of tryAdd() as a String, or its Error and message.
+    static String describe(boolean ok, Result result) {
+        if (ok) return Integer.toString(result.value());
+        return "error: " + result.error() + ": " + result.message();
+    }
+
+    static String tryAdd(StringCalculator c, String numbers) {
+        var result = new Result();
+        return describe(c.tryAdd(numbers, result), result);
+    }
+
+    static String tryAdd(Utf8StringCalculator c, byte[] utf8) {
+        var result = new Result();
+        return describe(c.tryAdd(utf8, 0, utf8.length, result), result);
+    }
+
+    static String tryAddExact(StringCalculator c, String numbers) {
+        var result = new Result();
+        var sum = new Sum();
+        final boolean ok = c.tryAddExact(numbers, sum, result);
+        return ok ? sum.toString() : describe(false, result);
+    }
+
+    static String tryAddExact(Utf8StringCalculator c, byte[] utf8) {
+        var result = new Result();
+        var sum = new Sum();
+        final boolean ok = c.tryAddExact(utf8, 0, utf8.length, sum, result);
+        return ok ? sum.toString() : describe(false, result);
+    }
+
+    void assertSameAsStreaming(String numbers) {
+        final var utf8 = numbers.getBytes(StandardCharsets.UTF_8);
+
+        for (var calc : vectorAndScalar()) {
+            assertEquals(
+                    tryAdd(streaming, numbers), tryAdd(calc, utf8), numbers
+            );
+            assertEquals(
+                    tryAddExact(streaming, numbers),
+                    tryAddExact(calc, utf8),
+                    numbers
+            );
+        }
+    }
+
+    @VectorTest
+    void matchesStreamingResults() {
+        assertSameAsStreaming("");
+        assertSameAsStreaming("1,2\n3,40,500,6000,70000,800000");
+        assertSameAsStreaming("//;\n1;22;333\n4444;55555");
+        assertSameAsStreaming("0000000000000000000001,2");
+        assertSameAsStreaming("2147483647,2147483647,1,2,3,4,5,6");
+        assertSameAsStreaming("9223372036854775807,9223372036854775807");
+        assertSameAsStreaming("999999999999999999,999999999999999999");
+    }
+
+    @VectorTest
+    void matchesStreamingErrors() {
+        assertSameAsStreaming(",1");
+        assertSameAsStreaming("1,2,");
+        assertSameAsStreaming("1,,2");
+        assertSameAsStreaming("1,2,-3,4,5,-6");
+        assertSameAsStreaming("1,2147483648");
+        assertSameAsStreaming("1,12345678901234567890");
+        assertSameAsStreaming("//\n1");
+    }
+
+    // Error indexes count chars, not bytes, so they don't include the second
+    // byte of each 'é'.
+    @VectorTest
+    void reportsErrorIndexesInChars() {
+        final var numbers = "//[é]\n1é2éx";
+        final var utf8 = numbers.getBytes(StandardCharsets.UTF_8);
+
+        assertSameAsStreaming(numbers);
+        assertSameAsStreaming("1,2,3,4,5,6,7,8,9,10,11,12,13,14,15,16,é");
+        for (var calc : vectorAndScalar()) {
+            assertEquals(
+                    "error: INVALID_CHARACTER: " +
+                    "invalid character 'x' at index 10",
+                    tryAdd(calc, utf8)
+            );
+        }
+    }
+
+    @VectorTest
+    void matchesStreamingForInputsSpanningManyBlocks() {
+        final var random = new Random(20240315);
+        final var chars = "0123456789,\n".toCharArray();
+
+        for (int i = 0; i != 200; ++i) {
+            var sb = new StringBuilder();
+            final int count = random.nextInt(400);
+
+            for (int n = 0; n != count; ++n) {
+                if (n != 0) sb.append(random.nextBoolean() ? ',' : '\n');
+                sb.append(random.nextInt(1_000_000));
+            }
+            // Occasionally corrupts one character anywhere in the input.
+            if (sb.length() != 0 && random.nextInt(4) == 0) {
+                sb.setCharAt(
+                        random.nextInt(sb.length()),
+                        chars[random.nextInt(chars.length)]
+                );
+            }
+            assertSameAsStreaming(sb.toString());
+        }
+    }
+
+    @VectorTest
+    void scannersProduceIdenticalMasks() {
+        final var random = new Random(20240315);
+        final var alphabet = "0123456789,\n-x".getBytes(StandardCharsets.UTF_8);
+        final var vector = new VectorDelimiterScanner();
+        final var scalar = new DelimiterScanner.Scalar();
+
+        for (int i = 0; i != 1000; ++i) {
+            var bytes = new byte[1 + random.nextInt(200)];
+
+            // Mostly valid bytes, so that most blocks produce a mask.
+            for (int j = 0; j != bytes.length; ++j) {
+                bytes[j] = alphabet[random.nextInt(
+                        random.nextInt(100) == 0 ? alphabet.length : 12
+                )];
+            }
+            for (int pos = 0; pos < bytes.length; pos += 7) {
+                assertEquals(
+                        scalar.delimiters(bytes, pos, bytes.length),
+                        vector.delimiters(bytes, pos, bytes.length),
+                        Arrays.toString(bytes) + " at " + pos
+                );
+            }
+        }
+    }
+
+    @VectorTest
+    void sumsOnlyTheGivenRange() throws Exception {
+        final var utf8 = "x,1,2,3,x".getBytes(StandardCharsets.UTF_8);
+
+        for (var calc : vectorAndScalar()) {
+            var sum = new Sum();
+            assertEquals(6, calc.add(utf8, 2, 5));
+            calc.addExact(utf8, 2, 5, sum);
+            assertEquals("6", sum.toString());
+        }
+    }
+
+    @VectorTest
+    void addThrowsStreamingExceptions() {
+        final var utf8 = "1,-2".getBytes(StandardCharsets.UTF_8);
+
+        for (var calc : vectorAndScalar()) {
+            var e = assertThrows(
+                    StreamingStringCalculator.Exception.class,
+                    () -> calc.add(utf8, 0, utf8.length)
+            );
+            assertEquals("negatives not allowed: -2", e.getMessage());
+        }
+    }
+
+    @VectorTest
+    void bestUsesVectorScannerIfAccelerated() {
+        assertEquals(
+                VectorDelimiterScanner.isAccelerated(),
+                new Utf8StringCalculator().isVectorized()
+        );
+    }
+
+    @SmallTest
+    void bestUsesScalarScannerWithoutVectorModule() {
+        assertFalse(new Utf8StringCalculator().isVectorized());
+    }
+
+    static String tryAddStream(StringCalculator c, String numbers)
+            throws IOException {
+        var result = new Result();
+        var body = new ByteArrayInputStream(
+                numbers.getBytes(StandardCharsets.UTF_8)
+        );
+        return describe(c.tryAdd(body, result), result);
+    }
+
+    static String tryAddExactStream(StringCalculator c, String numbers)
+            throws IOException {
+        var result = new Result();
+        var sum = new Sum();
+        var body = new ByteArrayInputStream(
+                numbers.getBytes(StandardCharsets.UTF_8)
+        );
+        final boolean ok = c.tryAddExact(body, sum, result);
+        return ok ? sum.toString() : describe(false, result);
+    }
+
+    // Bodies longer than maxBodyBytes stream through the
+    // StreamingStringCalculator implementation, starting with the bytes
+    // already read.
+    @SmallTest
+    void matchesStreamingForBodiesEitherSideOfMaxBodyBytes()
+            throws IOException {
+        final var calc = new Utf8StringCalculator(
+                new DelimiterScanner.Scalar(), 8
+        );
+        final var inputs = List.of(
+                "",
+                "1,2,3",
+                "1,2,3,44",
+                "1,2,3,444",
+                "1,2,3,4,5,6,7,8,9,10",
+                "//;\n1;2;3;4;5;6",
+                "1,2,3,-4,5,-6",
+                "1,2,3,4,5,x",
+                "9223372036854775807,9223372036854775807",
+                "1,2é,3"
+        );
+
+        for (var numbers : inputs) {
+            assertEquals(
+                    tryAdd(streaming, numbers),
+                    tryAddStream(calc, numbers),
+                    numbers
+            );
+            assertEquals(
+                    tryAddExact(streaming, numbers),
+                    tryAddExactStream(calc, numbers),
+                    numbers
+            );
+        }
+    }
+}
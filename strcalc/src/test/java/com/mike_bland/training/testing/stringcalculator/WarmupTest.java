@@ -0,0 +1,42 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import com.mike_bland.training.testing.annotations.SmallTest;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WarmupTest {
+    @SmallTest
+    void runsEachPayloadInBothSumModes() throws Exception {
+        var inputs = new ArrayList<String>();
+        var servlet = new Servlet(numbers -> {
+            inputs.add(numbers);
+            return 0;
+        });
+
+        assertTrue(new Warmup(servlet, 2).run());
+
+        assertEquals(Warmup.PAYLOADS.size() * 2 * 2, inputs.size());
+        assertTrue(inputs.contains("//[***][%]\n1***22%333"));
+        assertTrue(inputs.contains(null));
+    }
+
+    @SmallTest
+    void stopsWhenInterrupted() throws Exception {
+        var servlet = new Servlet(new StreamingStringCalculator());
+
+        Thread.currentThread().interrupt();
+
+        assertFalse(new Warmup(servlet, 1000).run());
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongFunction;
+
+// Open-model HTTP load generator for @LoadTests.
+//
+// Requests are sent at a fixed arrival rate, each on its own virtual thread,
+// regardless of how long earlier requests take to complete. The requests are
+// spread across a fixed number of HttpClients, each with its own connection
+// pool.
+//
+// Latency is measured from the time each request was scheduled to start, not
+// from when it was actually sent. This avoids "coordinated omission": if the
+// server or this generator stalls, every request that should have been sent
+// during the stall reflects the delay, instead of the stall disappearing from
+// the results. See:
+//
+// - https://www.scylladb.com/2021/04/22/on-coordinated-omission/
+// - https://github.com/giltene/wrk2
+public class LoadGenerator implements AutoCloseable {
+    // Directory for the JSON reports written by Report.write().
+    public static final String REPORT_DIR =
+            new File("build/reports/load-tests").getAbsolutePath();
+
+    private final List<HttpClient> clients = new ArrayList<>();
+
+    // HttpClient.close() doesn't close an executor supplied by the caller.
+    private final List<ExecutorService> executors = new ArrayList<>();
+
+    public LoadGenerator(int numClients) {
+        for (int i = 0; i != numClients; ++i) {
+            var executor = Executors.newVirtualThreadPerTaskExecutor();
+            executors.add(executor);
+            clients.add(HttpClient.newBuilder().executor(executor).build());
+        }
+    }
+
+    // Throughput and latency results, serialized as JSON by write().
+    public static class Report {
+        public String name;
+        public double targetRatePerSecond;
+        public double durationSeconds;
+        public int clients;
+        public long sent;
+        public long succeeded;
+        public long failed;
+
+        // Requests rejected with 503 Service Unavailable, which the server
+        // returns when shedding load, e.g., via ConcurrencyLimitFilter.
+        public long shed;
+        public double throughputPerSecond;
+
+        // Latencies of the succeeded requests only, since a shed or failed
+        // request may return much faster or slower than a processed one.
+        public Latency latencyMillis;
+
+        // Writes this Report to REPORT_DIR/<name>.json.
+        public File write() throws IOException {
+            final var file = new File(REPORT_DIR, name + ".json");
+
+            if (!file.getParentFile().exists() &&
+                    !file.getParentFile().mkdirs()) {
+                throw new IOException("failed to create " + REPORT_DIR);
+            }
+            new ObjectMapper().writerWithDefaultPrettyPrinter()
+                    .writeValue(file, this);
+            return file;
+        }
+    }
+
+    // Latency percentiles in milliseconds.
+    public static class Latency {
+        public double p50;
+        public double p90;
+        public double p99;
+        public double p999;
+        public double max;
+        public double mean;
+
+        static Latency from(Histogram h) {
+            var l = new Latency();
+            l.p50 = millis(h.getValueAtPercentile(50.0));
+            l.p90 = millis(h.getValueAtPercentile(90.0));
+            l.p99 = millis(h.getValueAtPercentile(99.0));
+            l.p999 = millis(h.getValueAtPercentile(99.9));
+            l.max = millis(h.getMaxValue());
+            l.mean = h.getMean() / 1e6;
+            return l;
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1e6;
+        }
+    }
+
+    // Sends requests at ratePerSecond for the given duration.
+    //
+    // newRequest receives the index of each request, enabling callers to vary
+    // the payloads. A request succeeds if it returns HTTP 200, is shed if it
+    // returns HTTP 503, and otherwise fails. Returns after every request has
+    // completed or failed, so callers should set a timeout on each
+    // HttpRequest.
+    public Report run(
+            String name,
+            double ratePerSecond,
+            Duration duration,
+            LongFunction<HttpRequest> newRequest) {
+        final long intervalNanos = Math.round(1e9 / ratePerSecond);
+        final long count = duration.toNanos() / intervalNanos;
+        final var latencies = new Recorder(3);
+        final var succeeded = new LongAdder();
+        final var failed = new LongAdder();
+        final var shed = new LongAdder();
+        final long start = System.nanoTime();
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; i != count; ++i) {
+                final long scheduled = start + i * intervalNanos;
+                final var client = clients.get((int) (i % clients.size()));
+                final var req = newRequest.apply(i);
+
+                for (long wait = scheduled - System.nanoTime();
+                     wait > 0;
+                     wait = scheduled - System.nanoTime()) {
+                    LockSupport.parkNanos(wait);
+                }
+
+                executor.execute(() -> {
+                    try {
+                        var resp = client.send(req, BodyHandlers.discarding());
+                        switch (resp.statusCode()) {
+                            case 200 -> {
+                                latencies.recordValue(
+                                        System.nanoTime() - scheduled
+                                );
+                                succeeded.increment();
+                            }
+                            case 503 -> shed.increment();
+                            default -> failed.increment();
+                        }
+                    } catch (IOException e) {
+                        failed.increment();
+                    } catch (InterruptedException e) {
+                        failed.increment();
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+        }
+
+        final double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        var report = new Report();
+        report.name = name;
+        report.targetRatePerSecond = ratePerSecond;
+        report.durationSeconds = elapsedSeconds;
+        report.clients = clients.size();
+        report.sent = count;
+        report.succeeded = succeeded.sum();
+        report.failed = failed.sum();
+        report.shed = shed.sum();
+        report.throughputPerSecond = report.succeeded / elapsedSeconds;
+        report.latencyMillis = Latency.from(latencies.getIntervalHistogram());
+        return report;
+    }
+
+    @Override
+    public void close() {
+        clients.forEach(HttpClient::close);
+        executors.forEach(ExecutorService::close);
+    }
+}
@@ -8,21 +8,40 @@ package com.mike_bland.training.testing.utils;
 
 import java.io.IOException;
 import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
 
+// Runs a Docker image built from a Dockerfile on an unused local port.
+//
+// start() returns as soon as a GET request to readinessPath returns HTTP 200,
+// via ReadinessProbe, and stop() returns as soon as the container exits. Both
+// time out instead of sleeping for a fixed interval.
 public class LocalServer {
     private final String dockerfile;
     private final int containerPort;
+    private final String readinessPath;
     private boolean running = false;
     private String imageId;
     private int port;
     private Process runCmd;
 
-    public LocalServer(String dockerfile, int containerPort) {
+    // readinessPath is relative to the server root, e.g. "/strcalc/ready".
+    public LocalServer(
+            String dockerfile, int containerPort, String readinessPath) {
         this.dockerfile = dockerfile;
         this.containerPort = containerPort;
+        this.readinessPath = readinessPath;
     }
 
-    public synchronized URI start(int waitMs)
+    public URI start() throws IOException, InterruptedException {
+        return start(ReadinessProbe.DEFAULT_TIMEOUT);
+    }
+
+    // Starts the container, then waits up to `timeout` for it to be ready.
+    //
+    // If it isn't ready in time, stops the container and throws an IOException
+    // describing the last readiness check.
+    public synchronized URI start(Duration timeout)
             throws IOException, InterruptedException {
         if (!running) {
             running = true;
@@ -31,18 +50,39 @@ public class LocalServer {
             port = PortPicker.pickUnusedPort();
             var portMap = String.format("%1$d:%2$d", port, containerPort);
             runCmd = Docker.runImage(imageId, portMap);
-            Thread.sleep(waitMs);
+
+            try {
+                ReadinessProbe.awaitHttpOk(
+                        getUri().resolve(readinessPath), timeout
+                );
+            } catch (IOException | InterruptedException e) {
+                stop();
+                throw e;
+            }
         }
-        return URI.create(String.format("http://localhost:%1$d", port));
+        return getUri();
+    }
+
+    public void stop() throws IOException, InterruptedException {
+        stop(ReadinessProbe.DEFAULT_TIMEOUT);
     }
 
-    public synchronized void stop(int waitMs)
-            throws IOException, InterruptedException{
+    // Stops the container, waiting up to `timeout` for it to exit before
+    // killing it, then removes its image.
+    public synchronized void stop(Duration timeout)
+            throws IOException, InterruptedException {
         if (running) {
             running = false;
             runCmd.destroy();
-            Thread.sleep(waitMs);
+
+            if (!runCmd.waitFor(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                runCmd.destroyForcibly().waitFor();
+            }
             Docker.destroyImage(imageId);
         }
     }
+
+    private URI getUri() {
+        return URI.create(String.format("http://localhost:%1$d", port));
+    }
 }
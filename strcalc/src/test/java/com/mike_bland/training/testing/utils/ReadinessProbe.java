@@ -0,0 +1,75 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.utils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+
+// Waits for a server to become ready by polling it with exponential backoff.
+//
+// Polling returns as soon as the server is ready, unlike a fixed sleep, which
+// is either longer than necessary or, on a slow or busy host, too short. The
+// first poll happens immediately, then the delay between polls doubles from
+// INITIAL_DELAY up to MAX_DELAY, until the timeout expires.
+//
+// It checks for HTTP 200, not just an open port, since the Docker port proxy
+// accepts connections before the container is listening.
+public class ReadinessProbe {
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(60);
+    static final Duration INITIAL_DELAY = Duration.ofMillis(10);
+    static final Duration MAX_DELAY = Duration.ofMillis(500);
+    static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(5);
+
+    // Waits until a GET request to uri returns HTTP 200.
+    //
+    // Throws an IOException reporting the last status or error if this
+    // doesn't happen within the timeout.
+    public static void awaitHttpOk(URI uri, Duration timeout)
+            throws IOException, InterruptedException {
+        final var req = HttpRequest.newBuilder(uri)
+                .timeout(REQUEST_TIMEOUT)
+                .GET()
+                .build();
+        final long deadline = System.nanoTime() + timeout.toNanos();
+        var delay = INITIAL_DELAY;
+
+        try (var client = HttpClient.newBuilder()
+                .connectTimeout(REQUEST_TIMEOUT)
+                .build()) {
+            while (true) {
+                String notReady;
+
+                try {
+                    final var status = client.send(
+                            req, BodyHandlers.discarding()
+                    ).statusCode();
+                    if (status == 200) return;
+                    notReady = "HTTP " + status;
+                } catch (IOException e) {
+                    notReady = e.toString();
+                }
+
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new IOException(String.format(
+                            "%s not ready after %dms: %s",
+                            uri, timeout.toMillis(), notReady
+                    ));
+                }
+                Thread.sleep(
+                        Math.min(delay.toMillis(), remaining / 1_000_000 + 1)
+                );
+                delay = delay.multipliedBy(2);
+                if (delay.compareTo(MAX_DELAY) > 0) delay = MAX_DELAY;
+            }
+        }
+    }
+}
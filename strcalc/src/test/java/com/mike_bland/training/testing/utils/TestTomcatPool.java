@@ -0,0 +1,234 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.utils;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.http.HttpServlet;
+import org.apache.catalina.LifecycleException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+
+// Shares started TestTomcat instances between tests.
+//
+// Starting Tomcat dominates the run time of most medium tests. Instead of
+// starting and stopping a TestTomcat for every test method, a test leases one
+// from the pool, and closing the Lease returns it to the pool still running.
+// A lease only starts a new TestTomcat when every existing one for the same
+// mode is leased by another test, so tests running in parallel each get their
+// own server.
+//
+// Servers are keyed by the TestTomcat start*() method that started them, the
+// context path, and the WAR file, if any:
+//
+// - leaseServlet() replaces the leased server's Servlet via
+//   TestTomcat.replaceServlet(), so each lease starts with a fresh Servlet
+//   and its own filters.
+// - leaseWithBuildInputs() and leaseWithWarFile() servers keep their
+//   application state, such as caches and metrics, between leases. Tests
+//   using them mustn't depend upon that state.
+//
+// Only one leaseWithBuildInputs() or leaseWithWarFile() server runs at a
+// time, and only one test at a time may lease it. These servers start Weld
+// and enable JNDI naming, which share static state across every application
+// in the JVM, so two of them running at once interfere with each other.
+//
+// SHARED stops every server it started when the JVM exits.
+public class TestTomcatPool {
+    public enum Mode {
+        SERVLET, BUILD_INPUTS, WAR_FILE;
+
+        boolean usesWeld() {
+            return this != SERVLET;
+        }
+    }
+
+    public static final TestTomcatPool SHARED = new TestTomcatPool();
+
+    // The default uncaught exception handler reports any failures.
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                SHARED.stopAll();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }));
+    }
+
+    private record Key(Mode mode, String contextPath, String warFile) {}
+
+    private interface Starter {
+        void start(TestTomcat tomcat) throws LifecycleException, IOException;
+    }
+
+    private final Map<Key, ConcurrentLinkedDeque<TestTomcat>> idle =
+            new ConcurrentHashMap<>();
+    private final Set<TestTomcat> started = ConcurrentHashMap.newKeySet();
+
+    // Held by the Lease on a server that uses Weld. See usesWeld().
+    private final Semaphore weldPermit = new Semaphore(1);
+
+    // A TestTomcat leased from the pool until close() returns it.
+    public class Lease implements AutoCloseable {
+        private final Key key;
+        private TestTomcat tomcat;
+
+        private Lease(Key key, TestTomcat tomcat) {
+            this.key = key;
+            this.tomcat = tomcat;
+        }
+
+        public TestTomcat tomcat() {
+            if (tomcat == null) {
+                throw new IllegalStateException("lease already closed");
+            }
+            return tomcat;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (tomcat == null) return;
+            idle.get(key).push(tomcat);
+            tomcat = null;
+            if (key.mode().usesWeld()) weldPermit.release();
+        }
+    }
+
+    public Lease leaseServlet(String contextPath, HttpServlet servlet)
+            throws LifecycleException, IOException {
+        return leaseServlet(contextPath, servlet, Map.of());
+    }
+
+    // Filters apply only to this lease, like the Servlet and init-params.
+    public Lease leaseServlet(
+            String contextPath,
+            HttpServlet servlet,
+            Map<String, String> initParams,
+            Filter... filters)
+            throws LifecycleException, IOException {
+        final var key = new Key(Mode.SERVLET, contextPath, null);
+        final var tomcat = idleServer(key);
+
+        if (tomcat == null) {
+            return lease(key, t -> t.start(servlet, initParams, filters));
+        }
+        try {
+            tomcat.replaceServlet(servlet, initParams, filters);
+        } catch (LifecycleException | RuntimeException e) {
+            stopAfterFailure(tomcat, e);
+            throw e;
+        }
+        return new Lease(key, tomcat);
+    }
+
+    public Lease leaseWithBuildInputs(String contextPath)
+            throws LifecycleException, IOException, InterruptedException {
+        return leaseWeldServer(
+                new Key(Mode.BUILD_INPUTS, contextPath, null),
+                TestTomcat::startWithBuildInputs
+        );
+    }
+
+    public Lease leaseWithWarFile(String contextPath, String warFile)
+            throws LifecycleException, IOException, InterruptedException {
+        return leaseWeldServer(
+                new Key(Mode.WAR_FILE, contextPath, warFile),
+                t -> t.startWithWarFile(warFile)
+        );
+    }
+
+    // Stops every server started by this pool, leased or not.
+    //
+    // Tries to stop every server even if some fail, then throws an
+    // IOException with each failure attached as a suppressed exception.
+    public void stopAll() throws IOException {
+        idle.clear();
+        final var failure = new IOException("failed to stop TestTomcat(s)");
+
+        for (var tomcat : started) {
+            try {
+                stop(tomcat);
+            } catch (LifecycleException | IOException e) {
+                failure.addSuppressed(e);
+            }
+        }
+        if (failure.getSuppressed().length != 0) throw failure;
+    }
+
+    // Waits until no other test holds a lease on a Weld server, then leases
+    // the idle server for key, if any. Otherwise, stops any idle Weld server
+    // for another key before starting a new one.
+    private Lease leaseWeldServer(Key key, Starter starter)
+            throws LifecycleException, IOException, InterruptedException {
+        weldPermit.acquire();
+
+        try {
+            final var tomcat = idleServer(key);
+            if (tomcat != null) return new Lease(key, tomcat);
+
+            stopIdleWeldServers();
+            return lease(key, starter);
+        } catch (LifecycleException | IOException | RuntimeException e) {
+            weldPermit.release();
+            throw e;
+        }
+    }
+
+    private void stopIdleWeldServers() throws LifecycleException, IOException {
+        for (var entry : idle.entrySet()) {
+            if (!entry.getKey().mode().usesWeld()) continue;
+
+            for (var tomcat = entry.getValue().poll();
+                 tomcat != null;
+                 tomcat = entry.getValue().poll()) {
+                stop(tomcat);
+            }
+        }
+    }
+
+    private TestTomcat idleServer(Key key) {
+        return idle.computeIfAbsent(key, k -> new ConcurrentLinkedDeque<>())
+                .poll();
+    }
+
+    private Lease lease(Key key, Starter starter)
+            throws LifecycleException, IOException {
+        final var tomcat = new TestTomcat(0, key.contextPath());
+        started.add(tomcat);
+
+        try {
+            starter.start(tomcat);
+        } catch (LifecycleException | IOException | RuntimeException e) {
+            stopAfterFailure(tomcat, e);
+            throw e;
+        }
+        return new Lease(key, tomcat);
+    }
+
+    private void stop(TestTomcat tomcat)
+            throws LifecycleException, IOException {
+        started.remove(tomcat);
+        tomcat.stop();
+    }
+
+    // Stops a server that failed to start or to replace its Servlet. Any
+    // failure to stop it is attached to the original failure, which the
+    // caller rethrows.
+    private void stopAfterFailure(TestTomcat tomcat, Exception failure) {
+        try {
+            stop(tomcat);
+        } catch (LifecycleException | IOException e) {
+            failure.addSuppressed(e);
+        }
+    }
+}
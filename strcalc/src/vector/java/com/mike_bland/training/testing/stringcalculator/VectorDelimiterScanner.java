@@ -0,0 +1,62 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.mike_bland.training.testing.stringcalculator;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// DelimiterScanner that compares 16 to 64 bytes at a time using SIMD
+// instructions, via the incubating Vector API:
+//
+// - https://openjdk.org/jeps/448
+//
+// Each vector is compared against ',' and '\n' to find the delimiters, and
+// range checked to find the digits, without a branch per byte. The resulting
+// lane masks combine into the same bit mask the Scalar scanner produces.
+//
+// Only DelimiterScanner.best() should create one, since loading this class
+// fails unless the JVM was started with "--add-modules jdk.incubator.vector".
+// best() finds it by name and calls isAccelerated() and the constructor via
+// reflection, so the main source set doesn't need the module to compile.
+final class VectorDelimiterScanner implements DelimiterScanner {
+    // Fewer lanes than this means the platform has no useful SIMD support,
+    // and the Scalar scanner would be just as fast.
+    static final int MIN_LANES = 16;
+
+    // The widest vector the platform supports, up to BLOCK_SIZE lanes.
+    private static final VectorSpecies<Byte> SPECIES =
+            ByteVector.SPECIES_PREFERRED.length() <= BLOCK_SIZE ?
+                    ByteVector.SPECIES_PREFERRED : ByteVector.SPECIES_512;
+    private static final int LANES = SPECIES.length();
+
+    private final DelimiterScanner tail = new Scalar();
+
+    static boolean isAccelerated() {
+        return LANES >= MIN_LANES;
+    }
+
+    @Override
+    public long delimiters(byte[] bytes, int pos, int end) {
+        if (end - pos < BLOCK_SIZE) return tail.delimiters(bytes, pos, end);
+
+        long mask = 0;
+
+        for (int i = 0; i != BLOCK_SIZE; i += LANES) {
+            final var v = ByteVector.fromArray(SPECIES, bytes, pos + i);
+            final var delims = v.eq((byte) ',').or(v.eq((byte) '\n'));
+
+            // Bytes below '0' wrap around to large unsigned values.
+            final var digits = v.sub((byte) '0')
+                    .compare(VectorOperators.UNSIGNED_LE, (byte) 9);
+
+            if (!delims.or(digits).allTrue()) return INVALID;
+            mask |= delims.toLong() << i;
+        }
+        return mask;
+    }
+}